@@ -0,0 +1,12 @@
+package com.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Habilita as tarefas agendadas (ex.: fechamento mensal de estoque)
+ */
+@Configuration
+@EnableScheduling
+public class AgendamentoConfig {
+}
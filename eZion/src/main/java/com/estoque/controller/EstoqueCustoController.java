@@ -1,7 +1,17 @@
 package com.estoque.controller;
 
+import com.estoque.dto.FilaRecalculoCustoDTO;
+import com.estoque.dto.ImportacaoCustosDTO;
+import com.estoque.dto.LinhaRelatorioCustoDTO.Agrupamento;
+import com.estoque.dto.RateioFreteDTO;
+import com.estoque.dto.RateioFreteRequestDTO;
+import com.estoque.dto.ResumoCamadasCustoDTO;
+import com.estoque.dto.ResumoCustoItemDTO;
+import com.estoque.dto.VerificacaoCustoMedioDTO;
+import com.estoque.model.CamadaCusto;
 import com.estoque.model.EstoqueCusto;
 import com.estoque.model.EstoqueCusto.TipoCusto;
+import com.estoque.model.RecalculoCustoJob;
 import com.estoque.service.EstoqueCustoService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -9,12 +19,17 @@ import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.util.List;
 
 @RestController
@@ -101,6 +116,35 @@ public class EstoqueCustoController {
         }
     }
 
+    @Operation(summary = "Registrar custos em lote", description = "Importa várias linhas de custo (ex.: itens de nota fiscal) e retorna os erros por linha")
+    @PostMapping("/lote")
+    public ResponseEntity<ImportacaoCustosDTO> registrarEmLote(@RequestBody List<EstoqueCusto> custos) {
+        log.debug("POST /api/estoque/custos/lote - Registrando {} custos em lote", custos.size());
+        ImportacaoCustosDTO importacao = service.registrarEmLote(custos);
+        return ResponseEntity.ok(importacao);
+    }
+
+    @Operation(summary = "Ratear frete da compra", description = "Rateia o frete entre as linhas de um pedido de compra (ou dos custos informados) por quantidade, valor ou peso")
+    @PostMapping("/rateio-frete")
+    public ResponseEntity<RateioFreteDTO> ratearFrete(@Valid @RequestBody RateioFreteRequestDTO request) {
+        log.debug("POST /api/estoque/custos/rateio-frete - Rateando frete de {}", request.getValorFrete());
+        try {
+            RateioFreteDTO rateio = service.ratearFrete(request);
+            return ResponseEntity.ok(rateio);
+        } catch (IllegalArgumentException e) {
+            log.error("Erro ao ratear frete: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @Operation(summary = "Resumo de custos do item", description = "Retorna em uma única consulta os totais de valor, impostos e frete e o custo médio ponderado do item")
+    @GetMapping("/item/{itemId}/resumo")
+    public ResponseEntity<ResumoCustoItemDTO> resumirCustosItem(@PathVariable Long itemId) {
+        log.debug("GET /api/estoque/custos/item/{}/resumo - Resumo de custos", itemId);
+        ResumoCustoItemDTO resumo = service.resumirCustosItem(itemId);
+        return ResponseEntity.ok(resumo);
+    }
+
     @Operation(summary = "Calcular custo total do item", description = "Calcula o custo total acumulado de um item")
     @GetMapping("/item/{itemId}/custo-total")
     public ResponseEntity<BigDecimal> calcularCustoTotal(@PathVariable Long itemId) {
@@ -125,6 +169,74 @@ public class EstoqueCustoController {
         return ResponseEntity.ok(custoMedioPonderado);
     }
 
+    @Operation(summary = "Custo médio do item em uma data", description = "Retorna o custo médio vigente na data informada, conforme o razão de custo médio")
+    @GetMapping("/item/{itemId}/custo-medio")
+    public ResponseEntity<BigDecimal> obterCustoMedioEm(
+            @PathVariable Long itemId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime em) {
+        log.debug("GET /api/estoque/custos/item/{}/custo-medio?em={} - Buscar custo médio na data", itemId, em);
+        BigDecimal custoMedio = service.obterCustoMedioEm(itemId, em);
+        return ResponseEntity.ok(custoMedio);
+    }
+
+    @Operation(summary = "Relatório de custos e impostos", description = "Totaliza custos e impostos por tipo de custo, mês e item ou grupo, em JSON ou CSV")
+    @GetMapping("/relatorio")
+    public ResponseEntity<StreamingResponseBody> gerarRelatorio(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM") YearMonth inicio,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM") YearMonth fim,
+            @RequestParam(defaultValue = "ITEM") Agrupamento agrupamento,
+            @RequestParam(required = false) TipoCusto tipoCusto,
+            @RequestParam(defaultValue = "json") String formato) {
+        log.debug("GET /api/estoque/custos/relatorio - Relatório de {} a {} por {} em {}", inicio, fim, agrupamento, formato);
+        try {
+            List<YearMonth> meses = service.listarMesesRelatorio(inicio, fim);
+            if ("csv".equalsIgnoreCase(formato)) {
+                return ResponseEntity.ok()
+                        .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+                        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"relatorio-custos-" + inicio + "-" + fim + ".csv\"")
+                        .body(saida -> service.escreverRelatorioCsv(meses, agrupamento, tipoCusto, saida));
+            }
+            if ("json".equalsIgnoreCase(formato)) {
+                return ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(saida -> service.escreverRelatorioJson(meses, agrupamento, tipoCusto, saida));
+            }
+            throw new IllegalArgumentException("Formato não suportado: " + formato);
+        } catch (IllegalArgumentException e) {
+            log.error("Erro ao gerar relatório de custos: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @Operation(summary = "Listar camadas de custo do item", description = "Retorna as camadas de custo PEPS abertas do item, em ordem de consumo")
+    @GetMapping("/item/{itemId}/camadas")
+    public ResponseEntity<List<CamadaCusto>> listarCamadasAbertas(@PathVariable Long itemId) {
+        log.debug("GET /api/estoque/custos/item/{}/camadas - Listar camadas de custo", itemId);
+        List<CamadaCusto> camadas = service.listarCamadasAbertas(itemId);
+        return ResponseEntity.ok(camadas);
+    }
+
+    @Operation(summary = "Resumo das camadas de custo do item", description = "Retorna a quantidade e o valor em estoque pelas camadas PEPS abertas")
+    @GetMapping("/item/{itemId}/camadas/resumo")
+    public ResponseEntity<ResumoCamadasCustoDTO> resumirCamadas(@PathVariable Long itemId) {
+        log.debug("GET /api/estoque/custos/item/{}/camadas/resumo - Resumo das camadas de custo", itemId);
+        ResumoCamadasCustoDTO resumo = service.resumirCamadas(itemId);
+        return ResponseEntity.ok(resumo);
+    }
+
+    @Operation(summary = "Reconstruir camadas de custo do item", description = "Reconstrói as camadas PEPS do item a partir das compras e saídas registradas")
+    @PostMapping("/item/{itemId}/camadas/reconstruir")
+    public ResponseEntity<Void> reconstruirCamadas(@PathVariable Long itemId) {
+        log.debug("POST /api/estoque/custos/item/{}/camadas/reconstruir - Reconstruindo camadas de custo", itemId);
+        try {
+            service.reconstruirCamadas(itemId);
+            return ResponseEntity.ok().build();
+        } catch (IllegalArgumentException e) {
+            log.error("Erro ao reconstruir camadas: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @Operation(summary = "Calcular total de impostos do item", description = "Calcula o total de impostos acumulados do item")
     @GetMapping("/item/{itemId}/total-impostos")
     public ResponseEntity<BigDecimal> calcularTotalImpostos(@PathVariable Long itemId) {
@@ -162,16 +274,67 @@ public class EstoqueCustoController {
         }
     }
 
-    @Operation(summary = "Recalcular custos médios de todos os itens", description = "Executa recálculo geral dos custos médios de todos os itens")
+    @Operation(summary = "Verificar custos médios do item", description = "Compara o razão incremental de custo médio com um recálculo completo, sem alterar dados")
+    @GetMapping("/item/{itemId}/verificar-custos-medios")
+    public ResponseEntity<VerificacaoCustoMedioDTO> verificarCustosMediosItem(@PathVariable Long itemId) {
+        log.debug("GET /api/estoque/custos/item/{}/verificar-custos-medios - Verificando custos médios", itemId);
+        VerificacaoCustoMedioDTO verificacao = service.verificarCustosMediosItem(itemId);
+        return ResponseEntity.ok(verificacao);
+    }
+
+    @Operation(summary = "Situação da fila de recálculo", description = "Retorna a profundidade, o atraso e os contadores da fila de recálculo de custos médios")
+    @GetMapping("/recalculo/fila")
+    public ResponseEntity<FilaRecalculoCustoDTO> obterSituacaoFilaRecalculo() {
+        log.debug("GET /api/estoque/custos/recalculo/fila - Situação da fila de recálculo");
+        return ResponseEntity.ok(service.obterSituacaoFilaRecalculo());
+    }
+
+    @Operation(summary = "Aguardar recálculo do item", description = "Aguarda o recálculo pendente dos custos médios do item; retorna 202 se o tempo limite expirar")
+    @PostMapping("/item/{itemId}/aguardar-recalculo")
+    public ResponseEntity<Void> aguardarRecalculoItem(@PathVariable Long itemId,
+                                                      @RequestParam(defaultValue = "30") long timeoutSegundos) {
+        log.debug("POST /api/estoque/custos/item/{}/aguardar-recalculo - Aguardando recálculo", itemId);
+        try {
+            boolean concluido = service.aguardarRecalculoItem(itemId, timeoutSegundos);
+            return concluido ? ResponseEntity.ok().build() : ResponseEntity.status(HttpStatus.ACCEPTED).build();
+        } catch (IllegalStateException e) {
+            log.error("Erro no recálculo do item: {}", itemId, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @Operation(summary = "Recalcular custos médios de todos os itens", description = "Inicia em segundo plano o recálculo geral dos custos médios e retorna o job de acompanhamento")
     @PostMapping("/recalcular-todos-custos-medios")
-    public ResponseEntity<Void> recalcularCustosMediosTodosItens() {
+    public ResponseEntity<RecalculoCustoJob> recalcularCustosMediosTodosItens() {
         log.debug("POST /api/estoque/custos/recalcular-todos-custos-medios - Recalculando custos médios de todos os itens");
         try {
-            service.recalcularCustosMediosTodosItens();
-            return ResponseEntity.ok().build();
+            RecalculoCustoJob job = service.recalcularCustosMediosTodosItens();
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
         } catch (Exception e) {
             log.error("Erro ao recalcular custos médios de todos os itens", e);
             return ResponseEntity.internalServerError().build();
         }
     }
-}
\ No newline at end of file
+
+    @Operation(summary = "Consultar recálculo de custos médios", description = "Retorna o andamento de um job de recálculo geral")
+    @GetMapping("/recalculo/{jobId}")
+    public ResponseEntity<RecalculoCustoJob> obterRecalculo(@PathVariable Long jobId) {
+        log.debug("GET /api/estoque/custos/recalculo/{} - Consultando recálculo", jobId);
+        return service.obterRecalculo(jobId)
+            .map(ResponseEntity::ok)
+            .orElse(ResponseEntity.notFound().build());
+    }
+
+    @Operation(summary = "Retomar recálculo de custos médios", description = "Reprocessa os blocos não concluídos de um job de recálculo que falhou")
+    @PostMapping("/recalculo/{jobId}/retomar")
+    public ResponseEntity<RecalculoCustoJob> retomarRecalculo(@PathVariable Long jobId) {
+        log.debug("POST /api/estoque/custos/recalculo/{}/retomar - Retomando recálculo", jobId);
+        try {
+            RecalculoCustoJob job = service.retomarRecalculo(jobId);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+        } catch (IllegalArgumentException e) {
+            log.warn("Erro ao retomar recálculo: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.estoque.controller;
+
+import com.estoque.model.FechamentoEstoque;
+import com.estoque.model.SaldoFechamento;
+import com.estoque.service.FechamentoEstoqueService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.YearMonth;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/estoque/fechamentos")
+@RequiredArgsConstructor
+@Tag(name = "Fechamentos de Estoque", description = "API para fechamento mensal de estoque")
+public class FechamentoEstoqueController {
+
+    private final FechamentoEstoqueService fechamentoEstoqueService;
+
+    @PostMapping
+    @Operation(summary = "Fechar mês de estoque", description = "Grava os saldos por item e local no fim do mês e bloqueia movimentações retroativas nele")
+    public ResponseEntity<FechamentoEstoque> fechar(@RequestParam @DateTimeFormat(pattern = "yyyy-MM") YearMonth competencia) {
+        try {
+            FechamentoEstoque fechamento = fechamentoEstoqueService.fechar(competencia);
+            return ResponseEntity.status(HttpStatus.CREATED).body(fechamento);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping
+    @Operation(summary = "Listar fechamentos de estoque")
+    public ResponseEntity<List<FechamentoEstoque>> listar() {
+        return ResponseEntity.ok(fechamentoEstoqueService.listar());
+    }
+
+    @GetMapping("/{competencia}/item/{itemId}")
+    @Operation(summary = "Saldos do item no fechamento", description = "Saldos por local gravados no fechamento da competência (yyyy-MM)")
+    public ResponseEntity<List<SaldoFechamento>> listarSaldosItem(
+            @PathVariable @DateTimeFormat(pattern = "yyyy-MM") YearMonth competencia,
+            @PathVariable Long itemId) {
+        return ResponseEntity.ok(fechamentoEstoqueService.listarSaldosItem(competencia, itemId));
+    }
+}
@@ -1,5 +1,7 @@
 package com.estoque.controller;
 
+import com.estoque.dto.GrupoArvoreDTO;
+import com.estoque.dto.ItemGrupoDTO;
 import com.estoque.model.Grupo;
 import com.estoque.service.GrupoService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -127,6 +129,38 @@ public class GrupoController {
         }
     }
 
+    @GetMapping("/arvore")
+    @Operation(summary = "Árvore completa de grupos")
+    public ResponseEntity<List<GrupoArvoreDTO>> montarArvore() {
+        return ResponseEntity.ok(grupoService.montarArvore());
+    }
+
+    @GetMapping("/{id}/arvore")
+    @Operation(summary = "Subárvore de um grupo (o grupo e seus descendentes)")
+    public ResponseEntity<GrupoArvoreDTO> montarSubarvore(@PathVariable Long id) {
+        try {
+            return ResponseEntity.ok(grupoService.montarSubarvore(id));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @GetMapping("/{id}/itens")
+    @Operation(summary = "Listar itens do grupo e de seus subgrupos")
+    public ResponseEntity<List<ItemGrupoDTO>> listarItensSubarvore(@PathVariable Long id) {
+        try {
+            return ResponseEntity.ok(grupoService.listarItensSubarvore(id));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @PostMapping("/caminhos/reconstruir")
+    @Operation(summary = "Reconstruir caminhos da hierarquia", description = "Recalcula o caminho e o nível de todos os grupos (ex.: após cargas feitas direto no banco); retorna o número de grupos atualizados")
+    public ResponseEntity<Integer> reconstruirCaminhos() {
+        return ResponseEntity.ok(grupoService.reconstruirCaminhos());
+    }
+
     @DeleteMapping("/{id}/validado")
     @Operation(summary = "Excluir grupo com validação de filhos")
     public ResponseEntity<Void> excluirComValidacao(@PathVariable Long id) {
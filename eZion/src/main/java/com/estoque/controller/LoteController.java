@@ -1,5 +1,10 @@
 package com.estoque.controller;
 
+import com.estoque.dto.AjusteQuantidadeLoteDTO;
+import com.estoque.dto.CriacaoLotesRequestDTO;
+import com.estoque.dto.LoteCriadoDTO;
+import com.estoque.dto.LoteDisponivelDTO;
+import com.estoque.dto.LoteValidadeDTO;
 import com.estoque.model.Lote;
 import com.estoque.service.LoteService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -9,6 +14,7 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
@@ -34,6 +40,16 @@ public class LoteController {
         }
     }
 
+    @PostMapping("/em-lote")
+    @Operation(summary = "Criar vários lotes", description = "Cria todos os lotes ou nenhum; os números são gerados pelo servidor conforme o padrão ({ITEM}, {DATA}, {SEQ})")
+    public ResponseEntity<List<LoteCriadoDTO>> criarEmLote(@Valid @RequestBody CriacaoLotesRequestDTO request) {
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED).body(loteService.criarEmLote(request));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @GetMapping
     @Operation(summary = "Listar todos os lotes")
     public ResponseEntity<List<Lote>> listarTodos() {
@@ -70,9 +86,9 @@ public class LoteController {
 
     @GetMapping("/item/{itemId}/fifo")
     @Operation(summary = "Listar lotes disponíveis (FIFO)")
-    public ResponseEntity<List<Lote>> listarLotesDisponiveisFIFO(@PathVariable Long itemId) {
+    public ResponseEntity<List<LoteDisponivelDTO>> listarLotesDisponiveisFIFO(@PathVariable Long itemId) {
         try {
-            List<Lote> lotes = loteService.listarLotesDisponiveisFIFO(itemId);
+            List<LoteDisponivelDTO> lotes = loteService.listarLotesDisponiveisFIFO(itemId);
             return ResponseEntity.ok(lotes);
         } catch (Exception e) {
             return ResponseEntity.notFound().build();
@@ -81,20 +97,37 @@ public class LoteController {
 
     @GetMapping("/vencidos")
     @Operation(summary = "Listar lotes vencidos")
-    public ResponseEntity<List<Lote>> listarVencidos() {
-        List<Lote> lotes = loteService.listarLotesVencidos();
+    public ResponseEntity<List<LoteValidadeDTO>> listarVencidos() {
+        List<LoteValidadeDTO> lotes = loteService.listarLotesVencidos();
         return ResponseEntity.ok(lotes);
     }
 
     @GetMapping("/para-vencer")
     @Operation(summary = "Listar lotes para vencer em um período")
-    public ResponseEntity<List<Lote>> listarParaVencer(
+    public ResponseEntity<List<LoteValidadeDTO>> listarParaVencer(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate inicio,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fim) {
-        List<Lote> lotes = loteService.listarLotesParaVencer(inicio, fim);
+        List<LoteValidadeDTO> lotes = loteService.listarLotesParaVencer(inicio, fim);
         return ResponseEntity.ok(lotes);
     }
 
+    @PostMapping("/vencidos/processar")
+    @Operation(summary = "Processar lotes vencidos", description = "Desativa os lotes vencidos (conforme estoque.lote.desativar-vencidos) e retorna quantos foram desativados")
+    public ResponseEntity<Integer> processarVencidos() {
+        return ResponseEntity.ok(loteService.processarVencidos());
+    }
+
+    @GetMapping("/a-vencer")
+    @Operation(summary = "Listar lotes que vencem nos próximos dias")
+    public ResponseEntity<List<LoteValidadeDTO>> listarAVencer(@RequestParam(defaultValue = "30") int dias) {
+        try {
+            List<LoteValidadeDTO> lotes = loteService.listarLotesAVencer(dias);
+            return ResponseEntity.ok(lotes);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @PutMapping("/{id}")
     @Operation(summary = "Atualizar lote")
     public ResponseEntity<Lote> atualizar(@PathVariable Long id, @Valid @RequestBody Lote lote) {
@@ -103,6 +136,8 @@ public class LoteController {
             return ResponseEntity.ok(loteAtualizado);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().build();
+        } catch (ObjectOptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
         }
     }
 
@@ -132,6 +167,16 @@ public class LoteController {
         }
     }
 
+    @PostMapping("/ajustes")
+    @Operation(summary = "Ajustar quantidade disponível de vários lotes", description = "Aplica todos os ajustes (positivos ou negativos) ou nenhum; retorna o número de lotes ajustados")
+    public ResponseEntity<Integer> ajustarQuantidades(@RequestBody List<AjusteQuantidadeLoteDTO> ajustes) {
+        try {
+            return ResponseEntity.ok(loteService.ajustarQuantidades(ajustes));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @GetMapping("/item/{itemId}/estoque-disponivel")
     @Operation(summary = "Calcular estoque disponível de um item")
     public ResponseEntity<BigDecimal> calcularEstoqueDisponivel(@PathVariable Long itemId) {
@@ -162,6 +207,8 @@ public class LoteController {
             return ResponseEntity.ok().build();
         } catch (IllegalArgumentException e) {
             return ResponseEntity.notFound().build();
+        } catch (ObjectOptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
         }
     }
 
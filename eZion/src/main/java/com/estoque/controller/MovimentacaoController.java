@@ -1,18 +1,33 @@
 package com.estoque.controller;
 
+import com.estoque.dto.AlocacaoSaidaDTO;
+import com.estoque.dto.AlocacaoSaidaRequestDTO;
+import com.estoque.dto.ImportacaoMovimentacoesDTO;
+import com.estoque.dto.KardexDTO;
+import com.estoque.dto.SaldoHistoricoDTO;
+import com.estoque.dto.TransferenciaDTO;
+import com.estoque.dto.TransferenciaRequestDTO;
+import com.estoque.dto.VerificacaoSaldoEstoqueDTO;
 import com.estoque.model.Movimentacao;
+import com.estoque.model.SaldoEstoque;
+import com.estoque.service.AlocacaoLoteService;
 import com.estoque.service.MovimentacaoService;
+import com.estoque.service.TransferenciaEstoqueService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -22,19 +37,63 @@ import java.util.List;
 @Tag(name = "Movimentações", description = "API para gerenciamento de movimentações de estoque")
 public class MovimentacaoController {
 
+    /**
+     * Cabeçalho com a chave que torna o registro idempotente: a repetição da requisição devolve a resposta original
+     */
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
     private final MovimentacaoService movimentacaoService;
+    private final AlocacaoLoteService alocacaoLoteService;
+    private final TransferenciaEstoqueService transferenciaEstoqueService;
 
     @PostMapping
     @Operation(summary = "Registrar nova movimentação")
-    public ResponseEntity<Movimentacao> registrar(@Valid @RequestBody Movimentacao movimentacao) {
+    public ResponseEntity<Movimentacao> registrar(@Valid @RequestBody Movimentacao movimentacao,
+                                                  @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String chaveIdempotencia) {
         try {
-            Movimentacao novaMovimentacao = movimentacaoService.registrar(movimentacao);
+            Movimentacao novaMovimentacao = movimentacaoService.registrar(movimentacao, chaveIdempotencia);
             return ResponseEntity.status(HttpStatus.CREATED).body(novaMovimentacao);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().build();
         }
     }
 
+    @PostMapping("/saida-alocada")
+    @Operation(summary = "Registrar saída com alocação automática de lotes (FIFO ou FEFO)")
+    public ResponseEntity<AlocacaoSaidaDTO> registrarSaidaAlocada(@Valid @RequestBody AlocacaoSaidaRequestDTO request,
+                                                                  @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String chaveIdempotencia) {
+        try {
+            AlocacaoSaidaDTO alocacao = alocacaoLoteService.alocarSaida(request, chaveIdempotencia);
+            return ResponseEntity.status(HttpStatus.CREATED).body(alocacao);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @PostMapping("/transferencia")
+    @Operation(summary = "Transferir itens entre locais", description = "Registra, em uma única transação, a saída na origem e a entrada no destino de cada item, com um ID de transferência comum")
+    public ResponseEntity<TransferenciaDTO> transferir(@Valid @RequestBody TransferenciaRequestDTO request,
+                                                       @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String chaveIdempotencia) {
+        try {
+            TransferenciaDTO transferencia = transferenciaEstoqueService.transferir(request, chaveIdempotencia);
+            return ResponseEntity.status(HttpStatus.CREATED).body(transferencia);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @PostMapping("/lote")
+    @Operation(summary = "Registrar movimentações em lote", description = "Registra várias movimentações (ex.: ajuste de inventário) e retorna o ID ou o erro de cada linha")
+    public ResponseEntity<ImportacaoMovimentacoesDTO> registrarEmLote(@RequestBody List<Movimentacao> movimentacoes,
+                                                                      @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String chaveIdempotencia) {
+        try {
+            ImportacaoMovimentacoesDTO importacao = movimentacaoService.registrarEmLote(movimentacoes, chaveIdempotencia);
+            return ResponseEntity.ok(importacao);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @GetMapping
     @Operation(summary = "Listar todas as movimentações")
     public ResponseEntity<List<Movimentacao>> listarTodas() {
@@ -93,6 +152,23 @@ public class MovimentacaoController {
         return ResponseEntity.ok(movimentacoes);
     }
 
+    @GetMapping("/item/{itemId}/kardex")
+    @Operation(summary = "Kardex do item", description = "Movimentações do período com saldos acumulados, paginadas pelo cursor (aposData, aposId) da página anterior")
+    public ResponseEntity<KardexDTO> gerarKardex(
+            @PathVariable Long itemId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime inicio,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fim,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime aposData,
+            @RequestParam(required = false) Long aposId,
+            @RequestParam(defaultValue = "100") int tamanho) {
+        try {
+            KardexDTO kardex = movimentacaoService.gerarKardex(itemId, inicio, fim, aposData, aposId, tamanho);
+            return ResponseEntity.ok(kardex);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @GetMapping("/periodo")
     @Operation(summary = "Listar movimentações por período")
     public ResponseEntity<List<Movimentacao>> listarPorPeriodo(
@@ -102,6 +178,45 @@ public class MovimentacaoController {
         return ResponseEntity.ok(movimentacoes);
     }
 
+    @GetMapping("/export")
+    @Operation(summary = "Exportar movimentações por período", description = "Exporta as movimentações do período em NDJSON ou CSV, em streaming")
+    public ResponseEntity<StreamingResponseBody> exportar(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime inicio,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fim,
+            @RequestParam(defaultValue = "ndjson") String format) {
+        try {
+            movimentacaoService.validarPeriodoExportacao(inicio, fim);
+            if ("csv".equalsIgnoreCase(format)) {
+                return ResponseEntity.ok()
+                        .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+                        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"movimentacoes.csv\"")
+                        .body(saida -> movimentacaoService.escreverExportacaoCsv(inicio, fim, saida));
+            }
+            if ("ndjson".equalsIgnoreCase(format)) {
+                return ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .body(saida -> movimentacaoService.escreverExportacaoNdjson(inicio, fim, saida));
+            }
+            throw new IllegalArgumentException("Formato não suportado: " + format);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/item/{itemId}/saldo-em")
+    @Operation(summary = "Saldo do item em uma data", description = "Saldo do último fechamento de estoque mais as movimentações até a data, em um local ou em todos")
+    public ResponseEntity<SaldoHistoricoDTO> obterSaldoEm(
+            @PathVariable Long itemId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime data,
+            @RequestParam(required = false) Long localId) {
+        try {
+            SaldoHistoricoDTO saldo = movimentacaoService.obterSaldoEm(itemId, localId, data);
+            return ResponseEntity.ok(saldo);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @GetMapping("/item/{itemId}/saldo")
     @Operation(summary = "Calcular saldo atual de um item")
     public ResponseEntity<BigDecimal> calcularSaldoAtual(@PathVariable Long itemId) {
@@ -113,6 +228,35 @@ public class MovimentacaoController {
         }
     }
 
+    @GetMapping("/item/{itemId}/saldos")
+    @Operation(summary = "Listar saldos de um item por local e lote")
+    public ResponseEntity<List<SaldoEstoque>> listarSaldosItem(@PathVariable Long itemId) {
+        List<SaldoEstoque> saldos = movimentacaoService.listarSaldosItem(itemId);
+        return ResponseEntity.ok(saldos);
+    }
+
+    @PostMapping("/saldos/reconstruir")
+    @Operation(summary = "Reconstruir a tabela de saldos a partir das movimentações")
+    public ResponseEntity<VerificacaoSaldoEstoqueDTO> reconstruirSaldos() {
+        try {
+            movimentacaoService.reconstruirSaldos();
+            return ResponseEntity.ok(movimentacaoService.verificarSaldos());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/saldos/verificar")
+    @Operation(summary = "Verificar a tabela de saldos contra as movimentações")
+    public ResponseEntity<VerificacaoSaldoEstoqueDTO> verificarSaldos() {
+        try {
+            VerificacaoSaldoEstoqueDTO verificacao = movimentacaoService.verificarSaldos();
+            return ResponseEntity.ok(verificacao);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @DeleteMapping("/{id}")
     @Operation(summary = "Excluir movimentação")
     public ResponseEntity<Void> excluir(@PathVariable Long id) {
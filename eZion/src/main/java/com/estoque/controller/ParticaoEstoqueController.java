@@ -0,0 +1,45 @@
+package com.estoque.controller;
+
+import com.estoque.dto.ParticaoEstoqueDTO;
+import com.estoque.service.ParticionamentoEstoqueService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.YearMonth;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/estoque/particoes")
+@RequiredArgsConstructor
+@Tag(name = "Partições de Estoque", description = "API para manutenção das partições mensais de movimentações e custos")
+public class ParticaoEstoqueController {
+
+    private final ParticionamentoEstoqueService particionamentoEstoqueService;
+
+    @GetMapping
+    @Operation(summary = "Listar partições", description = "Partições mensais de movimentacao e estoque_custo (vazio se as tabelas não forem particionadas)")
+    public ResponseEntity<List<ParticaoEstoqueDTO>> listar() {
+        return ResponseEntity.ok(particionamentoEstoqueService.listar());
+    }
+
+    @PostMapping("/criar")
+    @Operation(summary = "Criar partições dos próximos meses")
+    public ResponseEntity<List<String>> criar() {
+        return ResponseEntity.ok(particionamentoEstoqueService.criarParticoes());
+    }
+
+    @PostMapping("/{tabela}/{competencia}/arquivar")
+    @Operation(summary = "Arquivar partição", description = "Desanexa a partição de movimentacao de um mês fechado (yyyy-MM) e a move para o schema arquivo_estoque")
+    public ResponseEntity<String> arquivar(@PathVariable String tabela,
+                                           @PathVariable @DateTimeFormat(pattern = "yyyy-MM") YearMonth competencia) {
+        try {
+            return ResponseEntity.ok(particionamentoEstoqueService.arquivar(tabela, competencia));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.estoque.dto;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Ajuste da quantidade disponível de um lote: positivo aumenta, negativo reduz
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AjusteQuantidadeLoteDTO {
+
+    @NotNull(message = "Lote é obrigatório")
+    private Long loteId;
+
+    @NotNull(message = "Quantidade é obrigatória")
+    private BigDecimal quantidade;
+}
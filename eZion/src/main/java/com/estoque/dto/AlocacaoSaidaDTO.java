@@ -0,0 +1,20 @@
+package com.estoque.dto;
+
+import com.estoque.dto.AlocacaoSaidaRequestDTO.CriterioAlocacao;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AlocacaoSaidaDTO {
+    private Long estoqueItemId;
+    private Long localId;
+    private BigDecimal quantidade;
+    private CriterioAlocacao criterio;
+    private List<LinhaAlocacaoLoteDTO> lotes;
+}
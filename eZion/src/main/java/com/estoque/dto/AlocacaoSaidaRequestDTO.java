@@ -0,0 +1,52 @@
+package com.estoque.dto;
+
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Pedido de saída com alocação automática de lotes
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AlocacaoSaidaRequestDTO {
+
+    /**
+     * Ordem de consumo dos lotes
+     */
+    public enum CriterioAlocacao {
+        // Primeiro a entrar, primeiro a sair (data de entrada do lote)
+        FIFO,
+        // Primeiro a vencer, primeiro a sair (data de validade do lote)
+        FEFO
+    }
+
+    @NotNull(message = "Item de estoque é obrigatório")
+    private Long estoqueItemId;
+
+    @NotNull(message = "Local é obrigatório")
+    private Long localId;
+
+    @NotNull(message = "Quantidade é obrigatória")
+    @DecimalMin(value = "0.01", message = "Quantidade deve ser maior que zero")
+    private BigDecimal quantidade;
+
+    private CriterioAlocacao criterio = CriterioAlocacao.FIFO;
+
+    @NotNull(message = "Usuário responsável é obrigatório")
+    private Long usuarioId;
+
+    @NotBlank(message = "Observações são obrigatórias")
+    @Size(max = 255, message = "Observações devem ter no máximo 255 caracteres")
+    private String observacoes;
+
+    private LocalDateTime dataMovimentacao;
+}
@@ -0,0 +1,36 @@
+package com.estoque.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Pedido de criação de vários lotes (ex.: recebimento de um contêiner) com numeração gerada pelo servidor.
+ * O padrão do número aceita {ITEM} (código do item), {DATA} (data de entrada, yyyyMMdd) e {SEQ}
+ * (número sequencial único); sem padrão, usa {ITEM}-{DATA}-{SEQ}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CriacaoLotesRequestDTO {
+
+    @Size(max = 40, message = "O padrão do número do lote deve ter no máximo 40 caracteres")
+    private String padraoNumero;
+
+    @NotNull(message = "Data de entrada é obrigatória")
+    private LocalDate dataEntrada;
+
+    @Size(max = 100, message = "Fornecedor deve ter no máximo 100 caracteres")
+    private String fornecedor;
+
+    @NotEmpty(message = "Informe ao menos um lote")
+    @Valid
+    private List<ItemCriacaoLoteDTO> lotes;
+}
@@ -0,0 +1,22 @@
+package com.estoque.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DivergenciaCustoMedioDTO {
+    private Long estoqueCustoId;
+    private LocalDateTime dataCusto;
+    private BigDecimal custoMedioRegistrado;
+    private BigDecimal custoMedioEsperado;
+    private BigDecimal quantidadeAcumuladaRegistrada;
+    private BigDecimal quantidadeAcumuladaEsperada;
+    private BigDecimal valorAcumuladoRegistrado;
+    private BigDecimal valorAcumuladoEsperado;
+}
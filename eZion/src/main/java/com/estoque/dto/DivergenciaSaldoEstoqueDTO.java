@@ -0,0 +1,18 @@
+package com.estoque.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DivergenciaSaldoEstoqueDTO {
+    private Long estoqueItemId;
+    private Long localId;
+    private Long loteId;
+    private BigDecimal saldoRegistrado;
+    private BigDecimal saldoEsperado;
+}
@@ -0,0 +1,18 @@
+package com.estoque.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FilaRecalculoCustoDTO {
+    private long itensPendentes;
+    private long itensEmProcessamento;
+    private long atrasoMaximoMs;
+    private long eventosRecebidos;
+    private long eventosAgrupados;
+    private long recalculosExecutados;
+    private long recalculosComFalha;
+}
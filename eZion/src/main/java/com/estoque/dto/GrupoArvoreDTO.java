@@ -0,0 +1,24 @@
+package com.estoque.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Nó da árvore de grupos, com os filhos em ordem de nome
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GrupoArvoreDTO {
+    private Long id;
+    private String nome;
+    private String codigo;
+    private Long grupoPaiId;
+    private Integer nivel;
+    private Boolean ativo;
+    private List<GrupoArvoreDTO> filhos = new ArrayList<>();
+}
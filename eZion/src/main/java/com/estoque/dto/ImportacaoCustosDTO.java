@@ -0,0 +1,18 @@
+package com.estoque.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportacaoCustosDTO {
+    private int totalLinhas;
+    private int linhasImportadas;
+    private int linhasComErro;
+    private int itensRecalculados;
+    private List<ErroLinhaDTO> erros;
+}
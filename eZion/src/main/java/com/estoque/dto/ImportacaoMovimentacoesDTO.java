@@ -0,0 +1,19 @@
+package com.estoque.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportacaoMovimentacoesDTO {
+    private int totalLinhas;
+    private int linhasImportadas;
+    private int linhasComErro;
+    // ID da movimentação gravada para cada linha, na ordem enviada (nulo nas linhas com erro)
+    private List<Long> movimentacaoIds;
+    private List<ErroLinhaDTO> erros;
+}
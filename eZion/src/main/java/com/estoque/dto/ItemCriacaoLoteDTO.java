@@ -0,0 +1,32 @@
+package com.estoque.dto;
+
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Lote a criar em uma criação em lote; o número do lote é gerado pelo servidor
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ItemCriacaoLoteDTO {
+
+    @NotNull(message = "Item de estoque é obrigatório")
+    private Long estoqueItemId;
+
+    @NotNull(message = "Quantidade é obrigatória")
+    @DecimalMin(value = "0.01", message = "Quantidade deve ser maior que zero")
+    private BigDecimal quantidadeTotal;
+
+    private LocalDate dataValidade;
+
+    @Size(max = 255, message = "Observações devem ter no máximo 255 caracteres")
+    private String observacoes;
+}
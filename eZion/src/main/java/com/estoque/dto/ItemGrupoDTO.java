@@ -0,0 +1,22 @@
+package com.estoque.dto;
+
+import com.estoque.model.EstoqueItem.TipoItem;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Item de estoque de um grupo ou de seus subgrupos
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ItemGrupoDTO {
+    private Long id;
+    private String codigo;
+    private String descricao;
+    private TipoItem tipoItem;
+    private Long grupoId;
+    private String grupoNome;
+    private Boolean ativo;
+}
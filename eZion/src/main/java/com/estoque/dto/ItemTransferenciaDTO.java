@@ -0,0 +1,27 @@
+package com.estoque.dto;
+
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Item de uma transferência entre locais; o lote (opcional) acompanha a quantidade para o destino
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ItemTransferenciaDTO {
+
+    @NotNull(message = "Item de estoque é obrigatório")
+    private Long estoqueItemId;
+
+    private Long loteId;
+
+    @NotNull(message = "Quantidade é obrigatória")
+    @DecimalMin(value = "0.01", message = "Quantidade deve ser maior que zero")
+    private BigDecimal quantidade;
+}
@@ -0,0 +1,27 @@
+package com.estoque.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Página do kardex de um item. O saldo inicial é o acumulado antes da primeira linha da página;
+ * a próxima página é pedida com o cursor (proximaData, proximoId), nulo na última página.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class KardexDTO {
+    private Long estoqueItemId;
+    private LocalDateTime inicio;
+    private LocalDateTime fim;
+    private BigDecimal saldoInicialQuantidade;
+    private BigDecimal saldoInicialValor;
+    private List<LinhaKardexDTO> linhas;
+    private LocalDateTime proximaData;
+    private Long proximoId;
+}
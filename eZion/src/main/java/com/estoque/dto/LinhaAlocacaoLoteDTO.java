@@ -0,0 +1,20 @@
+package com.estoque.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LinhaAlocacaoLoteDTO {
+    private Long loteId;
+    private String numeroLote;
+    private LocalDate dataValidade;
+    private BigDecimal quantidade;
+    private Long movimentacaoId;
+    private BigDecimal custo;
+}
@@ -0,0 +1,43 @@
+package com.estoque.dto;
+
+import com.estoque.model.Movimentacao.TipoMovimentacao;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Linha do kardex: a movimentação e os saldos acumulados depois dela
+ */
+@Data
+@NoArgsConstructor
+public class LinhaKardexDTO {
+    private Long movimentacaoId;
+    private LocalDateTime dataMovimentacao;
+    private TipoMovimentacao tipoMovimentacao;
+    private Long localId;
+    private Long loteId;
+    private String observacoes;
+    private BigDecimal quantidade;
+    private BigDecimal valor;
+    private BigDecimal custoUnitario;
+    private BigDecimal saldoQuantidade;
+    private BigDecimal saldoValor;
+    private BigDecimal custoMedio;
+
+    /**
+     * Construtor usado pela projeção JPQL
+     */
+    public LinhaKardexDTO(Long movimentacaoId, LocalDateTime dataMovimentacao, TipoMovimentacao tipoMovimentacao,
+                          Long localId, Long loteId, String observacoes, BigDecimal quantidade, BigDecimal valor) {
+        this.movimentacaoId = movimentacaoId;
+        this.dataMovimentacao = dataMovimentacao;
+        this.tipoMovimentacao = tipoMovimentacao;
+        this.localId = localId;
+        this.loteId = loteId;
+        this.observacoes = observacoes;
+        this.quantidade = quantidade;
+        this.valor = valor;
+    }
+}
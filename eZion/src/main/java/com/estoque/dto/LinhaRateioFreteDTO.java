@@ -0,0 +1,35 @@
+package com.estoque.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Linha de custo participante de um rateio de frete
+ */
+@Data
+@NoArgsConstructor
+public class LinhaRateioFreteDTO {
+    private Long estoqueCustoId;
+    private Long estoqueItemId;
+    private LocalDateTime dataCusto;
+    private BigDecimal quantidade;
+    private BigDecimal valor;
+    private BigDecimal pesoUnitario;
+    private BigDecimal freteRateado;
+
+    /**
+     * Construtor usado pela projeção JPQL
+     */
+    public LinhaRateioFreteDTO(Long estoqueCustoId, Long estoqueItemId, LocalDateTime dataCusto,
+                               BigDecimal quantidade, BigDecimal valor, BigDecimal pesoUnitario) {
+        this.estoqueCustoId = estoqueCustoId;
+        this.estoqueItemId = estoqueItemId;
+        this.dataCusto = dataCusto;
+        this.quantidade = quantidade;
+        this.valor = valor;
+        this.pesoUnitario = pesoUnitario;
+    }
+}
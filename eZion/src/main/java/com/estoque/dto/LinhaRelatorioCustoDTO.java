@@ -0,0 +1,84 @@
+package com.estoque.dto;
+
+import com.estoque.model.EstoqueCusto.TipoCusto;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Linha do relatório de custos e impostos: totais de um tipo de custo em um mês, por item ou por grupo
+ */
+@Data
+@NoArgsConstructor
+public class LinhaRelatorioCustoDTO {
+
+    public enum Agrupamento {
+        ITEM, GRUPO
+    }
+
+    private String competencia;
+    private TipoCusto tipoCusto;
+    private Long estoqueItemId;
+    private String codigoItem;
+    private Long grupoId;
+    private String descricao;
+    private Long quantidadeLancamentos;
+    private BigDecimal quantidade;
+    private BigDecimal valor;
+    private BigDecimal icms;
+    private BigDecimal ipi;
+    private BigDecimal pis;
+    private BigDecimal cofins;
+    private BigDecimal icmsSt;
+    private BigDecimal iss;
+    private BigDecimal irpj;
+    private BigDecimal csll;
+    private BigDecimal totalImpostos;
+    private BigDecimal freteRateado;
+
+    /**
+     * Construtor usado pela projeção JPQL agrupada por item
+     */
+    public LinhaRelatorioCustoDTO(TipoCusto tipoCusto, Long estoqueItemId, String codigoItem, Long grupoId, String descricao,
+                                  Long quantidadeLancamentos, BigDecimal quantidade, BigDecimal valor,
+                                  BigDecimal icms, BigDecimal ipi, BigDecimal pis, BigDecimal cofins,
+                                  BigDecimal icmsSt, BigDecimal iss, BigDecimal irpj, BigDecimal csll,
+                                  BigDecimal freteRateado) {
+        this(tipoCusto, grupoId, descricao, quantidadeLancamentos, quantidade, valor,
+                icms, ipi, pis, cofins, icmsSt, iss, irpj, csll, freteRateado);
+        this.estoqueItemId = estoqueItemId;
+        this.codigoItem = codigoItem;
+    }
+
+    /**
+     * Construtor usado pela projeção JPQL agrupada por grupo
+     */
+    public LinhaRelatorioCustoDTO(TipoCusto tipoCusto, Long grupoId, String descricao,
+                                  Long quantidadeLancamentos, BigDecimal quantidade, BigDecimal valor,
+                                  BigDecimal icms, BigDecimal ipi, BigDecimal pis, BigDecimal cofins,
+                                  BigDecimal icmsSt, BigDecimal iss, BigDecimal irpj, BigDecimal csll,
+                                  BigDecimal freteRateado) {
+        this.tipoCusto = tipoCusto;
+        this.grupoId = grupoId;
+        this.descricao = descricao;
+        this.quantidadeLancamentos = quantidadeLancamentos;
+        this.quantidade = zeroSeNulo(quantidade);
+        this.valor = zeroSeNulo(valor);
+        this.icms = zeroSeNulo(icms);
+        this.ipi = zeroSeNulo(ipi);
+        this.pis = zeroSeNulo(pis);
+        this.cofins = zeroSeNulo(cofins);
+        this.icmsSt = zeroSeNulo(icmsSt);
+        this.iss = zeroSeNulo(iss);
+        this.irpj = zeroSeNulo(irpj);
+        this.csll = zeroSeNulo(csll);
+        this.totalImpostos = this.icms.add(this.ipi).add(this.pis).add(this.cofins)
+                .add(this.icmsSt).add(this.iss).add(this.irpj).add(this.csll);
+        this.freteRateado = zeroSeNulo(freteRateado);
+    }
+
+    private static BigDecimal zeroSeNulo(BigDecimal valor) {
+        return valor != null ? valor : BigDecimal.ZERO;
+    }
+}
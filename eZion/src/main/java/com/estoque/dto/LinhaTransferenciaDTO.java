@@ -0,0 +1,19 @@
+package com.estoque.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LinhaTransferenciaDTO {
+    private Long estoqueItemId;
+    private Long loteId;
+    private BigDecimal quantidade;
+    private BigDecimal custo;
+    private Long saidaId;
+    private Long entradaId;
+}
@@ -0,0 +1,14 @@
+package com.estoque.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoteCriadoDTO {
+    private Long loteId;
+    private String numeroLote;
+    private Long estoqueItemId;
+}
@@ -0,0 +1,23 @@
+package com.estoque.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Lote ativo com quantidade disponível, em ordem FIFO; a quantidade acumulada soma este lote e os anteriores
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoteDisponivelDTO {
+    private Long loteId;
+    private String numeroLote;
+    private LocalDate dataEntrada;
+    private LocalDate dataValidade;
+    private BigDecimal quantidadeDisponivel;
+    private BigDecimal quantidadeAcumulada;
+}
@@ -0,0 +1,20 @@
+package com.estoque.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Lote ativo com data de validade, como mantido no índice de vencimentos
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoteValidadeDTO {
+    private Long loteId;
+    private String numeroLote;
+    private Long estoqueItemId;
+    private LocalDate dataValidade;
+}
@@ -0,0 +1,31 @@
+package com.estoque.dto;
+
+import com.estoque.model.Movimentacao.TipoMovimentacao;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Linha plana da exportação de movimentações (sem associações gerenciadas)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MovimentacaoExportDTO {
+    private Long id;
+    private LocalDateTime dataMovimentacao;
+    private TipoMovimentacao tipoMovimentacao;
+    private Long estoqueItemId;
+    private String codigoItem;
+    private Long localId;
+    private String nomeLocal;
+    private Long loteId;
+    private String numeroLote;
+    private BigDecimal quantidade;
+    private BigDecimal custo;
+    private Long usuarioId;
+    private String observacoes;
+}
@@ -0,0 +1,18 @@
+package com.estoque.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Partição mensal de uma tabela de estoque particionada
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ParticaoEstoqueDTO {
+    private String tabela;
+    private String particao;
+    private String limites;
+    private Long linhasEstimadas;
+}
@@ -0,0 +1,19 @@
+package com.estoque.dto;
+
+import com.estoque.dto.RateioFreteRequestDTO.CriterioRateio;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RateioFreteDTO {
+    private BigDecimal valorFrete;
+    private CriterioRateio criterio;
+    private int itensRecalculados;
+    private List<LinhaRateioFreteDTO> linhas;
+}
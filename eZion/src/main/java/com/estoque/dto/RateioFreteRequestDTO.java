@@ -0,0 +1,39 @@
+package com.estoque.dto;
+
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Pedido de rateio de frete: informe o pedido de compra ou a lista de custos a ratear
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RateioFreteRequestDTO {
+
+    /**
+     * Critério de rateio do frete entre as linhas
+     */
+    public enum CriterioRateio {
+        QUANTIDADE,
+        VALOR,
+        PESO
+    }
+
+    @NotNull(message = "Valor do frete é obrigatório")
+    @DecimalMin(value = "0.00", message = "Valor do frete não pode ser negativo")
+    private BigDecimal valorFrete;
+
+    @NotNull(message = "Critério de rateio é obrigatório")
+    private CriterioRateio criterio;
+
+    private Long pedidoCompraId;
+
+    private List<Long> estoqueCustoIds;
+}
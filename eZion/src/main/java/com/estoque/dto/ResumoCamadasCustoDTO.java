@@ -0,0 +1,35 @@
+package com.estoque.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Resumo das camadas de custo PEPS abertas de um item
+ */
+@Data
+@NoArgsConstructor
+public class ResumoCamadasCustoDTO {
+    private Long estoqueItemId;
+    private Long camadasAbertas;
+    private BigDecimal quantidadeEmEstoque;
+    private BigDecimal valorEmEstoque;
+    private BigDecimal custoUnitarioMedio;
+
+    /**
+     * Construtor usado pela projeção JPQL; as somas chegam nulas quando não há camadas abertas
+     */
+    public ResumoCamadasCustoDTO(Long estoqueItemId, Long camadasAbertas, BigDecimal quantidadeEmEstoque, BigDecimal valorEmEstoque) {
+        this.estoqueItemId = estoqueItemId;
+        this.camadasAbertas = camadasAbertas;
+        this.quantidadeEmEstoque = quantidadeEmEstoque != null ? quantidadeEmEstoque : BigDecimal.ZERO;
+        this.valorEmEstoque = valorEmEstoque != null ? valorEmEstoque : BigDecimal.ZERO;
+        if (this.quantidadeEmEstoque.compareTo(BigDecimal.ZERO) > 0) {
+            this.custoUnitarioMedio = this.valorEmEstoque.divide(this.quantidadeEmEstoque, 4, RoundingMode.HALF_UP);
+        } else {
+            this.custoUnitarioMedio = BigDecimal.ZERO;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.estoque.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Resumo dos custos de um item, calculado por uma única consulta de agregação
+ */
+@Data
+@NoArgsConstructor
+public class ResumoCustoItemDTO {
+    private Long estoqueItemId;
+    private Long quantidadeLancamentos;
+    private BigDecimal custoTotal;
+    private BigDecimal totalIcms;
+    private BigDecimal totalIpi;
+    private BigDecimal totalPis;
+    private BigDecimal totalCofins;
+    private BigDecimal totalIcmsSt;
+    private BigDecimal totalIss;
+    private BigDecimal totalIrpj;
+    private BigDecimal totalCsll;
+    private BigDecimal totalImpostos;
+    private BigDecimal freteTotalRateado;
+    private BigDecimal custoTotalComFrete;
+    private BigDecimal custoMedioPonderado;
+
+    /**
+     * Construtor usado pela projeção JPQL; as somas chegam nulas quando o item não tem lançamentos
+     */
+    public ResumoCustoItemDTO(Long estoqueItemId, Long quantidadeLancamentos, BigDecimal custoTotal,
+                              BigDecimal totalIcms, BigDecimal totalIpi, BigDecimal totalPis, BigDecimal totalCofins,
+                              BigDecimal totalIcmsSt, BigDecimal totalIss, BigDecimal totalIrpj, BigDecimal totalCsll,
+                              BigDecimal freteTotalRateado, BigDecimal valorPonderado, BigDecimal quantidadePonderada) {
+        this.estoqueItemId = estoqueItemId;
+        this.quantidadeLancamentos = quantidadeLancamentos;
+        this.custoTotal = zeroSeNulo(custoTotal);
+        this.totalIcms = zeroSeNulo(totalIcms);
+        this.totalIpi = zeroSeNulo(totalIpi);
+        this.totalPis = zeroSeNulo(totalPis);
+        this.totalCofins = zeroSeNulo(totalCofins);
+        this.totalIcmsSt = zeroSeNulo(totalIcmsSt);
+        this.totalIss = zeroSeNulo(totalIss);
+        this.totalIrpj = zeroSeNulo(totalIrpj);
+        this.totalCsll = zeroSeNulo(totalCsll);
+        this.totalImpostos = this.totalIcms.add(this.totalIpi).add(this.totalPis).add(this.totalCofins)
+                .add(this.totalIcmsSt).add(this.totalIss).add(this.totalIrpj).add(this.totalCsll);
+        this.freteTotalRateado = zeroSeNulo(freteTotalRateado);
+        this.custoTotalComFrete = this.custoTotal.add(this.totalImpostos).add(this.freteTotalRateado);
+
+        if (quantidadePonderada != null && quantidadePonderada.compareTo(BigDecimal.ZERO) > 0) {
+            this.custoMedioPonderado = valorPonderado.divide(quantidadePonderada, 4, RoundingMode.HALF_UP);
+        } else {
+            this.custoMedioPonderado = BigDecimal.ZERO;
+        }
+    }
+
+    private static BigDecimal zeroSeNulo(BigDecimal valor) {
+        return valor != null ? valor : BigDecimal.ZERO;
+    }
+}
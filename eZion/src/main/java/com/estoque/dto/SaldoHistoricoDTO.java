@@ -0,0 +1,24 @@
+package com.estoque.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Saldo do item (em um local ou em todos) em uma data: saldo do último fechamento anterior
+ * à data somado às movimentações desde então
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SaldoHistoricoDTO {
+    private Long estoqueItemId;
+    private Long localId;
+    private LocalDateTime data;
+    private String competenciaFechamento;
+    private BigDecimal quantidade;
+    private BigDecimal valor;
+}
@@ -0,0 +1,18 @@
+package com.estoque.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Saldo acumulado do item (quantidade e valor) até um ponto no tempo
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SaldoKardexDTO {
+    private BigDecimal quantidade;
+    private BigDecimal valor;
+}
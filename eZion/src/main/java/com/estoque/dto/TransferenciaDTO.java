@@ -0,0 +1,20 @@
+package com.estoque.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransferenciaDTO {
+    private UUID transferenciaId;
+    private Long localOrigemId;
+    private Long localDestinoId;
+    private LocalDateTime dataMovimentacao;
+    private List<LinhaTransferenciaDTO> itens;
+}
@@ -0,0 +1,41 @@
+package com.estoque.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Pedido de transferência de um ou mais itens entre dois locais
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransferenciaRequestDTO {
+
+    @NotNull(message = "Local de origem é obrigatório")
+    private Long localOrigemId;
+
+    @NotNull(message = "Local de destino é obrigatório")
+    private Long localDestinoId;
+
+    @NotNull(message = "Usuário responsável é obrigatório")
+    private Long usuarioId;
+
+    @NotBlank(message = "Observações são obrigatórias")
+    @Size(max = 255, message = "Observações devem ter no máximo 255 caracteres")
+    private String observacoes;
+
+    private LocalDateTime dataMovimentacao;
+
+    @NotEmpty(message = "Informe ao menos um item")
+    @Valid
+    private List<ItemTransferenciaDTO> itens;
+}
@@ -0,0 +1,17 @@
+package com.estoque.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VerificacaoCustoMedioDTO {
+    private Long estoqueItemId;
+    private int lancamentosVerificados;
+    private boolean consistente;
+    private List<DivergenciaCustoMedioDTO> divergencias;
+}
@@ -0,0 +1,16 @@
+package com.estoque.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VerificacaoSaldoEstoqueDTO {
+    private int saldosVerificados;
+    private boolean consistente;
+    private List<DivergenciaSaldoEstoqueDTO> divergencias;
+}
@@ -0,0 +1,66 @@
+package com.estoque.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Camada de custo PEPS: uma entrada de compra com a quantidade e o valor ainda em estoque.
+ * As saídas consomem as camadas abertas em ordem de entrada.
+ */
+@Entity
+@Table(name = "camada_custo", indexes = {
+    @Index(name = "idx_camada_custo_item_aberta", columnList = "estoque_item_id, aberta, data_entrada"),
+    @Index(name = "idx_camada_custo_estoque_custo", columnList = "estoque_custo_id", unique = true)
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CamadaCusto {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "estoque_item_id", nullable = false)
+    private Long estoqueItemId;
+
+    @Column(name = "lote_id")
+    private Long loteId;
+
+    // Lançamento de compra que originou a camada
+    @Column(name = "estoque_custo_id", nullable = false)
+    private Long estoqueCustoId;
+
+    @Column(name = "data_entrada", nullable = false)
+    private LocalDateTime dataEntrada;
+
+    @Column(name = "quantidade_original", precision = 15, scale = 4, nullable = false)
+    private BigDecimal quantidadeOriginal;
+
+    @Column(name = "quantidade_restante", precision = 15, scale = 4, nullable = false)
+    private BigDecimal quantidadeRestante;
+
+    @Column(name = "custo_unitario", precision = 19, scale = 6, nullable = false)
+    private BigDecimal custoUnitario;
+
+    @Column(name = "valor_restante", precision = 19, scale = 4, nullable = false)
+    private BigDecimal valorRestante;
+
+    @Column(nullable = false)
+    private Boolean aberta = true;
+
+    @Column(nullable = false)
+    private LocalDateTime dataAtualizacao;
+
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        dataAtualizacao = LocalDateTime.now();
+        aberta = quantidadeRestante.compareTo(BigDecimal.ZERO) > 0;
+    }
+}
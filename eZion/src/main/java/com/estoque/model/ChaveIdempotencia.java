@@ -0,0 +1,39 @@
+package com.estoque.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Chave de idempotência (cabeçalho Idempotency-Key) de uma operação já executada e a resposta
+ * devolvida, em JSON. A chave única impede que uma repetição da requisição execute a operação de novo.
+ */
+@Entity
+@Table(name = "chave_idempotencia", indexes = {
+    @Index(name = "idx_chave_idempotencia_chave", columnList = "chave", unique = true),
+    @Index(name = "idx_chave_idempotencia_data", columnList = "data_criacao")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChaveIdempotencia {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 100)
+    private String chave;
+
+    @Column(nullable = false, length = 50)
+    private String operacao;
+
+    @Column(columnDefinition = "TEXT")
+    private String resposta;
+
+    @Column(name = "data_criacao", nullable = false)
+    private LocalDateTime dataCriacao;
+}
@@ -0,0 +1,45 @@
+package com.estoque.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Consumo de uma camada de custo PEPS por uma movimentação de saída (permite o estorno)
+ */
+@Entity
+@Table(name = "consumo_camada_custo", indexes = {
+    @Index(name = "idx_consumo_camada_movimentacao", columnList = "movimentacao_id"),
+    @Index(name = "idx_consumo_camada_item", columnList = "estoque_item_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConsumoCamadaCusto {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "camada_custo_id", nullable = false)
+    private Long camadaCustoId;
+
+    @Column(name = "movimentacao_id", nullable = false)
+    private Long movimentacaoId;
+
+    @Column(name = "estoque_item_id", nullable = false)
+    private Long estoqueItemId;
+
+    @Column(precision = 15, scale = 4, nullable = false)
+    private BigDecimal quantidade;
+
+    @Column(precision = 19, scale = 4, nullable = false)
+    private BigDecimal valor;
+
+    @Column(name = "data_consumo", nullable = false)
+    private LocalDateTime dataConsumo;
+}
@@ -1,5 +1,7 @@
 package com.estoque.model;
 
+import com.compras.model.PedidoCompra;
+import com.estoque.util.AritmeticaFixa;
 import com.seguranca.model.Usuario;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
@@ -12,7 +14,11 @@ import java.math.RoundingMode;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "estoque_custo")
+@Table(name = "estoque_custo", indexes = {
+    @Index(name = "idx_estoque_custo_item_data", columnList = "estoque_item_id, data_custo"),
+    @Index(name = "idx_estoque_custo_pedido", columnList = "pedido_compra_id"),
+    @Index(name = "idx_estoque_custo_data_tipo", columnList = "data_custo, tipo_custo")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -61,6 +67,11 @@ public class EstoqueCusto {
     @JoinColumn(name = "lote_id")
     private Lote lote;
 
+    // Pedido de compra de origem (usado no rateio de frete da compra)
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "pedido_compra_id")
+    private PedidoCompra pedidoCompra;
+
     @NotNull(message = "Tipo de custo é obrigatório")
     @Enumerated(EnumType.STRING)
     @Column(name = "tipo_custo", nullable = false, length = 20)
@@ -91,6 +102,13 @@ public class EstoqueCusto {
     @Column(precision = 15, scale = 4)
     private BigDecimal quantidade;
 
+    // Acumuladores do razão de custo médio (preenchidos apenas em lançamentos de compra)
+    @Column(name = "quantidade_acumulada", precision = 19, scale = 4)
+    private BigDecimal quantidadeAcumulada;
+
+    @Column(name = "valor_acumulado", precision = 19, scale = 4)
+    private BigDecimal valorAcumulado;
+
     @DecimalMin(value = "0.00", message = "Valor base não pode ser negativo")
     @Column(name = "valor_base", precision = 15, scale = 4)
     private BigDecimal valorBase;
@@ -161,23 +179,14 @@ public class EstoqueCusto {
      * Calcula o total de impostos
      */
     public BigDecimal calcularTotalImpostos() {
-        BigDecimal total = BigDecimal.ZERO;
-        if (icms != null) total = total.add(icms);
-        if (ipi != null) total = total.add(ipi);
-        if (pis != null) total = total.add(pis);
-        if (cofins != null) total = total.add(cofins);
-        if (icmsSt != null) total = total.add(icmsSt);
-        if (iss != null) total = total.add(iss);
-        if (irpj != null) total = total.add(irpj);
-        if (csll != null) total = total.add(csll);
-        return total;
+        return AritmeticaFixa.somar(icms, ipi, pis, cofins, icmsSt, iss, irpj, csll);
     }
 
     /**
      * Calcula o custo total incluindo impostos
      */
     public BigDecimal calcularCustoTotalComImpostos() {
-        return valor.add(calcularTotalImpostos());
+        return AritmeticaFixa.somar(valor, icms, ipi, pis, cofins, icmsSt, iss, irpj, csll);
     }
 
     /**
@@ -211,15 +220,19 @@ public class EstoqueCusto {
      * Calcula o custo total incluindo frete rateado
      */
     public BigDecimal calcularCustoTotalComFrete() {
-        BigDecimal custoTotal = calcularCustoTotalComImpostos();
-        if (freteRateado != null) {
-            custoTotal = custoTotal.add(freteRateado);
-        }
-        return custoTotal;
+        return AritmeticaFixa.somar(valor, icms, ipi, pis, cofins, icmsSt, iss, irpj, csll, freteRateado);
     }
 
     @PrePersist
     protected void onCreate() {
+        aplicarValoresPadrao();
+    }
+
+    /**
+     * Preenche datas de controle e valores derivados antes da inclusão.
+     * Também usado pela importação em lote, que grava via JDBC sem passar pelo @PrePersist.
+     */
+    public void aplicarValoresPadrao() {
         dataCriacao = LocalDateTime.now();
         dataAtualizacao = LocalDateTime.now();
         if (dataCusto == null) {
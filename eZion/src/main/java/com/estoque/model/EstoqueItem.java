@@ -10,7 +10,9 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "estoque_item")
+@Table(name = "estoque_item", indexes = {
+    @Index(name = "idx_estoque_item_grupo", columnList = "grupo_id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -38,6 +40,24 @@ public class EstoqueItem {
         }
     }
 
+    /**
+     * Enumeração dos métodos de custeio (valoração do estoque)
+     */
+    public enum MetodoCusteio {
+        CUSTO_MEDIO("Custo Médio"),
+        PEPS("PEPS - Primeiro a Entrar, Primeiro a Sair");
+
+        private final String descricao;
+
+        MetodoCusteio(String descricao) {
+            this.descricao = descricao;
+        }
+
+        public String getDescricao() {
+            return descricao;
+        }
+    }
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -90,6 +110,16 @@ public class EstoqueItem {
     @Column(precision = 15, scale = 4)
     private BigDecimal quantidadeMaxima = BigDecimal.ZERO;
 
+    // Itens sem método informado (cadastros anteriores) são tratados como custo médio
+    @Enumerated(EnumType.STRING)
+    @Column(name = "metodo_custeio", length = 20)
+    private MetodoCusteio metodoCusteio = MetodoCusteio.CUSTO_MEDIO;
+
+    // Peso unitário, usado no rateio de frete por peso
+    @DecimalMin(value = "0.00", message = "Peso não pode ser negativo")
+    @Column(precision = 15, scale = 4)
+    private BigDecimal peso;
+
     @Column(nullable = false)
     private Boolean ativo = true;
 
@@ -0,0 +1,36 @@
+package com.estoque.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Fechamento mensal de estoque. A competência é o primeiro dia do mês fechado; movimentações
+ * com data até o fim desse mês não podem mais ser registradas nem excluídas.
+ */
+@Entity
+@Table(name = "fechamento_estoque", indexes = {
+    @Index(name = "idx_fechamento_estoque_competencia", columnList = "competencia", unique = true)
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FechamentoEstoque {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private LocalDate competencia;
+
+    @Column(name = "quantidade_saldos", nullable = false)
+    private Integer quantidadeSaldos = 0;
+
+    @Column(name = "data_fechamento", nullable = false)
+    private LocalDateTime dataFechamento;
+}
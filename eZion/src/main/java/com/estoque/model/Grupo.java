@@ -14,6 +14,8 @@ import java.time.LocalDateTime;
 @Entity
 @Table(name = "grupo", uniqueConstraints = {
     @UniqueConstraint(columnNames = "nome")
+}, indexes = {
+    @Index(name = "idx_grupo_caminho", columnList = "caminho")
 })
 @Data
 @NoArgsConstructor
@@ -37,6 +39,19 @@ public class Grupo {
     @JoinColumn(name = "grupo_pai_id")
     private Grupo grupoPai;
 
+    /**
+     * Caminho materializado: IDs da raiz até o próprio grupo (ex.: /1/5/12/), mantido pelo GrupoService.
+     * A subárvore de um grupo são os grupos cujo caminho começa com o dele (no PostgreSQL, o índice
+     * atende ao LIKE por prefixo com collation C ou varchar_pattern_ops, criado por db/indices-grupo.sql).
+     */
+    @Column(length = 500)
+    private String caminho;
+
+    /**
+     * Profundidade na hierarquia (raiz = 0), mantida junto com o caminho
+     */
+    private Integer nivel;
+
     @Column(nullable = false)
     private Boolean ativo = true;
 
@@ -52,11 +67,4 @@ public class Grupo {
     public boolean isRaiz() {
         return grupoPai == null;
     }
-
-    public int getNivel() {
-        if (isRaiz()) {
-            return 0;
-        }
-        return grupoPai.getNivel() + 1;
-    }
 }
\ No newline at end of file
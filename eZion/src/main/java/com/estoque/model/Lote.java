@@ -11,7 +11,9 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "lote")
+@Table(name = "lote", indexes = {
+    @Index(name = "idx_lote_item_ativo", columnList = "estoque_item_id, ativo")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -59,6 +61,13 @@ public class Lote {
     @Column(nullable = false)
     private Boolean ativo = true;
 
+    /**
+     * Versão para bloqueio otimista; os updates em massa de quantidade também a incrementam
+     */
+    @Version
+    @Column(nullable = false, columnDefinition = "BIGINT DEFAULT 0")
+    private Long versao;
+
     @Column(nullable = false, updatable = false)
     private LocalDateTime dataCriacao;
 
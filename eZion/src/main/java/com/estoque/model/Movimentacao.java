@@ -9,9 +9,14 @@ import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.UUID;
 
 @Entity
-@Table(name = "movimentacao")
+@Table(name = "movimentacao", indexes = {
+    @Index(name = "idx_movimentacao_data", columnList = "data_movimentacao, id"),
+    @Index(name = "idx_movimentacao_item_data", columnList = "estoque_item_id, data_movimentacao, id"),
+    @Index(name = "idx_movimentacao_transferencia", columnList = "transferencia_id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -81,6 +86,12 @@ public class Movimentacao {
     @JoinColumn(name = "usuario_id", nullable = false)
     private Usuario usuario;
 
+    /**
+     * Identificador comum à saída e à entrada de uma transferência entre locais (nulo nas demais)
+     */
+    @Column(name = "transferencia_id", updatable = false)
+    private UUID transferenciaId;
+
     @Column(nullable = false, updatable = false)
     private LocalDateTime dataCriacao;
 
@@ -0,0 +1,54 @@
+package com.estoque.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Bloco de itens do job de recálculo de custos médios.
+ * Cada bloco cobre uma faixa contígua de IDs de item e é gravado na mesma transação
+ * que atualiza os custos, permitindo retomar o job a partir do último bloco confirmado.
+ */
+@Entity
+@Table(name = "recalculo_custo_bloco", indexes = {
+    @Index(name = "idx_recalculo_bloco_job_status", columnList = "job_id, status")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecalculoCustoBloco {
+
+    /**
+     * Enumeração das situações do bloco
+     */
+    public enum StatusBloco {
+        PENDENTE,
+        CONCLUIDO,
+        FALHOU
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "job_id", nullable = false)
+    private Long jobId;
+
+    @Column(nullable = false)
+    private Integer numero;
+
+    @Column(name = "item_id_inicial", nullable = false)
+    private Long itemIdInicial;
+
+    @Column(name = "item_id_final", nullable = false)
+    private Long itemIdFinal;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private StatusBloco status = StatusBloco.PENDENTE;
+
+    private LocalDateTime dataConclusao;
+}
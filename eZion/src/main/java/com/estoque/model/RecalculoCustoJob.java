@@ -0,0 +1,87 @@
+package com.estoque.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "recalculo_custo_job")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecalculoCustoJob {
+
+    /**
+     * Enumeração das situações do job de recálculo
+     */
+    public enum StatusJob {
+        EM_EXECUCAO("Em execução"),
+        CONCLUIDO("Concluído"),
+        FALHOU("Falhou");
+
+        private final String descricao;
+
+        StatusJob(String descricao) {
+            this.descricao = descricao;
+        }
+
+        public String getDescricao() {
+            return descricao;
+        }
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private StatusJob status;
+
+    @Column(name = "total_itens", nullable = false)
+    private Integer totalItens = 0;
+
+    @Column(name = "total_blocos", nullable = false)
+    private Integer totalBlocos = 0;
+
+    @Column(name = "blocos_concluidos", nullable = false)
+    private Integer blocosConcluidos = 0;
+
+    @Column(name = "itens_processados", nullable = false)
+    private Integer itensProcessados = 0;
+
+    @Column(name = "lancamentos_atualizados", nullable = false)
+    private Long lancamentosAtualizados = 0L;
+
+    @Column(length = 500)
+    private String mensagemErro;
+
+    /**
+     * TRUE enquanto o job está em execução e nulo nos demais estados: a chave única (que aceita vários nulos)
+     * impede dois jobs em execução ao mesmo tempo, mesmo com pedidos concorrentes
+     */
+    @Column(name = "em_execucao", unique = true)
+    private Boolean emExecucao;
+
+    @Column(nullable = false)
+    private LocalDateTime dataInicio;
+
+    private LocalDateTime dataFim;
+
+    @Column(nullable = false)
+    private LocalDateTime dataAtualizacao;
+
+    @PrePersist
+    protected void onCreate() {
+        dataInicio = LocalDateTime.now();
+        dataAtualizacao = LocalDateTime.now();
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        dataAtualizacao = LocalDateTime.now();
+    }
+}
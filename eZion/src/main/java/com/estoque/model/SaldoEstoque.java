@@ -0,0 +1,55 @@
+package com.estoque.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Saldo materializado de um item por local e lote, atualizado a cada movimentação
+ * (ENTRADA soma, SAIDA subtrai) na mesma transação em que ela é gravada.
+ */
+@Entity
+@Table(name = "saldo_estoque", indexes = {
+    @Index(name = "idx_saldo_estoque_item_local_lote", columnList = "estoque_item_id, local_id, lote_id", unique = true)
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SaldoEstoque {
+
+    /**
+     * Política para baixas que deixariam o saldo negativo
+     */
+    public enum PoliticaSaldoNegativo {
+        REJEITAR,
+        PERMITIR
+    }
+
+    /**
+     * Valor de lote_id para saldo sem lote (a chave única não admite nulo)
+     */
+    public static final long SEM_LOTE = 0L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "estoque_item_id", nullable = false)
+    private Long estoqueItemId;
+
+    @Column(name = "local_id", nullable = false)
+    private Long localId;
+
+    @Column(name = "lote_id", nullable = false)
+    private Long loteId;
+
+    @Column(precision = 19, scale = 4, nullable = false)
+    private BigDecimal quantidade;
+
+    @Column(name = "data_atualizacao", nullable = false)
+    private LocalDateTime dataAtualizacao;
+}
@@ -0,0 +1,42 @@
+package com.estoque.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Saldo de um item por local (quantidade e valor) no fim do mês de um fechamento de estoque
+ */
+@Entity
+@Table(name = "saldo_fechamento", indexes = {
+    @Index(name = "idx_saldo_fechamento_competencia_item_local", columnList = "competencia, estoque_item_id, local_id", unique = true),
+    @Index(name = "idx_saldo_fechamento_item_competencia", columnList = "estoque_item_id, competencia")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SaldoFechamento {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private LocalDate competencia;
+
+    @Column(name = "estoque_item_id", nullable = false)
+    private Long estoqueItemId;
+
+    @Column(name = "local_id", nullable = false)
+    private Long localId;
+
+    @Column(precision = 19, scale = 4, nullable = false)
+    private BigDecimal quantidade;
+
+    @Column(precision = 19, scale = 4, nullable = false)
+    private BigDecimal valor;
+}
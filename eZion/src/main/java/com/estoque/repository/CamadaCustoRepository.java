@@ -0,0 +1,55 @@
+package com.estoque.repository;
+
+import com.estoque.dto.ResumoCamadasCustoDTO;
+import com.estoque.model.CamadaCusto;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface CamadaCustoRepository extends JpaRepository<CamadaCusto, Long> {
+
+    /**
+     * Busca as camadas abertas do item em ordem PEPS
+     */
+    @Query("SELECT c FROM CamadaCusto c WHERE c.estoqueItemId = :itemId AND c.aberta = true ORDER BY c.dataEntrada ASC, c.id ASC")
+    List<CamadaCusto> findAbertasByEstoqueItemId(@Param("itemId") Long itemId);
+
+    /**
+     * Busca e bloqueia as camadas abertas do item em ordem PEPS, para consumo
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM CamadaCusto c WHERE c.estoqueItemId = :itemId AND c.aberta = true ORDER BY c.dataEntrada ASC, c.id ASC")
+    List<CamadaCusto> findAbertasParaConsumo(@Param("itemId") Long itemId);
+
+    /**
+     * Busca e bloqueia as camadas abertas de um lote do item em ordem PEPS, para consumo
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM CamadaCusto c WHERE c.estoqueItemId = :itemId AND c.loteId = :loteId AND c.aberta = true " +
+           "ORDER BY c.dataEntrada ASC, c.id ASC")
+    List<CamadaCusto> findAbertasParaConsumoByLote(@Param("itemId") Long itemId, @Param("loteId") Long loteId);
+
+    /**
+     * Resume as camadas abertas do item (quantidade e valor em estoque)
+     */
+    @Query("SELECT new com.estoque.dto.ResumoCamadasCustoDTO(:itemId, COUNT(c), SUM(c.quantidadeRestante), SUM(c.valorRestante)) " +
+           "FROM CamadaCusto c WHERE c.estoqueItemId = :itemId AND c.aberta = true")
+    ResumoCamadasCustoDTO resumirAbertas(@Param("itemId") Long itemId);
+
+    Optional<CamadaCusto> findByEstoqueCustoId(Long estoqueCustoId);
+
+    List<CamadaCusto> findByEstoqueCustoIdIn(Collection<Long> estoqueCustoIds);
+
+    @Modifying
+    @Query("DELETE FROM CamadaCusto c WHERE c.estoqueItemId = :itemId")
+    void deleteByEstoqueItemId(@Param("itemId") Long itemId);
+}
@@ -0,0 +1,24 @@
+package com.estoque.repository;
+
+import com.estoque.model.ChaveIdempotencia;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface ChaveIdempotenciaRepository extends JpaRepository<ChaveIdempotencia, Long> {
+
+    Optional<ChaveIdempotencia> findByChave(String chave);
+
+    /**
+     * Remove as chaves registradas antes da data informada
+     */
+    @Modifying
+    @Query("DELETE FROM ChaveIdempotencia c WHERE c.dataCriacao < :limite")
+    int deleteByDataCriacaoBefore(@Param("limite") LocalDateTime limite);
+}
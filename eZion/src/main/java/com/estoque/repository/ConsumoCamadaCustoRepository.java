@@ -0,0 +1,20 @@
+package com.estoque.repository;
+
+import com.estoque.model.ConsumoCamadaCusto;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ConsumoCamadaCustoRepository extends JpaRepository<ConsumoCamadaCusto, Long> {
+
+    List<ConsumoCamadaCusto> findByMovimentacaoId(Long movimentacaoId);
+
+    @Modifying
+    @Query("DELETE FROM ConsumoCamadaCusto c WHERE c.estoqueItemId = :itemId")
+    void deleteByEstoqueItemId(@Param("itemId") Long itemId);
+}
@@ -1,7 +1,11 @@
 package com.estoque.repository;
 
+import com.estoque.dto.LinhaRateioFreteDTO;
+import com.estoque.dto.LinhaRelatorioCustoDTO;
+import com.estoque.dto.ResumoCustoItemDTO;
 import com.estoque.model.EstoqueCusto;
 import com.estoque.model.EstoqueCusto.TipoCusto;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -9,6 +13,7 @@ import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -65,4 +70,121 @@ public interface EstoqueCustoRepository extends JpaRepository<EstoqueCusto, Long
      */
     @Query("SELECT AVG(ec.valor) FROM EstoqueCusto ec WHERE ec.estoqueItem.id = :estoqueItemId")
     BigDecimal calcularCustoMedioByEstoqueItemId(@Param("estoqueItemId") Long estoqueItemId);
-}
\ No newline at end of file
+
+    /**
+     * Busca os lançamentos de compra do razão de custo médio em ordem cronológica (data, id)
+     */
+    @Query("SELECT ec FROM EstoqueCusto ec WHERE ec.estoqueItem.id = :estoqueItemId AND ec.tipoCusto = 'COMPRA' " +
+           "AND ec.quantidade > 0 ORDER BY ec.dataCusto ASC, ec.id ASC")
+    List<EstoqueCusto> findComprasRazaoByEstoqueItemId(@Param("estoqueItemId") Long estoqueItemId);
+
+    /**
+     * Itens com lançamentos de compra ainda sem custo médio no razão e a data do mais antigo deles
+     * (recálculos que não chegaram a ser processados); cada linha é [estoqueItemId, dataCusto]
+     */
+    @Query("SELECT ec.estoqueItem.id, MIN(ec.dataCusto) FROM EstoqueCusto ec WHERE ec.tipoCusto = 'COMPRA' " +
+           "AND ec.quantidade > 0 AND ec.custoMedio IS NULL GROUP BY ec.estoqueItem.id")
+    List<Object[]> findPendenciasRazao();
+
+    /**
+     * Busca o lançamento de compra imediatamente anterior à posição (data, id) no razão do item
+     */
+    @Query("SELECT ec FROM EstoqueCusto ec WHERE ec.estoqueItem.id = :estoqueItemId AND ec.tipoCusto = 'COMPRA' " +
+           "AND ec.quantidade > 0 AND (ec.dataCusto < :data OR (ec.dataCusto = :data AND ec.id < :id)) " +
+           "ORDER BY ec.dataCusto DESC, ec.id DESC")
+    List<EstoqueCusto> findComprasAnteriores(@Param("estoqueItemId") Long estoqueItemId,
+                                             @Param("data") LocalDateTime data,
+                                             @Param("id") Long id,
+                                             Pageable pageable);
+
+    /**
+     * Busca os lançamentos de compra a partir da posição (data, id), inclusive, no razão do item
+     */
+    @Query("SELECT ec FROM EstoqueCusto ec WHERE ec.estoqueItem.id = :estoqueItemId AND ec.tipoCusto = 'COMPRA' " +
+           "AND ec.quantidade > 0 AND (ec.dataCusto > :data OR (ec.dataCusto = :data AND ec.id >= :id)) " +
+           "ORDER BY ec.dataCusto ASC, ec.id ASC")
+    List<EstoqueCusto> findComprasAPartirDe(@Param("estoqueItemId") Long estoqueItemId,
+                                            @Param("data") LocalDateTime data,
+                                            @Param("id") Long id);
+
+    /**
+     * Busca os IDs distintos dos itens que possuem lançamentos de compra
+     */
+    @Query("SELECT DISTINCT ec.estoqueItem.id FROM EstoqueCusto ec WHERE ec.tipoCusto = 'COMPRA' ORDER BY ec.estoqueItem.id")
+    List<Long> findItemIdsComCompras();
+
+    /**
+     * Resume os custos de um item em uma única agregação: somas de valor, impostos e frete
+     * e os termos do custo médio ponderado (valor com impostos x quantidade, quantidade)
+     */
+    @Query("SELECT new com.estoque.dto.ResumoCustoItemDTO(:estoqueItemId, COUNT(ec), SUM(ec.valor), " +
+           "SUM(ec.icms), SUM(ec.ipi), SUM(ec.pis), SUM(ec.cofins), SUM(ec.icmsSt), SUM(ec.iss), SUM(ec.irpj), SUM(ec.csll), " +
+           "SUM(ec.freteRateado), " +
+           "SUM(CASE WHEN ec.quantidade > 0 THEN (ec.valor + COALESCE(ec.icms, 0) + COALESCE(ec.ipi, 0) + COALESCE(ec.pis, 0) + " +
+           "COALESCE(ec.cofins, 0) + COALESCE(ec.icmsSt, 0) + COALESCE(ec.iss, 0) + COALESCE(ec.irpj, 0) + " +
+           "COALESCE(ec.csll, 0)) * ec.quantidade ELSE 0 END), " +
+           "SUM(CASE WHEN ec.quantidade > 0 THEN ec.quantidade ELSE 0 END)) " +
+           "FROM EstoqueCusto ec WHERE ec.estoqueItem.id = :estoqueItemId")
+    ResumoCustoItemDTO resumirCustosByEstoqueItemId(@Param("estoqueItemId") Long estoqueItemId);
+
+    /**
+     * Busca os custos médios do razão até a data informada, do mais recente para o mais antigo
+     * (usado com página de tamanho 1; resolvido pelo índice item/data)
+     */
+    @Query("SELECT ec.custoMedio FROM EstoqueCusto ec WHERE ec.estoqueItem.id = :estoqueItemId AND ec.tipoCusto = 'COMPRA' " +
+           "AND ec.quantidade > 0 AND ec.dataCusto <= :em ORDER BY ec.dataCusto DESC, ec.id DESC")
+    List<BigDecimal> findCustosMediosAte(@Param("estoqueItemId") Long estoqueItemId,
+                                         @Param("em") LocalDateTime em,
+                                         Pageable pageable);
+
+    /**
+     * Data da compra mais recente do item no razão (nula se não houver compras)
+     */
+    @Query("SELECT MAX(ec.dataCusto) FROM EstoqueCusto ec " +
+           "WHERE ec.estoqueItem.id = :estoqueItemId AND ec.tipoCusto = 'COMPRA' AND ec.quantidade > 0")
+    LocalDateTime findDataUltimaCompra(@Param("estoqueItemId") Long estoqueItemId);
+
+    /**
+     * Busca as linhas de compra de um pedido para rateio de frete
+     */
+    @Query("SELECT new com.estoque.dto.LinhaRateioFreteDTO(ec.id, i.id, ec.dataCusto, ec.quantidade, ec.valor, i.peso) " +
+           "FROM EstoqueCusto ec JOIN ec.estoqueItem i WHERE ec.pedidoCompra.id = :pedidoCompraId AND ec.tipoCusto = 'COMPRA' ORDER BY ec.id")
+    List<LinhaRateioFreteDTO> findLinhasRateioByPedidoCompraId(@Param("pedidoCompraId") Long pedidoCompraId);
+
+    /**
+     * Busca as linhas de compra informadas para rateio de frete (custos de outros tipos não são retornados)
+     */
+    @Query("SELECT new com.estoque.dto.LinhaRateioFreteDTO(ec.id, i.id, ec.dataCusto, ec.quantidade, ec.valor, i.peso) " +
+           "FROM EstoqueCusto ec JOIN ec.estoqueItem i WHERE ec.id IN :ids AND ec.tipoCusto = 'COMPRA' ORDER BY ec.id")
+    List<LinhaRateioFreteDTO> findLinhasRateioByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Busca os lançamentos de compra do item que ainda não possuem camada de custo PEPS
+     */
+    @Query("SELECT ec FROM EstoqueCusto ec WHERE ec.estoqueItem.id = :estoqueItemId AND ec.tipoCusto = 'COMPRA' " +
+           "AND ec.quantidade > 0 AND NOT EXISTS (SELECT c.id FROM CamadaCusto c WHERE c.estoqueCustoId = ec.id) " +
+           "ORDER BY ec.dataCusto ASC, ec.id ASC")
+    List<EstoqueCusto> findComprasSemCamada(@Param("estoqueItemId") Long estoqueItemId);
+
+    /**
+     * Totais de custos e impostos do período por tipo de custo e item (resolvido pelo índice data/tipo)
+     */
+    @Query("SELECT new com.estoque.dto.LinhaRelatorioCustoDTO(ec.tipoCusto, i.id, i.codigo, g.id, i.descricao, " +
+           "COUNT(ec), SUM(ec.quantidade), SUM(ec.valor), SUM(ec.icms), SUM(ec.ipi), SUM(ec.pis), SUM(ec.cofins), " +
+           "SUM(ec.icmsSt), SUM(ec.iss), SUM(ec.irpj), SUM(ec.csll), SUM(ec.freteRateado)) " +
+           "FROM EstoqueCusto ec JOIN ec.estoqueItem i JOIN i.grupo g WHERE ec.dataCusto >= :inicio AND ec.dataCusto < :fim " +
+           "GROUP BY ec.tipoCusto, i.id, i.codigo, g.id, i.descricao ORDER BY ec.tipoCusto, i.codigo")
+    List<LinhaRelatorioCustoDTO> totalizarPorTipoEItem(@Param("inicio") LocalDateTime inicio,
+                                                       @Param("fim") LocalDateTime fim);
+
+    /**
+     * Totais de custos e impostos do período por tipo de custo e grupo (resolvido pelo índice data/tipo)
+     */
+    @Query("SELECT new com.estoque.dto.LinhaRelatorioCustoDTO(ec.tipoCusto, g.id, g.nome, " +
+           "COUNT(ec), SUM(ec.quantidade), SUM(ec.valor), SUM(ec.icms), SUM(ec.ipi), SUM(ec.pis), SUM(ec.cofins), " +
+           "SUM(ec.icmsSt), SUM(ec.iss), SUM(ec.irpj), SUM(ec.csll), SUM(ec.freteRateado)) " +
+           "FROM EstoqueCusto ec JOIN ec.estoqueItem i JOIN i.grupo g WHERE ec.dataCusto >= :inicio AND ec.dataCusto < :fim " +
+           "GROUP BY ec.tipoCusto, g.id, g.nome ORDER BY ec.tipoCusto, g.nome")
+    List<LinhaRelatorioCustoDTO> totalizarPorTipoEGrupo(@Param("inicio") LocalDateTime inicio,
+                                                        @Param("fim") LocalDateTime fim);
+}
@@ -1,8 +1,11 @@
 package com.estoque.repository;
 
+import com.estoque.dto.ItemGrupoDTO;
 import com.estoque.model.EstoqueItem;
 import com.estoque.model.EstoqueItem.TipoItem;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -31,6 +34,13 @@ public interface EstoqueItemRepository extends JpaRepository<EstoqueItem, Long>
      */
     List<EstoqueItem> findByTipoItemAndAtivoTrue(TipoItem tipoItem);
 
+    /**
+     * Busca os itens dos grupos da subárvore (caminho do grupo como prefixo), em uma única consulta
+     */
+    @Query("SELECT new com.estoque.dto.ItemGrupoDTO(i.id, i.codigo, i.descricao, i.tipoItem, g.id, g.nome, i.ativo) " +
+           "FROM EstoqueItem i JOIN i.grupo g WHERE g.caminho LIKE CONCAT(:caminho, '%') ORDER BY i.codigo")
+    List<ItemGrupoDTO> findBySubarvoreGrupo(@Param("caminho") String caminho);
+
     /**
      * Busca itens por descrição (contém o texto)
      */
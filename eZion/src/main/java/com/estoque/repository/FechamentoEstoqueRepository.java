@@ -0,0 +1,25 @@
+package com.estoque.repository;
+
+import com.estoque.model.FechamentoEstoque;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface FechamentoEstoqueRepository extends JpaRepository<FechamentoEstoque, Long> {
+
+    /**
+     * Último mês fechado
+     */
+    Optional<FechamentoEstoque> findFirstByOrderByCompetenciaDesc();
+
+    /**
+     * Último fechamento com competência até a informada
+     */
+    Optional<FechamentoEstoque> findFirstByCompetenciaLessThanEqualOrderByCompetenciaDesc(LocalDate competencia);
+
+    List<FechamentoEstoque> findAllByOrderByCompetenciaDesc();
+}
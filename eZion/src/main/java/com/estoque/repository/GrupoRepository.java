@@ -1,7 +1,10 @@
 package com.estoque.repository;
 
 import com.estoque.model.Grupo;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -36,4 +39,30 @@ public interface GrupoRepository extends JpaRepository<Grupo, Long> {
 
     @Query("SELECT COUNT(g) FROM Grupo g WHERE g.grupoPai.id = :paiId")
     long countFilhosByPaiId(@Param("paiId") Long paiId);
+
+    boolean existsByCaminhoIsNull();
+
+    /**
+     * Busca e bloqueia o grupo, para alterações na hierarquia
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT g FROM Grupo g WHERE g.id = :id")
+    Optional<Grupo> findByIdParaAtualizacao(@Param("id") Long id);
+
+    /**
+     * Busca e bloqueia o grupo e seus descendentes (caminho com o prefixo informado)
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT g FROM Grupo g WHERE g.caminho LIKE CONCAT(:caminho, '%')")
+    List<Grupo> findSubarvoreParaAtualizacao(@Param("caminho") String caminho);
+
+    /**
+     * Move a subárvore em um único UPDATE: troca o prefixo do caminho (que termina na posição
+     * inicioResto - 1) e desloca o nível de todos os grupos abaixo do caminho antigo
+     */
+    @Modifying
+    @Query("UPDATE Grupo g SET g.caminho = CONCAT(:caminhoNovo, SUBSTRING(g.caminho, :inicioResto)), " +
+           "g.nivel = g.nivel + :deltaNivel WHERE g.caminho LIKE CONCAT(:caminhoAntigo, '%')")
+    int moverSubarvore(@Param("caminhoAntigo") String caminhoAntigo, @Param("caminhoNovo") String caminhoNovo,
+                       @Param("inicioResto") int inicioResto, @Param("deltaNivel") int deltaNivel);
 }
\ No newline at end of file
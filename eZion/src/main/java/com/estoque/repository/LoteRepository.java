@@ -2,12 +2,15 @@ package com.estoque.repository;
 
 import com.estoque.model.Lote;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -36,6 +39,9 @@ public interface LoteRepository extends JpaRepository<Lote, Long> {
     @Query("SELECT l FROM Lote l WHERE l.ativo = true AND l.estoqueItem.id = :itemId AND l.quantidadeDisponivel > 0 ORDER BY l.dataEntrada ASC")
     List<Lote> findLotesDisponiveisByItemId(@Param("itemId") Long itemId);
 
+    @Query("SELECT DISTINCT l.estoqueItem.id FROM Lote l WHERE l.id IN :ids")
+    List<Long> findEstoqueItemIdsByIdIn(@Param("ids") Collection<Long> ids);
+
     @Query("SELECT SUM(l.quantidadeDisponivel) FROM Lote l WHERE l.estoqueItem.id = :itemId AND l.ativo = true")
     BigDecimal calcularEstoqueDisponivel(@Param("itemId") Long itemId);
 
@@ -44,4 +50,37 @@ public interface LoteRepository extends JpaRepository<Lote, Long> {
 
     @Query("SELECT COUNT(l) FROM Lote l WHERE l.ativo = true AND l.estoqueItem.id = :itemId AND l.dataValidade IS NOT NULL AND l.dataValidade < CURRENT_DATE")
     long countLotesVencidos(@Param("itemId") Long itemId);
-}
\ No newline at end of file
+
+    @Query("SELECT l FROM Lote l WHERE l.ativo = true AND l.estoqueItem.id = :itemId AND l.quantidadeDisponivel > 0 " +
+           "AND (l.dataValidade IS NULL OR l.dataValidade >= :hoje) ORDER BY CASE WHEN l.dataValidade IS NULL THEN 1 ELSE 0 END, l.dataValidade ASC, l.dataEntrada ASC")
+    List<Lote> findLotesDisponiveisByItemIdOrderByValidade(@Param("itemId") Long itemId, @Param("hoje") LocalDate hoje);
+
+    /**
+     * Baixa condicional: só altera o lote se houver quantidade disponível suficiente
+     */
+    @Modifying
+    @Query("UPDATE Lote l SET l.quantidadeDisponivel = l.quantidadeDisponivel - :quantidade, l.versao = l.versao + 1, " +
+           "l.dataAtualizacao = :agora WHERE l.id = :id AND l.quantidadeDisponivel >= :quantidade")
+    int baixarQuantidadeDisponivel(@Param("id") Long id, @Param("quantidade") BigDecimal quantidade, @Param("agora") LocalDateTime agora);
+
+    @Modifying
+    @Query("UPDATE Lote l SET l.quantidadeDisponivel = l.quantidadeDisponivel + :quantidade, l.versao = l.versao + 1, " +
+           "l.dataAtualizacao = :agora WHERE l.id = :id")
+    int devolverQuantidadeDisponivel(@Param("id") Long id, @Param("quantidade") BigDecimal quantidade, @Param("agora") LocalDateTime agora);
+
+    /**
+     * Aumento condicional: só altera o lote se a quantidade disponível não passar da quantidade total
+     */
+    @Modifying
+    @Query("UPDATE Lote l SET l.quantidadeDisponivel = l.quantidadeDisponivel + :quantidade, l.versao = l.versao + 1, " +
+           "l.dataAtualizacao = :agora WHERE l.id = :id AND l.quantidadeDisponivel + :quantidade <= l.quantidadeTotal")
+    int aumentarQuantidadeDisponivel(@Param("id") Long id, @Param("quantidade") BigDecimal quantidade, @Param("agora") LocalDateTime agora);
+
+    /**
+     * Desativa, em um único UPDATE, os lotes ativos vencidos antes da data
+     */
+    @Modifying
+    @Query("UPDATE Lote l SET l.ativo = false, l.versao = l.versao + 1, l.dataAtualizacao = :agora " +
+           "WHERE l.ativo = true AND l.dataValidade IS NOT NULL AND l.dataValidade < :data")
+    int desativarVencidosAnte(@Param("data") LocalDate data, @Param("agora") LocalDateTime agora);
+}
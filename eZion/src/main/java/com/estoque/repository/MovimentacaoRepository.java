@@ -1,6 +1,9 @@
 package com.estoque.repository;
 
+import com.estoque.dto.LinhaKardexDTO;
+import com.estoque.dto.SaldoKardexDTO;
 import com.estoque.model.Movimentacao;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -9,6 +12,7 @@ import org.springframework.stereotype.Repository;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.UUID;
 
 @Repository
 public interface MovimentacaoRepository extends JpaRepository<Movimentacao, Long> {
@@ -16,6 +20,9 @@ public interface MovimentacaoRepository extends JpaRepository<Movimentacao, Long
     @Query("SELECT m FROM Movimentacao m WHERE m.estoqueItem.id = :itemId ORDER BY m.dataMovimentacao DESC")
     List<Movimentacao> findByEstoqueItemIdOrderByDataMovimentacaoDesc(@Param("itemId") Long itemId);
 
+    @Query("SELECT m FROM Movimentacao m WHERE m.estoqueItem.id = :itemId AND m.tipoMovimentacao = 'SAIDA' AND m.transferenciaId IS NULL ORDER BY m.dataMovimentacao ASC, m.id ASC")
+    List<Movimentacao> findSaidasByEstoqueItemIdOrderByDataMovimentacaoAsc(@Param("itemId") Long itemId);
+
     @Query("SELECT m FROM Movimentacao m WHERE m.estoqueItem.id = :itemId AND m.dataMovimentacao BETWEEN :inicio AND :fim ORDER BY m.dataMovimentacao DESC")
     List<Movimentacao> findByEstoqueItemIdAndPeriodo(@Param("itemId") Long itemId,
                                                     @Param("inicio") LocalDateTime inicio,
@@ -33,4 +40,50 @@ public interface MovimentacaoRepository extends JpaRepository<Movimentacao, Long
     @Query("SELECT SUM(CASE WHEN m.tipoMovimentacao = 'ENTRADA' THEN m.quantidade ELSE -m.quantidade END) " +
            "FROM Movimentacao m WHERE m.estoqueItem.id = :itemId")
     BigDecimal calcularSaldoByEstoqueItemId(@Param("itemId") Long itemId);
-}
\ No newline at end of file
+
+    /**
+     * Movimento acumulado (quantidade e valor) do item desde a data informada até o cursor (data, id), inclusive;
+     * percorre o índice (estoque_item_id, data_movimentacao, id)
+     */
+    @Query("SELECT new com.estoque.dto.SaldoKardexDTO(" +
+           "COALESCE(SUM(CASE WHEN m.tipoMovimentacao = 'ENTRADA' THEN m.quantidade ELSE -m.quantidade END), 0), " +
+           "COALESCE(SUM(CASE WHEN m.tipoMovimentacao = 'ENTRADA' THEN COALESCE(m.custo, 0) ELSE -COALESCE(m.custo, 0) END), 0)) " +
+           "FROM Movimentacao m WHERE m.estoqueItem.id = :itemId AND m.dataMovimentacao >= :desde " +
+           "AND (m.dataMovimentacao < :data OR (m.dataMovimentacao = :data AND m.id <= :id))")
+    SaldoKardexDTO calcularSaldoKardexAte(@Param("itemId") Long itemId,
+                                          @Param("desde") LocalDateTime desde,
+                                          @Param("data") LocalDateTime data,
+                                          @Param("id") Long id);
+
+    /**
+     * Movimento acumulado (quantidade e valor) do item entre as datas, inclusive, em um local ou em todos (localId nulo)
+     */
+    @Query("SELECT new com.estoque.dto.SaldoKardexDTO(" +
+           "COALESCE(SUM(CASE WHEN m.tipoMovimentacao = 'ENTRADA' THEN m.quantidade ELSE -m.quantidade END), 0), " +
+           "COALESCE(SUM(CASE WHEN m.tipoMovimentacao = 'ENTRADA' THEN COALESCE(m.custo, 0) ELSE -COALESCE(m.custo, 0) END), 0)) " +
+           "FROM Movimentacao m WHERE m.estoqueItem.id = :itemId AND (:localId IS NULL OR m.local.id = :localId) " +
+           "AND m.dataMovimentacao >= :desde AND m.dataMovimentacao <= :ate")
+    SaldoKardexDTO calcularMovimentoEntre(@Param("itemId") Long itemId,
+                                          @Param("localId") Long localId,
+                                          @Param("desde") LocalDateTime desde,
+                                          @Param("ate") LocalDateTime ate);
+
+    /**
+     * Movimentações do item posteriores ao cursor (data, id) até o fim do período, em ordem cronológica
+     */
+    @Query("SELECT new com.estoque.dto.LinhaKardexDTO(m.id, m.dataMovimentacao, m.tipoMovimentacao, m.local.id, " +
+           "m.lote.id, m.observacoes, m.quantidade, COALESCE(m.custo, 0)) " +
+           "FROM Movimentacao m WHERE m.estoqueItem.id = :itemId " +
+           "AND (m.dataMovimentacao > :data OR (m.dataMovimentacao = :data AND m.id > :id)) " +
+           "AND m.dataMovimentacao <= :fim ORDER BY m.dataMovimentacao, m.id")
+    List<LinhaKardexDTO> findLinhasKardex(@Param("itemId") Long itemId,
+                                          @Param("data") LocalDateTime data,
+                                          @Param("id") Long id,
+                                          @Param("fim") LocalDateTime fim,
+                                          Pageable pageable);
+
+    /**
+     * Saída e entrada de uma transferência entre locais
+     */
+    List<Movimentacao> findByTransferenciaIdOrderById(UUID transferenciaId);
+}
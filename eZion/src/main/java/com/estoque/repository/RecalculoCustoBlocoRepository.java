@@ -0,0 +1,17 @@
+package com.estoque.repository;
+
+import com.estoque.model.RecalculoCustoBloco;
+import com.estoque.model.RecalculoCustoBloco.StatusBloco;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface RecalculoCustoBlocoRepository extends JpaRepository<RecalculoCustoBloco, Long> {
+
+    /**
+     * Busca os blocos de um job que ainda não foram confirmados
+     */
+    List<RecalculoCustoBloco> findByJobIdAndStatusNotOrderByNumeroAsc(Long jobId, StatusBloco status);
+}
@@ -0,0 +1,23 @@
+package com.estoque.repository;
+
+import com.estoque.model.RecalculoCustoJob;
+import com.estoque.model.RecalculoCustoJob.StatusJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface RecalculoCustoJobRepository extends JpaRepository<RecalculoCustoJob, Long> {
+
+    /**
+     * Busca jobs por situação
+     */
+    List<RecalculoCustoJob> findByStatusOrderByIdAsc(StatusJob status);
+
+    /**
+     * Busca o job mais recente
+     */
+    Optional<RecalculoCustoJob> findFirstByOrderByIdDesc();
+}
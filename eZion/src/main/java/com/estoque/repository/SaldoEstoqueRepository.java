@@ -0,0 +1,32 @@
+package com.estoque.repository;
+
+import com.estoque.model.SaldoEstoque;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface SaldoEstoqueRepository extends JpaRepository<SaldoEstoque, Long> {
+
+    /**
+     * Busca os saldos de um item por local e lote
+     */
+    @Query("SELECT s FROM SaldoEstoque s WHERE s.estoqueItemId = :estoqueItemId ORDER BY s.localId, s.loteId")
+    List<SaldoEstoque> findByEstoqueItemId(@Param("estoqueItemId") Long estoqueItemId);
+
+    /**
+     * Busca os saldos de vários itens (registro de movimentações em lote)
+     */
+    List<SaldoEstoque> findByEstoqueItemIdIn(Collection<Long> estoqueItemIds);
+
+    /**
+     * Saldo total do item (soma das poucas linhas de local/lote do item)
+     */
+    @Query("SELECT SUM(s.quantidade) FROM SaldoEstoque s WHERE s.estoqueItemId = :estoqueItemId")
+    BigDecimal somarQuantidadeByEstoqueItemId(@Param("estoqueItemId") Long estoqueItemId);
+}
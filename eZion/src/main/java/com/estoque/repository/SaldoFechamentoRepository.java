@@ -0,0 +1,32 @@
+package com.estoque.repository;
+
+import com.estoque.dto.SaldoKardexDTO;
+import com.estoque.model.SaldoFechamento;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface SaldoFechamentoRepository extends JpaRepository<SaldoFechamento, Long> {
+
+    /**
+     * Saldos do item por local no fechamento da competência
+     */
+    @Query("SELECT s FROM SaldoFechamento s WHERE s.competencia = :competencia AND s.estoqueItemId = :estoqueItemId ORDER BY s.localId")
+    List<SaldoFechamento> findByCompetenciaAndEstoqueItemId(@Param("competencia") LocalDate competencia,
+                                                            @Param("estoqueItemId") Long estoqueItemId);
+
+    /**
+     * Saldo do item no fechamento da competência, em um local ou somando todos (localId nulo)
+     */
+    @Query("SELECT new com.estoque.dto.SaldoKardexDTO(COALESCE(SUM(s.quantidade), 0), COALESCE(SUM(s.valor), 0)) " +
+           "FROM SaldoFechamento s WHERE s.competencia = :competencia AND s.estoqueItemId = :estoqueItemId " +
+           "AND (:localId IS NULL OR s.localId = :localId)")
+    SaldoKardexDTO somarSaldo(@Param("competencia") LocalDate competencia,
+                              @Param("estoqueItemId") Long estoqueItemId,
+                              @Param("localId") Long localId);
+}
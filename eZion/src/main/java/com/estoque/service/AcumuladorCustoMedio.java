@@ -0,0 +1,87 @@
+package com.estoque.service;
+
+import com.estoque.util.AritmeticaFixa;
+
+import java.math.BigDecimal;
+
+/**
+ * Acumulador de quantidade e valor usado no cálculo do custo médio móvel.
+ * Cada entrada de compra soma sua quantidade e seu custo total com frete,
+ * e o custo médio resultante é valor acumulado / quantidade acumulada.
+ * Acumula em ponto fixo ({@link AritmeticaFixa}) e passa para BigDecimal
+ * na primeira entrada que não couber na escala 4 ou estourar o long.
+ */
+class AcumuladorCustoMedio {
+
+    private long quantidadeFixa;
+    private long valorFixo;
+
+    // Preenchidos apenas depois que o acumulador sai do ponto fixo
+    private BigDecimal quantidade;
+    private BigDecimal valor;
+
+    AcumuladorCustoMedio() {
+    }
+
+    AcumuladorCustoMedio(BigDecimal quantidade, BigDecimal valor) {
+        if (AritmeticaFixa.representavel(quantidade) && AritmeticaFixa.representavel(valor)) {
+            this.quantidadeFixa = AritmeticaFixa.paraFixo(quantidade);
+            this.valorFixo = AritmeticaFixa.paraFixo(valor);
+        } else {
+            this.quantidade = quantidade;
+            this.valor = valor;
+        }
+    }
+
+    /**
+     * Soma uma entrada e retorna o custo médio até este ponto
+     */
+    BigDecimal somar(BigDecimal quantidadeEntrada, BigDecimal valorEntrada) {
+        if (quantidade == null) {
+            if (AritmeticaFixa.representavel(quantidadeEntrada) && AritmeticaFixa.representavel(valorEntrada)) {
+                try {
+                    long novaQuantidade = Math.addExact(quantidadeFixa, AritmeticaFixa.paraFixo(quantidadeEntrada));
+                    long novoValor = Math.addExact(valorFixo, AritmeticaFixa.paraFixo(valorEntrada));
+                    quantidadeFixa = novaQuantidade;
+                    valorFixo = novoValor;
+                    return custoMedio();
+                } catch (ArithmeticException e) {
+                    // Estouro do long: continua em BigDecimal
+                }
+            }
+            quantidade = BigDecimal.valueOf(quantidadeFixa, AritmeticaFixa.ESCALA);
+            valor = BigDecimal.valueOf(valorFixo, AritmeticaFixa.ESCALA);
+        }
+        quantidade = quantidade.add(quantidadeEntrada);
+        valor = valor.add(valorEntrada);
+        return custoMedio();
+    }
+
+    /**
+     * Custo médio atual (arredondado em 6 casas e depois em 4, como no cálculo original)
+     */
+    BigDecimal custoMedio() {
+        if (quantidade == null) {
+            if (quantidadeFixa <= 0) {
+                return BigDecimal.ZERO;
+            }
+            long custoMedio = AritmeticaFixa.dividirEscala6Para4(valorFixo, quantidadeFixa);
+            if (custoMedio != Long.MIN_VALUE) {
+                return BigDecimal.valueOf(custoMedio, AritmeticaFixa.ESCALA);
+            }
+            return AritmeticaFixa.dividirEscala6Para4(getValor(), getQuantidade());
+        }
+        if (quantidade.compareTo(BigDecimal.ZERO) > 0) {
+            return AritmeticaFixa.dividirEscala6Para4(valor, quantidade);
+        }
+        return BigDecimal.ZERO;
+    }
+
+    BigDecimal getQuantidade() {
+        return quantidade != null ? quantidade : BigDecimal.valueOf(quantidadeFixa, AritmeticaFixa.ESCALA);
+    }
+
+    BigDecimal getValor() {
+        return valor != null ? valor : BigDecimal.valueOf(valorFixo, AritmeticaFixa.ESCALA);
+    }
+}
@@ -0,0 +1,170 @@
+package com.estoque.service;
+
+import com.estoque.dto.AlocacaoSaidaDTO;
+import com.estoque.dto.AlocacaoSaidaRequestDTO;
+import com.estoque.dto.AlocacaoSaidaRequestDTO.CriterioAlocacao;
+import com.estoque.dto.LinhaAlocacaoLoteDTO;
+import com.estoque.dto.LoteDisponivelDTO;
+import com.estoque.model.EstoqueItem;
+import com.estoque.model.Local;
+import com.estoque.model.Lote;
+import com.estoque.model.Movimentacao;
+import com.estoque.repository.LoteRepository;
+import com.seguranca.model.Usuario;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Alocação automática de lotes para saídas: escolhe os lotes disponíveis do item no local pedido em ordem
+ * FIFO (entrada) ou FEFO (validade), limitando cada lote ao seu saldo no local, divide a quantidade entre eles, baixa os lotes com
+ * updates condicionais em lote e grava uma movimentação de saída por lote, tudo na mesma transação.
+ * Os lotes FIFO vêm do cache de lotes disponíveis; as baixas condicionais recusam quantidades desatualizadas,
+ * e as aceitas são aplicadas ao cache após o commit, que segue válido para a próxima separação.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AlocacaoLoteService {
+
+    private static final String SQL_BAIXAR_LOTE =
+            "UPDATE lote SET quantidade_disponivel = quantidade_disponivel - ?, versao = versao + 1, data_atualizacao = ? " +
+            "WHERE id = ? AND quantidade_disponivel >= ?";
+
+    private final LoteRepository loteRepository;
+    private final MovimentacaoService movimentacaoService;
+    private final JdbcTemplate jdbcTemplate;
+    private final IdempotenciaService idempotenciaService;
+    private final DisponibilidadeLoteService disponibilidadeLoteService;
+    private final SaldoEstoqueService saldoEstoqueService;
+
+    /**
+     * Aloca a quantidade pedida entre os lotes do item e registra as saídas
+     */
+    @Transactional
+    public AlocacaoSaidaDTO alocarSaida(AlocacaoSaidaRequestDTO request) {
+        CriterioAlocacao criterio = request.getCriterio() != null ? request.getCriterio() : CriterioAlocacao.FIFO;
+        log.debug("Alocando saída de {} do item ID: {} por {}", request.getQuantidade(), request.getEstoqueItemId(), criterio);
+
+        LocalDate hoje = LocalDate.now();
+        List<LoteDisponivelDTO> candidatos = criterio == CriterioAlocacao.FEFO
+                ? converter(loteRepository.findLotesDisponiveisByItemIdOrderByValidade(request.getEstoqueItemId(), hoje))
+                : disponibilidadeLoteService.listarFIFO(request.getEstoqueItemId());
+        // O lote pode estar distribuído entre locais: só conta o que está no local da saída
+        Map<Long, BigDecimal> saldosNoLocal = saldoEstoqueService.obterSaldosLotesNoLocal(request.getEstoqueItemId(), request.getLocalId());
+
+        List<LoteDisponivelDTO> lotes = new ArrayList<>();
+        List<BigDecimal> quantidades = new ArrayList<>();
+        BigDecimal restante = request.getQuantidade();
+        for (LoteDisponivelDTO lote : candidatos) {
+            if (restante.signum() <= 0) {
+                break;
+            }
+            if (lote.getDataValidade() != null && hoje.isAfter(lote.getDataValidade())) {
+                continue;
+            }
+            BigDecimal disponivel = lote.getQuantidadeDisponivel().min(saldosNoLocal.getOrDefault(lote.getLoteId(), BigDecimal.ZERO));
+            if (disponivel.signum() <= 0) {
+                continue;
+            }
+            BigDecimal quantidade = restante.min(disponivel);
+            lotes.add(lote);
+            quantidades.add(quantidade);
+            restante = restante.subtract(quantidade);
+        }
+        if (restante.signum() > 0) {
+            throw new IllegalArgumentException("Quantidade disponível em lotes insuficiente para o item ID: " + request.getEstoqueItemId() +
+                    " no local ID: " + request.getLocalId() + " (faltam " + restante + ")");
+        }
+
+        baixarLotes(request.getEstoqueItemId(), lotes, quantidades);
+
+        LocalDateTime dataMovimentacao = request.getDataMovimentacao() != null ? request.getDataMovimentacao() : LocalDateTime.now();
+        List<LinhaAlocacaoLoteDTO> linhas = new ArrayList<>(lotes.size());
+        for (int i = 0; i < lotes.size(); i++) {
+            LoteDisponivelDTO lote = lotes.get(i);
+            Movimentacao saida = novaSaida(request, lote, quantidades.get(i), dataMovimentacao);
+            Movimentacao salva = movimentacaoService.registrar(saida, false);
+            linhas.add(new LinhaAlocacaoLoteDTO(lote.getLoteId(), lote.getNumeroLote(), lote.getDataValidade(),
+                    quantidades.get(i), salva.getId(), salva.getCusto()));
+        }
+
+        log.debug("Saída do item ID: {} alocada em {} lotes", request.getEstoqueItemId(), linhas.size());
+        return new AlocacaoSaidaDTO(request.getEstoqueItemId(), request.getLocalId(), request.getQuantidade(), criterio, linhas);
+    }
+
+    /**
+     * Aloca e registra a saída uma única vez por chave de idempotência; a repetição devolve a alocação original
+     */
+    public AlocacaoSaidaDTO alocarSaida(AlocacaoSaidaRequestDTO request, String chaveIdempotencia) {
+        return idempotenciaService.executar(chaveIdempotencia, "SAIDA_ALOCADA", AlocacaoSaidaDTO.class, () -> alocarSaida(request));
+    }
+
+    /**
+     * Baixa todos os lotes em um único batch; se algum lote foi consumido por outra operação
+     * desde a leitura, a alocação inteira é desfeita e o cache do item é descartado. Baixas aceitas
+     * são registradas no cache, que as aplica após o commit
+     */
+    private void baixarLotes(Long itemId, List<LoteDisponivelDTO> lotes, List<BigDecimal> quantidades) {
+        Timestamp agora = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> parametros = new ArrayList<>(lotes.size());
+        for (int i = 0; i < lotes.size(); i++) {
+            parametros.add(new Object[]{quantidades.get(i), agora, lotes.get(i).getLoteId(), quantidades.get(i)});
+        }
+        int[] atualizados = jdbcTemplate.batchUpdate(SQL_BAIXAR_LOTE, parametros);
+        for (int i = 0; i < atualizados.length; i++) {
+            // SUCCESS_NO_INFO (-2) é retornado por drivers que não informam a contagem no batch
+            if (atualizados[i] == 0) {
+                disponibilidadeLoteService.descartar(itemId);
+                throw new IllegalArgumentException("Quantidade disponível do lote " + lotes.get(i).getNumeroLote() +
+                        " foi alterada por outra operação; refaça a saída");
+            }
+        }
+        disponibilidadeLoteService.registrarBaixas(itemId, lotes.stream().map(LoteDisponivelDTO::getLoteId).toList());
+    }
+
+    private Movimentacao novaSaida(AlocacaoSaidaRequestDTO request, LoteDisponivelDTO loteDisponivel, BigDecimal quantidade,
+                                   LocalDateTime dataMovimentacao) {
+        // Item, local, lote e usuário vão só com o ID; o registro da movimentação os valida e carrega
+        EstoqueItem item = new EstoqueItem();
+        item.setId(request.getEstoqueItemId());
+        Local local = new Local();
+        local.setId(request.getLocalId());
+        Lote lote = new Lote();
+        lote.setId(loteDisponivel.getLoteId());
+        Usuario usuario = new Usuario();
+        usuario.setId(request.getUsuarioId());
+
+        Movimentacao saida = new Movimentacao();
+        saida.setEstoqueItem(item);
+        saida.setLocal(local);
+        saida.setLote(lote);
+        saida.setUsuario(usuario);
+        saida.setTipoMovimentacao(Movimentacao.TipoMovimentacao.SAIDA);
+        saida.setQuantidade(quantidade);
+        saida.setObservacoes(request.getObservacoes());
+        saida.setDataMovimentacao(dataMovimentacao);
+        return saida;
+    }
+
+    private static List<LoteDisponivelDTO> converter(List<Lote> lotes) {
+        List<LoteDisponivelDTO> disponiveis = new ArrayList<>(lotes.size());
+        BigDecimal acumulado = BigDecimal.ZERO;
+        for (Lote lote : lotes) {
+            acumulado = acumulado.add(lote.getQuantidadeDisponivel());
+            disponiveis.add(new LoteDisponivelDTO(lote.getId(), lote.getNumeroLote(), lote.getDataEntrada(),
+                    lote.getDataValidade(), lote.getQuantidadeDisponivel(), acumulado));
+        }
+        return disponiveis;
+    }
+}
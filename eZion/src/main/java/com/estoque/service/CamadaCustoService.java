@@ -0,0 +1,267 @@
+package com.estoque.service;
+
+import com.estoque.dto.ResumoCamadasCustoDTO;
+import com.estoque.model.CamadaCusto;
+import com.estoque.model.ConsumoCamadaCusto;
+import com.estoque.model.EstoqueCusto;
+import com.estoque.model.EstoqueItem;
+import com.estoque.model.EstoqueItem.MetodoCusteio;
+import com.estoque.model.Movimentacao;
+import com.estoque.repository.CamadaCustoRepository;
+import com.estoque.repository.ConsumoCamadaCustoRepository;
+import com.estoque.repository.EstoqueCustoRepository;
+import com.estoque.repository.MovimentacaoRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Valoração PEPS (FIFO) por camadas de custo.
+ * Para itens com método de custeio PEPS, cada compra abre uma camada (por lote, quando informado)
+ * e cada saída consome as camadas abertas mais antigas. O saldo valorizado do item é a soma
+ * das camadas abertas, sem reprocessar o histórico.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CamadaCustoService {
+
+    private final CamadaCustoRepository camadaCustoRepository;
+    private final ConsumoCamadaCustoRepository consumoCamadaCustoRepository;
+    private final EstoqueCustoRepository estoqueCustoRepository;
+    private final MovimentacaoRepository movimentacaoRepository;
+    private final ParticionamentoEstoqueService particionamentoEstoqueService;
+
+    /**
+     * Indica se o item é valorizado por camadas PEPS
+     */
+    public boolean usaCamadas(EstoqueItem item) {
+        return item.getMetodoCusteio() == MetodoCusteio.PEPS;
+    }
+
+    /**
+     * Abre a camada de um lançamento de compra
+     */
+    @Transactional
+    public void registrarEntrada(EstoqueCusto custo) {
+        if (!usaCamadas(custo.getEstoqueItem()) || !isEntrada(custo)) {
+            return;
+        }
+        camadaCustoRepository.save(novaCamada(custo));
+        log.debug("Camada de custo aberta para o custo ID: {} do item ID: {}", custo.getId(), custo.getEstoqueItem().getId());
+    }
+
+    /**
+     * Abre as camadas dos lançamentos de compra do item que ainda não possuem camada (ex.: após importação em lote)
+     */
+    @Transactional
+    public void sincronizarEntradas(Long itemId) {
+        List<EstoqueCusto> compras = estoqueCustoRepository.findComprasSemCamada(itemId);
+        camadaCustoRepository.saveAll(compras.stream().map(this::novaCamada).toList());
+        log.debug("{} camadas de custo abertas para o item ID: {}", compras.size(), itemId);
+    }
+
+    /**
+     * Remove a camada de um lançamento de compra excluído; não é permitido se ela já foi consumida
+     */
+    @Transactional
+    public void removerEntrada(EstoqueCusto custo) {
+        camadaCustoRepository.findByEstoqueCustoId(custo.getId()).ifPresent(camada -> {
+            if (camada.getQuantidadeRestante().compareTo(camada.getQuantidadeOriginal()) < 0) {
+                throw new IllegalArgumentException("Custo ID: " + custo.getId() + " já foi consumido por saídas e não pode ser excluído");
+            }
+            camadaCustoRepository.delete(camada);
+        });
+    }
+
+    /**
+     * Reavalia as camadas dos lançamentos informados após alteração de valor (ex.: rateio de frete).
+     * O saldo da camada passa a refletir o novo custo; consumos já realizados não são alterados.
+     */
+    @Transactional
+    public void reavaliarEntradas(Collection<Long> estoqueCustoIds) {
+        List<CamadaCusto> camadas = camadaCustoRepository.findByEstoqueCustoIdIn(estoqueCustoIds);
+        if (camadas.isEmpty()) {
+            return;
+        }
+        Map<Long, EstoqueCusto> custos = estoqueCustoRepository.findAllById(
+                camadas.stream().map(CamadaCusto::getEstoqueCustoId).toList())
+            .stream()
+            .collect(Collectors.toMap(EstoqueCusto::getId, Function.identity()));
+
+        for (CamadaCusto camada : camadas) {
+            BigDecimal valorTotal = custos.get(camada.getEstoqueCustoId()).calcularCustoTotalComFrete();
+            camada.setCustoUnitario(valorTotal.divide(camada.getQuantidadeOriginal(), 6, RoundingMode.HALF_UP));
+            if (camada.getQuantidadeRestante().compareTo(camada.getQuantidadeOriginal()) == 0) {
+                camada.setValorRestante(valorTotal);
+            } else {
+                camada.setValorRestante(camada.getQuantidadeRestante().multiply(camada.getCustoUnitario())
+                        .setScale(4, RoundingMode.HALF_UP));
+            }
+        }
+    }
+
+    /**
+     * Consome as camadas abertas para uma saída e retorna o custo da saída.
+     * Se a saída informar um lote, consome apenas as camadas desse lote.
+     */
+    @Transactional
+    public BigDecimal consumir(Movimentacao saida) {
+        Long itemId = saida.getEstoqueItem().getId();
+        Long loteId = saida.getLote() != null ? saida.getLote().getId() : null;
+
+        List<CamadaCusto> camadas = loteId != null
+                ? camadaCustoRepository.findAbertasParaConsumoByLote(itemId, loteId)
+                : camadaCustoRepository.findAbertasParaConsumo(itemId);
+
+        List<ConsumoCamadaCusto> consumos = new ArrayList<>();
+        ResultadoConsumo resultado = consumir(camadas, null, saida, consumos);
+        if (resultado.faltante().compareTo(BigDecimal.ZERO) > 0) {
+            throw new IllegalArgumentException("Saldo insuficiente nas camadas de custo do item ID: " + itemId +
+                    " (faltam " + resultado.faltante() + ")");
+        }
+
+        consumoCamadaCustoRepository.saveAll(consumos);
+        log.debug("Saída ID: {} consumiu {} camadas do item ID: {}, custo {}", saida.getId(), consumos.size(), itemId, resultado.valor());
+        return resultado.valor();
+    }
+
+    /**
+     * Devolve às camadas as quantidades e valores consumidos por uma saída excluída
+     */
+    @Transactional
+    public void estornarConsumo(Long movimentacaoId) {
+        List<ConsumoCamadaCusto> consumos = consumoCamadaCustoRepository.findByMovimentacaoId(movimentacaoId);
+        if (consumos.isEmpty()) {
+            return;
+        }
+        Map<Long, CamadaCusto> camadas = camadaCustoRepository.findAllById(
+                consumos.stream().map(ConsumoCamadaCusto::getCamadaCustoId).toList())
+            .stream()
+            .collect(Collectors.toMap(CamadaCusto::getId, Function.identity()));
+
+        for (ConsumoCamadaCusto consumo : consumos) {
+            CamadaCusto camada = camadas.get(consumo.getCamadaCustoId());
+            if (camada != null) {
+                camada.setQuantidadeRestante(camada.getQuantidadeRestante().add(consumo.getQuantidade()));
+                camada.setValorRestante(camada.getValorRestante().add(consumo.getValor()));
+            }
+        }
+        consumoCamadaCustoRepository.deleteAll(consumos);
+        log.debug("Estornados {} consumos de camada da movimentação ID: {}", consumos.size(), movimentacaoId);
+    }
+
+    /**
+     * Reconstrói as camadas do item a partir do histórico: compras e saídas em ordem cronológica.
+     * Saídas sem saldo suficiente nas camadas são consumidas até onde houver saldo.
+     * Recusada enquanto houver partições de movimentacao arquivadas (faltariam as saídas dos meses arquivados).
+     */
+    @Transactional
+    public void reconstruir(Long itemId) {
+        particionamentoEstoqueService.exigirHistoricoCompleto("A reconstrução das camadas de custo");
+        log.debug("Reconstruindo camadas de custo do item ID: {}", itemId);
+        consumoCamadaCustoRepository.deleteByEstoqueItemId(itemId);
+        camadaCustoRepository.deleteByEstoqueItemId(itemId);
+
+        List<CamadaCusto> camadas = camadaCustoRepository.saveAll(
+                estoqueCustoRepository.findComprasRazaoByEstoqueItemId(itemId).stream().map(this::novaCamada).toList());
+        List<Movimentacao> saidas = movimentacaoRepository.findSaidasByEstoqueItemIdOrderByDataMovimentacaoAsc(itemId);
+
+        List<ConsumoCamadaCusto> consumos = new ArrayList<>();
+        for (Movimentacao saida : saidas) {
+            // Apenas camadas com entrada até a data da saída
+            ResultadoConsumo resultado = consumir(camadas, saida.getDataMovimentacao(), saida, consumos);
+            if (resultado.faltante().compareTo(BigDecimal.ZERO) > 0) {
+                log.warn("Saída ID: {} do item ID: {} sem saldo suficiente nas camadas (faltam {})",
+                        saida.getId(), itemId, resultado.faltante());
+            }
+        }
+        consumoCamadaCustoRepository.saveAll(consumos);
+
+        log.debug("Camadas do item ID: {} reconstruídas: {} camadas, {} saídas", itemId, camadas.size(), saidas.size());
+    }
+
+    /**
+     * Lista as camadas abertas do item em ordem PEPS
+     */
+    @Transactional(readOnly = true)
+    public List<CamadaCusto> listarAbertas(Long itemId) {
+        return camadaCustoRepository.findAbertasByEstoqueItemId(itemId);
+    }
+
+    /**
+     * Resume o saldo valorizado do item pelas camadas abertas
+     */
+    @Transactional(readOnly = true)
+    public ResumoCamadasCustoDTO resumir(Long itemId) {
+        return camadaCustoRepository.resumirAbertas(itemId);
+    }
+
+    private ResultadoConsumo consumir(List<CamadaCusto> camadas, LocalDateTime ate, Movimentacao saida,
+                                      List<ConsumoCamadaCusto> consumos) {
+        Long loteId = saida.getLote() != null ? saida.getLote().getId() : null;
+        BigDecimal faltante = saida.getQuantidade();
+        BigDecimal valor = BigDecimal.ZERO;
+
+        for (CamadaCusto camada : camadas) {
+            if (faltante.compareTo(BigDecimal.ZERO) <= 0 || (ate != null && camada.getDataEntrada().isAfter(ate))) {
+                break;
+            }
+            if (camada.getQuantidadeRestante().compareTo(BigDecimal.ZERO) <= 0 ||
+                (loteId != null && !loteId.equals(camada.getLoteId()))) {
+                continue;
+            }
+
+            BigDecimal quantidade = faltante.min(camada.getQuantidadeRestante());
+            BigDecimal valorConsumido;
+            if (quantidade.compareTo(camada.getQuantidadeRestante()) == 0) {
+                // Consumo total leva o valor restante, sem resíduo de arredondamento na camada
+                valorConsumido = camada.getValorRestante();
+            } else {
+                valorConsumido = quantidade.multiply(camada.getCustoUnitario()).setScale(4, RoundingMode.HALF_UP);
+            }
+
+            camada.setQuantidadeRestante(camada.getQuantidadeRestante().subtract(quantidade));
+            camada.setValorRestante(camada.getValorRestante().subtract(valorConsumido));
+            consumos.add(new ConsumoCamadaCusto(null, camada.getId(), saida.getId(), camada.getEstoqueItemId(),
+                    quantidade, valorConsumido, saida.getDataMovimentacao()));
+
+            faltante = faltante.subtract(quantidade);
+            valor = valor.add(valorConsumido);
+        }
+        return new ResultadoConsumo(valor, faltante.max(BigDecimal.ZERO));
+    }
+
+    private CamadaCusto novaCamada(EstoqueCusto custo) {
+        BigDecimal valorTotal = custo.calcularCustoTotalComFrete();
+        CamadaCusto camada = new CamadaCusto();
+        camada.setEstoqueItemId(custo.getEstoqueItem().getId());
+        camada.setLoteId(custo.getLote() != null ? custo.getLote().getId() : null);
+        camada.setEstoqueCustoId(custo.getId());
+        camada.setDataEntrada(custo.getDataCusto());
+        camada.setQuantidadeOriginal(custo.getQuantidade());
+        camada.setQuantidadeRestante(custo.getQuantidade());
+        camada.setCustoUnitario(valorTotal.divide(custo.getQuantidade(), 6, RoundingMode.HALF_UP));
+        camada.setValorRestante(valorTotal);
+        return camada;
+    }
+
+    private boolean isEntrada(EstoqueCusto custo) {
+        return custo.getTipoCusto() == EstoqueCusto.TipoCusto.COMPRA &&
+               custo.getQuantidade() != null && custo.getQuantidade().compareTo(BigDecimal.ZERO) > 0;
+    }
+
+    private record ResultadoConsumo(BigDecimal valor, BigDecimal faltante) {
+    }
+}
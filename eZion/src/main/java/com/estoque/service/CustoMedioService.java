@@ -0,0 +1,182 @@
+package com.estoque.service;
+
+import com.estoque.dto.DivergenciaCustoMedioDTO;
+import com.estoque.dto.VerificacaoCustoMedioDTO;
+import com.estoque.model.EstoqueCusto;
+import com.estoque.model.EstoqueCusto.TipoCusto;
+import com.estoque.repository.EstoqueCustoRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Razão incremental de custo médio.
+ * Cada lançamento de compra guarda a quantidade e o valor acumulados até ele (ordem data, id),
+ * de modo que um lançamento no fim do razão custa O(1) e um lançamento retroativo
+ * reprocessa apenas os lançamentos a partir da sua posição.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CustoMedioService {
+
+    private final EstoqueCustoRepository estoqueCustoRepository;
+
+    /**
+     * Atualiza o razão após a inclusão ou exclusão de um custo
+     */
+    @Transactional
+    public void atualizarRazao(EstoqueCusto custo) {
+        if (!isEntradaRazao(custo)) {
+            return;
+        }
+        reprocessarAPartirDe(custo.getEstoqueItem().getId(), custo.getDataCusto(), custo.getId());
+    }
+
+    /**
+     * Reprocessa o razão do item a partir da posição (data, id), inclusive.
+     * Parte dos acumuladores do lançamento imediatamente anterior; se ele ainda não
+     * possuir acumuladores (registros anteriores ao razão), executa o replay completo.
+     */
+    @Transactional
+    public void reprocessarAPartirDe(Long itemId, LocalDateTime data, Long id) {
+        List<EstoqueCusto> anteriores = estoqueCustoRepository.findComprasAnteriores(itemId, data, id, PageRequest.of(0, 1));
+
+        AcumuladorCustoMedio acumulador = new AcumuladorCustoMedio();
+        if (!anteriores.isEmpty()) {
+            EstoqueCusto anterior = anteriores.get(0);
+            if (anterior.getQuantidadeAcumulada() == null || anterior.getValorAcumulado() == null) {
+                log.debug("Lançamento {} sem acumuladores, executando replay completo do item ID: {}", anterior.getId(), itemId);
+                recalcularCompleto(itemId);
+                return;
+            }
+            acumulador = new AcumuladorCustoMedio(anterior.getQuantidadeAcumulada(), anterior.getValorAcumulado());
+        }
+
+        List<EstoqueCusto> seguintes = estoqueCustoRepository.findComprasAPartirDe(itemId, data, id);
+        for (EstoqueCusto custo : seguintes) {
+            aplicar(acumulador, custo);
+        }
+
+        log.debug("Razão do item ID: {} reprocessado a partir de {} ({} lançamentos)", itemId, data, seguintes.size());
+    }
+
+    /**
+     * Recalcula todo o razão do item em ordem cronológica
+     */
+    @Transactional
+    public void recalcularCompleto(Long itemId) {
+        List<EstoqueCusto> compras = estoqueCustoRepository.findComprasRazaoByEstoqueItemId(itemId);
+
+        AcumuladorCustoMedio acumulador = new AcumuladorCustoMedio();
+        for (EstoqueCusto custo : compras) {
+            aplicar(acumulador, custo);
+        }
+
+        log.debug("Replay completo do razão do item ID: {} ({} lançamentos)", itemId, compras.size());
+    }
+
+    /**
+     * Custo médio do item vigente na data: o custo médio do último lançamento de compra até ela.
+     * Se esse lançamento ainda não foi processado pelo razão (custo médio nulo), calcula o valor
+     * sem gravar, a partir dos lançamentos. Retorna zero se não houver compras até a data.
+     */
+    @Transactional(readOnly = true)
+    public BigDecimal custoMedioEm(Long itemId, LocalDateTime em) {
+        List<BigDecimal> custosMedios = estoqueCustoRepository.findCustosMediosAte(itemId, em, PageRequest.of(0, 1));
+        if (custosMedios.isEmpty()) {
+            return BigDecimal.ZERO;
+        }
+        if (custosMedios.get(0) == null) {
+            log.debug("Razão do item ID: {} ainda não processado até {}, calculando custo médio", itemId, em);
+            return calcularCustoMedioEm(itemId, em);
+        }
+        return custosMedios.get(0);
+    }
+
+    /**
+     * Calcula o custo médio do item vigente na data a partir dos lançamentos de compra, sem usar
+     * nem alterar os valores gravados no razão (para quando o razão do item está pendente de recálculo)
+     */
+    @Transactional(readOnly = true)
+    public BigDecimal calcularCustoMedioEm(Long itemId, LocalDateTime em) {
+        AcumuladorCustoMedio acumulador = new AcumuladorCustoMedio();
+        for (EstoqueCusto custo : estoqueCustoRepository.findComprasRazaoByEstoqueItemId(itemId)) {
+            if (custo.getDataCusto().isAfter(em)) {
+                break;
+            }
+            acumulador.somar(custo.getQuantidade(), custo.calcularCustoTotalComFrete());
+        }
+        return acumulador.custoMedio();
+    }
+
+    /**
+     * Compara os valores gravados pelo razão incremental com um replay completo, sem alterar nada
+     */
+    @Transactional(readOnly = true)
+    public VerificacaoCustoMedioDTO verificar(Long itemId) {
+        log.debug("Verificando razão de custo médio do item ID: {}", itemId);
+        List<EstoqueCusto> compras = estoqueCustoRepository.findComprasRazaoByEstoqueItemId(itemId);
+
+        AcumuladorCustoMedio acumulador = new AcumuladorCustoMedio();
+        List<DivergenciaCustoMedioDTO> divergencias = new ArrayList<>();
+
+        for (EstoqueCusto custo : compras) {
+            BigDecimal custoMedioEsperado = acumulador.somar(custo.getQuantidade(), custo.calcularCustoTotalComFrete());
+
+            if (!mesmoValor(custo.getCustoMedio(), custoMedioEsperado) ||
+                !mesmoValor(custo.getQuantidadeAcumulada(), acumulador.getQuantidade()) ||
+                !mesmoValor(custo.getValorAcumulado(), acumulador.getValor())) {
+                divergencias.add(new DivergenciaCustoMedioDTO(
+                        custo.getId(),
+                        custo.getDataCusto(),
+                        custo.getCustoMedio(),
+                        custoMedioEsperado,
+                        custo.getQuantidadeAcumulada(),
+                        acumulador.getQuantidade(),
+                        custo.getValorAcumulado(),
+                        acumulador.getValor()));
+            }
+        }
+
+        return new VerificacaoCustoMedioDTO(itemId, compras.size(), divergencias.isEmpty(), divergencias);
+    }
+
+    private void aplicar(AcumuladorCustoMedio acumulador, EstoqueCusto custo) {
+        BigDecimal custoMedio = acumulador.somar(custo.getQuantidade(), custo.calcularCustoTotalComFrete());
+
+        // Só altera o que mudou, para que o dirty checking não gere updates desnecessários
+        if (!mesmoValor(custo.getCustoMedio(), custoMedio)) {
+            custo.setCustoMedio(custoMedio);
+        }
+        if (!mesmoValor(custo.getQuantidadeAcumulada(), acumulador.getQuantidade())) {
+            custo.setQuantidadeAcumulada(acumulador.getQuantidade());
+        }
+        if (!mesmoValor(custo.getValorAcumulado(), acumulador.getValor())) {
+            custo.setValorAcumulado(acumulador.getValor());
+        }
+    }
+
+    /**
+     * Indica se o custo participa do razão (compra com quantidade positiva)
+     */
+    boolean isEntradaRazao(EstoqueCusto custo) {
+        return custo.getEstoqueItem() != null && custo.getTipoCusto() == TipoCusto.COMPRA &&
+               custo.getQuantidade() != null && custo.getQuantidade().compareTo(BigDecimal.ZERO) > 0;
+    }
+
+    private boolean mesmoValor(BigDecimal registrado, BigDecimal esperado) {
+        if (registrado == null || esperado == null) {
+            return Objects.equals(registrado, esperado);
+        }
+        return registrado.compareTo(esperado) == 0;
+    }
+}
@@ -0,0 +1,258 @@
+package com.estoque.service;
+
+import com.estoque.dto.LoteDisponivelDTO;
+import com.estoque.repository.LoteRepository;
+import com.estoque.util.ConsultaEmBlocos;
+import com.estoque.util.Transacoes;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache dos lotes disponíveis de cada item, em ordem FIFO (data de entrada) e com a quantidade acumulada,
+ * para a separação e a consulta de estoque disponível sem ir ao banco. O banco continua sendo a referência:
+ * as baixas de saída continuam sendo updates condicionais e, após o commit, atualizam a entrada do item com o
+ * estado confirmado dos lotes baixados (pela versão do lote, sem reaplicar uma baixa já lida do banco); as demais
+ * alterações de lote descartam a entrada do item, e a próxima leitura a recarrega.
+ * O cache é limitado e descarta os itens menos usados (LRU).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DisponibilidadeLoteService {
+
+    private static final String SQL_LOTES_DISPONIVEIS =
+            "SELECT id, numero_lote, data_entrada, data_validade, quantidade_disponivel, versao FROM lote " +
+            "WHERE estoque_item_id = ? AND ativo = true AND quantidade_disponivel > 0 ORDER BY data_entrada, id";
+
+    private static final String SQL_ESTADO_LOTES =
+            "SELECT id, quantidade_disponivel, ativo, versao FROM lote WHERE id IN (%s)";
+
+    private final LoteRepository loteRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${estoque.lote.cache-itens:5000}")
+    private int tamanhoCache;
+
+    /**
+     * Lotes disponíveis por item, em ordem de acesso
+     */
+    private Map<Long, LotesItem> porItem;
+
+    /**
+     * Incrementada a cada descarte: uma carga que leu o banco antes de um commit não grava o resultado no cache
+     */
+    private final AtomicLong geracao = new AtomicLong();
+
+    @PostConstruct
+    void criarCache() {
+        porItem = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, LotesItem> maisAntiga) {
+                return size() > tamanhoCache;
+            }
+        });
+    }
+
+    /**
+     * Lotes disponíveis do item em ordem FIFO
+     */
+    public List<LoteDisponivelDTO> listarFIFO(Long itemId) {
+        return obter(itemId).lotes();
+    }
+
+    /**
+     * Soma da quantidade disponível dos lotes ativos do item
+     */
+    public BigDecimal calcularDisponivel(Long itemId) {
+        return obter(itemId).total();
+    }
+
+    /**
+     * Descarta o cache dos itens quando a transação atual for confirmada
+     */
+    public void registrarAlteracaoItens(Collection<Long> itemIds) {
+        Set<Long> itens = new HashSet<>(itemIds);
+        Transacoes.aposCommit(() -> descartar(itens));
+    }
+
+    /**
+     * Descarta o cache do item quando a transação atual for confirmada
+     */
+    public void registrarAlteracaoItem(Long itemId) {
+        registrarAlteracaoItens(List.of(itemId));
+    }
+
+    /**
+     * Registra baixas já aplicadas por updates condicionais nos lotes do item. O estado dos lotes é lido agora,
+     * na transação que os baixou e ainda os mantém bloqueados, e aplicado à entrada do item após o commit,
+     * que assim continua em cache para a próxima separação
+     */
+    public void registrarBaixas(Long itemId, Collection<Long> loteIds) {
+        if (loteIds.isEmpty()) {
+            return;
+        }
+        List<EstadoLote> estados = ConsultaEmBlocos.buscar(new HashSet<>(loteIds), bloco -> jdbcTemplate.query(
+                String.format(SQL_ESTADO_LOTES, String.join(", ", Collections.nCopies(bloco.size(), "?"))),
+                (rs, linha) -> new EstadoLote(rs.getLong("id"), rs.getBigDecimal("quantidade_disponivel"),
+                        rs.getBoolean("ativo"), rs.getLong("versao")),
+                bloco.toArray()));
+        Transacoes.aposCommit(() -> aplicarBaixas(itemId, estados));
+    }
+
+    /**
+     * Descarta já o cache do item (ex.: baixa recusada porque a quantidade do cache estava desatualizada)
+     */
+    public void descartar(Long itemId) {
+        descartar(Set.of(itemId));
+    }
+
+    /**
+     * Descarta o cache dos itens dos lotes quando a transação atual for confirmada
+     */
+    public void registrarAlteracaoLotes(Collection<Long> loteIds) {
+        if (loteIds.isEmpty()) {
+            return;
+        }
+        if (porItem.isEmpty()) {
+            // Nada a descartar, mas uma carga em andamento não deve gravar o estado anterior ao commit
+            Transacoes.aposCommit(geracao::incrementAndGet);
+            return;
+        }
+        registrarAlteracaoItens(loteRepository.findEstoqueItemIdsByIdIn(loteIds));
+    }
+
+    /**
+     * Descarta todo o cache quando a transação atual for confirmada (alterações em massa)
+     */
+    public void registrarAlteracaoGeral() {
+        Transacoes.aposCommit(this::descartarTodos);
+    }
+
+    private LotesItem obter(Long itemId) {
+        LotesItem lotes = porItem.get(itemId);
+        if (lotes != null) {
+            return lotes;
+        }
+        long geracaoLeitura = geracao.get();
+        lotes = carregar(itemId);
+        // Dentro de uma transação de escrita a leitura pode ver alterações ainda não confirmadas
+        boolean transacaoEscrita = TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        if (!transacaoEscrita) {
+            synchronized (porItem) {
+                if (geracao.get() == geracaoLeitura) {
+                    porItem.put(itemId, lotes);
+                }
+            }
+        }
+        return lotes;
+    }
+
+    private LotesItem carregar(Long itemId) {
+        List<LoteDisponivelDTO> lotes = new ArrayList<>();
+        Map<Long, Long> versoes = new HashMap<>();
+        BigDecimal[] acumulado = {BigDecimal.ZERO};
+        jdbcTemplate.query(SQL_LOTES_DISPONIVEIS, rs -> {
+            BigDecimal quantidade = rs.getBigDecimal("quantidade_disponivel");
+            acumulado[0] = acumulado[0].add(quantidade);
+            lotes.add(new LoteDisponivelDTO(rs.getLong("id"), rs.getString("numero_lote"),
+                    rs.getDate("data_entrada").toLocalDate(),
+                    rs.getDate("data_validade") != null ? rs.getDate("data_validade").toLocalDate() : null,
+                    quantidade, acumulado[0]));
+            versoes.put(rs.getLong("id"), rs.getLong("versao"));
+        }, itemId);
+        log.debug("Lotes disponíveis do item ID: {} carregados no cache ({} lotes)", itemId, lotes.size());
+        return new LotesItem(Collections.unmodifiableList(lotes), acumulado[0], versoes);
+    }
+
+    /**
+     * Aplica à entrada do item o estado confirmado dos lotes baixados. Lotes que o cache já tem em versão igual
+     * ou posterior (recarregados depois do commit) ficam como estão; um lote baixado que não está no cache indica
+     * entrada desatualizada, que é descartada
+     */
+    private void aplicarBaixas(Long itemId, List<EstadoLote> estados) {
+        synchronized (porItem) {
+            // Uma carga em andamento leu o banco antes do commit: não deve gravar o estado anterior
+            geracao.incrementAndGet();
+            LotesItem atual = porItem.get(itemId);
+            if (atual == null) {
+                return;
+            }
+            Map<Long, EstadoLote> novos = new HashMap<>();
+            for (EstadoLote estado : estados) {
+                Long versaoCache = atual.versoes().get(estado.loteId());
+                if (versaoCache == null) {
+                    if (estado.ativo() && estado.quantidadeDisponivel().signum() > 0) {
+                        porItem.remove(itemId);
+                        return;
+                    }
+                } else if (versaoCache < estado.versao()) {
+                    novos.put(estado.loteId(), estado);
+                }
+            }
+            if (novos.isEmpty()) {
+                return;
+            }
+
+            List<LoteDisponivelDTO> lotes = new ArrayList<>(atual.lotes().size());
+            Map<Long, Long> versoes = new HashMap<>(atual.versoes());
+            BigDecimal acumulado = BigDecimal.ZERO;
+            for (LoteDisponivelDTO lote : atual.lotes()) {
+                EstadoLote estado = novos.get(lote.getLoteId());
+                BigDecimal quantidade = estado != null ? estado.quantidadeDisponivel() : lote.getQuantidadeDisponivel();
+                if (estado != null && (!estado.ativo() || quantidade.signum() <= 0)) {
+                    versoes.remove(lote.getLoteId());
+                    continue;
+                }
+                if (estado != null) {
+                    versoes.put(lote.getLoteId(), estado.versao());
+                }
+                acumulado = acumulado.add(quantidade);
+                lotes.add(new LoteDisponivelDTO(lote.getLoteId(), lote.getNumeroLote(), lote.getDataEntrada(),
+                        lote.getDataValidade(), quantidade, acumulado));
+            }
+            porItem.put(itemId, new LotesItem(Collections.unmodifiableList(lotes), acumulado, versoes));
+        }
+        log.debug("Baixas de {} lotes aplicadas ao cache do item ID: {}", estados.size(), itemId);
+    }
+
+    private void descartar(Set<Long> itemIds) {
+        synchronized (porItem) {
+            geracao.incrementAndGet();
+            porItem.keySet().removeAll(itemIds);
+        }
+    }
+
+    private void descartarTodos() {
+        synchronized (porItem) {
+            geracao.incrementAndGet();
+            porItem.clear();
+        }
+    }
+
+    /**
+     * Lotes disponíveis do item em ordem FIFO, a soma das quantidades e a versão lida de cada lote
+     */
+    private record LotesItem(List<LoteDisponivelDTO> lotes, BigDecimal total, Map<Long, Long> versoes) {
+    }
+
+    private record EstadoLote(Long loteId, BigDecimal quantidadeDisponivel, boolean ativo, long versao) {
+    }
+}
@@ -1,9 +1,21 @@
 package com.estoque.service;
 
+import com.compras.model.PedidoCompra;
+import com.compras.repository.PedidoCompraRepository;
+import com.estoque.dto.FilaRecalculoCustoDTO;
+import com.estoque.dto.ImportacaoCustosDTO;
+import com.estoque.dto.LinhaRelatorioCustoDTO.Agrupamento;
+import com.estoque.dto.RateioFreteDTO;
+import com.estoque.dto.RateioFreteRequestDTO;
+import com.estoque.dto.ResumoCamadasCustoDTO;
+import com.estoque.dto.ResumoCustoItemDTO;
+import com.estoque.dto.VerificacaoCustoMedioDTO;
+import com.estoque.model.CamadaCusto;
 import com.estoque.model.EstoqueCusto;
 import com.estoque.model.EstoqueCusto.TipoCusto;
 import com.estoque.model.EstoqueItem;
 import com.estoque.model.Lote;
+import com.estoque.model.RecalculoCustoJob;
 import com.estoque.repository.EstoqueCustoRepository;
 import com.estoque.repository.EstoqueItemRepository;
 import com.estoque.repository.LoteRepository;
@@ -11,14 +23,20 @@ import com.seguranca.model.Usuario;
 import com.seguranca.repository.UsuarioRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Service
 @RequiredArgsConstructor
@@ -29,6 +47,17 @@ public class EstoqueCustoService {
     private final EstoqueItemRepository estoqueItemRepository;
     private final LoteRepository loteRepository;
     private final UsuarioRepository usuarioRepository;
+    private final PedidoCompraRepository pedidoCompraRepository;
+    private final CustoMedioService custoMedioService;
+    private final RecalculoCustoMedioService recalculoCustoMedioService;
+    private final ImportacaoCustoService importacaoCustoService;
+    private final FilaRecalculoCustoService filaRecalculoCustoService;
+    private final RateioFreteService rateioFreteService;
+    private final CamadaCustoService camadaCustoService;
+    private final RelatorioCustoService relatorioCustoService;
+
+    @Value("${estoque.custo.fila.espera-ms:2000}")
+    private long esperaRecalculoMs;
 
     /**
      * Lista todos os custos
@@ -112,6 +141,13 @@ public class EstoqueCustoService {
             estoqueCusto.setLote(lote);
         }
 
+        // Validar se o pedido de compra existe (se informado)
+        if (estoqueCusto.getPedidoCompra() != null && estoqueCusto.getPedidoCompra().getId() != null) {
+            PedidoCompra pedidoCompra = pedidoCompraRepository.findById(estoqueCusto.getPedidoCompra().getId())
+                .orElseThrow(() -> new IllegalArgumentException("Pedido de compra não encontrado com ID: " + estoqueCusto.getPedidoCompra().getId()));
+            estoqueCusto.setPedidoCompra(pedidoCompra);
+        }
+
         // Validar se o usuário existe
         Usuario usuario = usuarioRepository.findById(estoqueCusto.getUsuario().getId())
             .orElseThrow(() -> new IllegalArgumentException("Usuário não encontrado com ID: " + estoqueCusto.getUsuario().getId()));
@@ -124,12 +160,88 @@ public class EstoqueCustoService {
 
         EstoqueCusto custoSalvo = estoqueCustoRepository.save(estoqueCusto);
 
+        // Itens PEPS: a compra abre uma camada de custo
+        camadaCustoService.registrarEntrada(custoSalvo);
+        relatorioCustoService.invalidar(custoSalvo.getDataCusto());
+
         // Após salvar, recalcular custos médios se for uma compra
         atualizarCustoMedioAposLancamento(custoSalvo);
 
         return custoSalvo;
     }
 
+    /**
+     * Registra custos em lote (importação de notas fiscais), relatando os erros por linha
+     */
+    public ImportacaoCustosDTO registrarEmLote(List<EstoqueCusto> custos) {
+        log.debug("Registrando {} custos em lote", custos.size());
+        return importacaoCustoService.importar(custos);
+    }
+
+    /**
+     * Rateia o frete de uma compra entre suas linhas de custo
+     */
+    public RateioFreteDTO ratearFrete(RateioFreteRequestDTO request) {
+        log.debug("Rateando frete de {} por {}", request.getValorFrete(), request.getCriterio());
+        return rateioFreteService.ratear(request);
+    }
+
+    /**
+     * Valida o período do relatório de custos e impostos e retorna seus meses
+     */
+    public List<YearMonth> listarMesesRelatorio(YearMonth inicio, YearMonth fim) {
+        return relatorioCustoService.listarMeses(inicio, fim);
+    }
+
+    /**
+     * Escreve o relatório de custos e impostos em CSV
+     */
+    public void escreverRelatorioCsv(List<YearMonth> meses, Agrupamento agrupamento, TipoCusto tipoCusto,
+                                     OutputStream saida) throws IOException {
+        log.debug("Gerando relatório de custos em CSV de {} meses por {}", meses.size(), agrupamento);
+        relatorioCustoService.escreverCsv(meses, agrupamento, tipoCusto, saida);
+    }
+
+    /**
+     * Escreve o relatório de custos e impostos em JSON
+     */
+    public void escreverRelatorioJson(List<YearMonth> meses, Agrupamento agrupamento, TipoCusto tipoCusto,
+                                      OutputStream saida) throws IOException {
+        log.debug("Gerando relatório de custos em JSON de {} meses por {}", meses.size(), agrupamento);
+        relatorioCustoService.escreverJson(meses, agrupamento, tipoCusto, saida);
+    }
+
+    /**
+     * Lista as camadas de custo PEPS abertas de um item
+     */
+    @Transactional(readOnly = true)
+    public List<CamadaCusto> listarCamadasAbertas(Long itemId) {
+        log.debug("Listando camadas de custo abertas do item ID: {}", itemId);
+        return camadaCustoService.listarAbertas(itemId);
+    }
+
+    /**
+     * Resume o saldo valorizado pelas camadas de custo PEPS abertas de um item
+     */
+    @Transactional(readOnly = true)
+    public ResumoCamadasCustoDTO resumirCamadas(Long itemId) {
+        log.debug("Resumindo camadas de custo do item ID: {}", itemId);
+        return camadaCustoService.resumir(itemId);
+    }
+
+    /**
+     * Reconstrói as camadas de custo PEPS de um item a partir do histórico
+     */
+    @Transactional
+    public void reconstruirCamadas(Long itemId) {
+        EstoqueItem item = estoqueItemRepository.findById(itemId)
+            .orElseThrow(() -> new IllegalArgumentException("Item de estoque não encontrado com ID: " + itemId));
+        if (!camadaCustoService.usaCamadas(item)) {
+            throw new IllegalArgumentException("Item de estoque ID: " + itemId + " não usa custeio PEPS");
+        }
+        camadaCustoService.reconstruir(itemId);
+    }
+
     /**
      * Calcula o custo total de um item
      */
@@ -151,33 +263,47 @@ public class EstoqueCustoService {
     }
 
     /**
-     * Calcula o custo médio ponderado de um item
+     * Resume os custos de um item (totais, impostos, frete e custo médio ponderado) em uma única consulta
+     */
+    @Transactional(readOnly = true)
+    public ResumoCustoItemDTO resumirCustosItem(Long itemId) {
+        log.debug("Resumindo custos do item ID: {}", itemId);
+        return estoqueCustoRepository.resumirCustosByEstoqueItemId(itemId);
+    }
+
+    /**
+     * Calcula o custo médio ponderado de um item (resumo de custos: média de todas as linhas com quantidade,
+     * inclusive as que não entram no razão). Não é usado para valorizar movimentações; para isso
+     * veja {@link #obterCustoMedioParaMovimentacao(Long, LocalDateTime)}.
      */
     @Transactional(readOnly = true)
     public BigDecimal calcularCustoMedioPonderado(Long itemId) {
         log.debug("Calculando custo médio ponderado do item ID: {}", itemId);
-        List<EstoqueCusto> custos = estoqueCustoRepository.findByEstoqueItemIdOrderByDataCustoDesc(itemId);
-
-        if (custos.isEmpty()) {
-            return BigDecimal.ZERO;
-        }
-
-        BigDecimal totalValor = BigDecimal.ZERO;
-        BigDecimal totalQuantidade = BigDecimal.ZERO;
+        return resumirCustosItem(itemId).getCustoMedioPonderado();
+    }
 
-        for (EstoqueCusto custo : custos) {
-            if (custo.getQuantidade() != null && custo.getQuantidade().compareTo(BigDecimal.ZERO) > 0) {
-                BigDecimal valorComImpostos = custo.calcularCustoTotalComImpostos();
-                totalValor = totalValor.add(valorComImpostos.multiply(custo.getQuantidade()));
-                totalQuantidade = totalQuantidade.add(custo.getQuantidade());
-            }
-        }
+    /**
+     * Busca o custo médio do item vigente em uma data
+     */
+    @Transactional(readOnly = true)
+    public BigDecimal obterCustoMedioEm(Long itemId, LocalDateTime em) {
+        log.debug("Buscando custo médio do item ID: {} em {}", itemId, em);
+        return custoMedioService.custoMedioEm(itemId, em);
+    }
 
-        if (totalQuantidade.compareTo(BigDecimal.ZERO) > 0) {
-            return totalValor.divide(totalQuantidade, 4, RoundingMode.HALF_UP);
+    /**
+     * Custo médio unitário para valorizar uma movimentação na data informada: o custo médio do razão
+     * vigente na data, tanto para movimentações retroativas quanto para as correntes.
+     * Se o razão do item está na fila de recálculo, aguarda o processamento; se ele não terminar
+     * a tempo (ou falhar), calcula o custo médio a partir dos lançamentos.
+     */
+    @Transactional(readOnly = true)
+    public BigDecimal obterCustoMedioParaMovimentacao(Long itemId, LocalDateTime dataMovimentacao) {
+        if (filaRecalculoCustoService.pendente(itemId) && !aguardarRecalculoPendente(itemId)) {
+            log.debug("Razão do item ID: {} pendente, calculando custo médio em {}", itemId, dataMovimentacao);
+            return custoMedioService.calcularCustoMedioEm(itemId, dataMovimentacao);
         }
-
-        return BigDecimal.ZERO;
+        return custoMedioService.custoMedioEm(itemId, dataMovimentacao);
     }
 
     /**
@@ -186,11 +312,7 @@ public class EstoqueCustoService {
     @Transactional(readOnly = true)
     public BigDecimal calcularTotalImpostos(Long itemId) {
         log.debug("Calculando total de impostos do item ID: {}", itemId);
-        List<EstoqueCusto> custos = estoqueCustoRepository.findByEstoqueItemIdOrderByDataCustoDesc(itemId);
-
-        return custos.stream()
-                .map(EstoqueCusto::calcularTotalImpostos)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return resumirCustosItem(itemId).getTotalImpostos();
     }
 
     /**
@@ -199,11 +321,7 @@ public class EstoqueCustoService {
     @Transactional(readOnly = true)
     public BigDecimal calcularCustoTotalComFrete(Long itemId) {
         log.debug("Calculando custo total com frete do item ID: {}", itemId);
-        List<EstoqueCusto> custos = estoqueCustoRepository.findByEstoqueItemIdOrderByDataCustoDesc(itemId);
-
-        return custos.stream()
-                .map(EstoqueCusto::calcularCustoTotalComFrete)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return resumirCustosItem(itemId).getCustoTotalComFrete();
     }
 
     /**
@@ -212,12 +330,7 @@ public class EstoqueCustoService {
     @Transactional(readOnly = true)
     public BigDecimal calcularFreteTotalRateado(Long itemId) {
         log.debug("Calculando frete total rateado do item ID: {}", itemId);
-        List<EstoqueCusto> custos = estoqueCustoRepository.findByEstoqueItemIdOrderByDataCustoDesc(itemId);
-
-        return custos.stream()
-                .filter(custo -> custo.getFreteRateado() != null)
-                .map(EstoqueCusto::getFreteRateado)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return resumirCustosItem(itemId).getFreteTotalRateado();
     }
 
     /**
@@ -227,72 +340,41 @@ public class EstoqueCustoService {
     @Transactional
     public void recalcularCustosMediosItem(Long itemId) {
         log.debug("Recalculando custos médios do item ID: {}", itemId);
-
-        // Busca todos os custos do item em ordem cronológica (mais antigo primeiro)
-        List<EstoqueCusto> custos = estoqueCustoRepository.findByEstoqueItemIdOrderByDataCustoAsc(itemId);
-
-        if (custos.isEmpty()) {
-            log.debug("Nenhum custo encontrado para o item ID: {}", itemId);
-            return;
-        }
-
-        BigDecimal quantidadeAcumulada = BigDecimal.ZERO;
-        BigDecimal valorTotalAcumulado = BigDecimal.ZERO;
-
-        for (EstoqueCusto custo : custos) {
-            // Só considera custos de compra para cálculo do custo médio
-            if (custo.getTipoCusto() == TipoCusto.COMPRA && custo.getQuantidade() != null &&
-                custo.getQuantidade().compareTo(BigDecimal.ZERO) > 0) {
-
-                // Calcula o custo total da entrada (valor + impostos + frete rateado)
-                BigDecimal custoTotalEntrada = custo.calcularCustoTotalComFrete();
-
-                // Adiciona à quantidade e valor acumulados
-                quantidadeAcumulada = quantidadeAcumulada.add(custo.getQuantidade());
-                valorTotalAcumulado = valorTotalAcumulado.add(custoTotalEntrada);
-
-                // Calcula o custo médio até este ponto
-                if (quantidadeAcumulada.compareTo(BigDecimal.ZERO) > 0) {
-                    BigDecimal custoMedioAtual = valorTotalAcumulado.divide(quantidadeAcumulada, 6, RoundingMode.HALF_UP)
-                            .setScale(4, RoundingMode.HALF_UP);
-
-                    // Atualiza o custo médio do registro
-                    custo.setCustoMedio(custoMedioAtual);
-                    estoqueCustoRepository.save(custo);
-
-                    log.debug("Custo médio atualizado para entrada {}: {} (quantidade acumulada: {})",
-                            custo.getId(), custoMedioAtual, quantidadeAcumulada);
-                }
-            }
-        }
-
+        custoMedioService.recalcularCompleto(itemId);
         log.debug("Recálculo de custos médios concluído para item ID: {}", itemId);
     }
 
+    /**
+     * Compara o razão incremental de custo médio do item com um replay completo
+     */
+    @Transactional(readOnly = true)
+    public VerificacaoCustoMedioDTO verificarCustosMediosItem(Long itemId) {
+        log.debug("Verificando custos médios do item ID: {}", itemId);
+        return custoMedioService.verificar(itemId);
+    }
+
     /**
      * Recalcula os custos médios de todos os itens
-     * Método para manutenção geral do sistema
+     * Método para manutenção geral do sistema, executado em segundo plano por blocos de itens
      */
-    @Transactional
-    public void recalcularCustosMediosTodosItens() {
+    public RecalculoCustoJob recalcularCustosMediosTodosItens() {
         log.debug("Iniciando recálculo de custos médios para todos os itens");
+        return recalculoCustoMedioService.iniciar();
+    }
 
-        // Busca todos os IDs de itens que possuem custos
-        List<Long> itemIds = estoqueCustoRepository.findByEstoqueItemIdOrderByDataCustoDesc(0L)
-                .stream()
-                .map(custo -> custo.getEstoqueItem().getId())
-                .distinct()
-                .toList();
-
-        for (Long itemId : itemIds) {
-            try {
-                recalcularCustosMediosItem(itemId);
-            } catch (Exception e) {
-                log.error("Erro ao recalcular custos do item ID: {}", itemId, e);
-            }
-        }
+    /**
+     * Busca um job de recálculo de custos médios por ID
+     */
+    public Optional<RecalculoCustoJob> obterRecalculo(Long jobId) {
+        return recalculoCustoMedioService.obter(jobId);
+    }
 
-        log.debug("Recálculo de custos médios concluído para todos os itens");
+    /**
+     * Retoma um job de recálculo de custos médios que falhou
+     */
+    public RecalculoCustoJob retomarRecalculo(Long jobId) {
+        log.debug("Retomando recálculo de custos médios ID: {}", jobId);
+        return recalculoCustoMedioService.retomar(jobId);
     }
 
     /**
@@ -302,8 +384,43 @@ public class EstoqueCustoService {
     public void atualizarCustoMedioAposLancamento(EstoqueCusto novoCusto) {
         log.debug("Atualizando custos médios após lançamento do custo ID: {}", novoCusto.getId());
 
-        if (novoCusto.getEstoqueItem() != null && novoCusto.getTipoCusto() == TipoCusto.COMPRA) {
-            recalcularCustosMediosItem(novoCusto.getEstoqueItem().getId());
+        // O razão é reprocessado após o commit, agrupando os lançamentos do mesmo item
+        filaRecalculoCustoService.agendar(novoCusto);
+    }
+
+    /**
+     * Situação da fila de recálculo de custos médios
+     */
+    public FilaRecalculoCustoDTO obterSituacaoFilaRecalculo() {
+        return filaRecalculoCustoService.obterSituacao();
+    }
+
+    /**
+     * Aguarda o recálculo pendente do item, para leituras que precisam refletir os últimos lançamentos
+     */
+    public boolean aguardarRecalculoItem(Long itemId, long timeoutSegundos) {
+        try {
+            filaRecalculoCustoService.aguardar(itemId).get(timeoutSegundos, TimeUnit.SECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Falha no recálculo do item ID: " + itemId, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private boolean aguardarRecalculoPendente(Long itemId) {
+        try {
+            filaRecalculoCustoService.aguardar(itemId).get(esperaRecalculoMs, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException | ExecutionException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
         }
     }
 
@@ -313,9 +430,13 @@ public class EstoqueCustoService {
     @Transactional
     public void excluir(Long id) {
         log.debug("Excluindo custo ID: {}", id);
-        if (!estoqueCustoRepository.existsById(id)) {
-            throw new IllegalArgumentException("Custo não encontrado com ID: " + id);
-        }
-        estoqueCustoRepository.deleteById(id);
+        EstoqueCusto custo = estoqueCustoRepository.findById(id)
+            .orElseThrow(() -> new IllegalArgumentException("Custo não encontrado com ID: " + id));
+        camadaCustoService.removerEntrada(custo);
+        estoqueCustoRepository.delete(custo);
+        relatorioCustoService.invalidar(custo.getDataCusto());
+
+        // Reprocessa o razão a partir da posição do custo excluído
+        filaRecalculoCustoService.agendar(custo);
     }
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package com.estoque.service;
 
 import com.estoque.model.EstoqueItem;
+import com.estoque.model.EstoqueItem.MetodoCusteio;
 import com.estoque.model.EstoqueItem.TipoItem;
 import com.estoque.model.Grupo;
 import com.estoque.repository.EstoqueItemRepository;
@@ -11,6 +12,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 @Service
@@ -20,6 +22,8 @@ public class EstoqueItemService {
 
     private final EstoqueItemRepository repository;
     private final GrupoRepository grupoRepository;
+    private final CamadaCustoService camadaCustoService;
+    private final RelatorioCustoService relatorioCustoService;
 
     /**
      * Lista todos os itens de estoque
@@ -114,6 +118,15 @@ public class EstoqueItemService {
             }
         }
 
+        // O relatório de custos em cache mostra código e descrição do item e agrupa pelo grupo
+        Long grupoAtualId = itemExistente.getGrupo() != null ? itemExistente.getGrupo().getId() : null;
+        Long novoGrupoId = itemAtualizado.getGrupo() != null ? itemAtualizado.getGrupo().getId() : null;
+        if (!itemExistente.getCodigo().equals(itemAtualizado.getCodigo()) ||
+            !Objects.equals(itemExistente.getDescricao(), itemAtualizado.getDescricao()) ||
+            (novoGrupoId != null && !novoGrupoId.equals(grupoAtualId))) {
+            relatorioCustoService.invalidarTodos();
+        }
+
         // Atualizar campos
         itemExistente.setCodigo(itemAtualizado.getCodigo());
         itemExistente.setDescricao(itemAtualizado.getDescricao());
@@ -131,8 +144,20 @@ public class EstoqueItemService {
         itemExistente.setQuantidadeMinima(itemAtualizado.getQuantidadeMinima());
         itemExistente.setQuantidadeMaxima(itemAtualizado.getQuantidadeMaxima());
         itemExistente.setAtivo(itemAtualizado.getAtivo());
+        itemExistente.setPeso(itemAtualizado.getPeso());
 
-        return repository.save(itemExistente);
+        // Ao passar para PEPS, monta as camadas de custo a partir do histórico
+        boolean passouParaPeps = itemAtualizado.getMetodoCusteio() == MetodoCusteio.PEPS &&
+                itemExistente.getMetodoCusteio() != MetodoCusteio.PEPS;
+        if (itemAtualizado.getMetodoCusteio() != null) {
+            itemExistente.setMetodoCusteio(itemAtualizado.getMetodoCusteio());
+        }
+
+        EstoqueItem itemSalvo = repository.save(itemExistente);
+        if (passouParaPeps) {
+            camadaCustoService.reconstruir(itemSalvo.getId());
+        }
+        return itemSalvo;
     }
 
     /**
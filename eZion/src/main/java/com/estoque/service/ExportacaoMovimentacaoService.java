@@ -0,0 +1,136 @@
+package com.estoque.service;
+
+import com.estoque.dto.MovimentacaoExportDTO;
+import com.estoque.util.CampoCsv;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Exportação de movimentações por período em NDJSON ou CSV.
+ * As linhas são lidas por um cursor no servidor (sessão sem estado, fetch size fixo), projetadas
+ * em DTOs planos e escritas direto na resposta, de modo que a memória usada não depende do período.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ExportacaoMovimentacaoService {
+
+    private static final String CONSULTA =
+            "SELECT new com.estoque.dto.MovimentacaoExportDTO(m.id, m.dataMovimentacao, m.tipoMovimentacao, " +
+            "i.id, i.codigo, l.id, l.nome, lt.id, lt.numeroLote, m.quantidade, m.custo, m.usuario.id, m.observacoes) " +
+            "FROM Movimentacao m JOIN m.estoqueItem i JOIN m.local l LEFT JOIN m.lote lt " +
+            "WHERE m.dataMovimentacao BETWEEN :inicio AND :fim ORDER BY m.dataMovimentacao, m.id";
+
+    private static final String CABECALHO_CSV = "id;data_movimentacao;tipo_movimentacao;estoque_item_id;codigo_item;" +
+            "local_id;nome_local;lote_id;numero_lote;quantidade;custo;usuario_id;observacoes";
+
+    private static final int TAMANHO_FETCH = 1000;
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Valida o período da exportação
+     */
+    public void validarPeriodo(LocalDateTime inicio, LocalDateTime fim) {
+        if (fim.isBefore(inicio)) {
+            throw new IllegalArgumentException("A data final deve ser igual ou posterior à data inicial");
+        }
+    }
+
+    /**
+     * Escreve as movimentações do período em NDJSON (um objeto JSON por linha)
+     */
+    public void escreverNdjson(LocalDateTime inicio, LocalDateTime fim, OutputStream saida) throws IOException {
+        // Sem flush a cada linha: o gerador e a resposta esvaziam o buffer quando ele enche
+        ObjectWriter writer = objectMapper.writerFor(MovimentacaoExportDTO.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        try (JsonGenerator generator = objectMapper.createGenerator(saida)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            percorrer(inicio, fim, linha -> {
+                writer.writeValue(generator, linha);
+                generator.writeRaw('\n');
+            });
+        }
+    }
+
+    /**
+     * Escreve as movimentações do período em CSV (separado por ponto e vírgula)
+     */
+    public void escreverCsv(LocalDateTime inicio, LocalDateTime fim, OutputStream saida) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(saida, StandardCharsets.UTF_8));
+        writer.write(CABECALHO_CSV);
+        writer.write('\n');
+        percorrer(inicio, fim, linha -> {
+            writer.write(linhaCsv(linha));
+            writer.write('\n');
+        });
+        writer.flush();
+    }
+
+    private void percorrer(LocalDateTime inicio, LocalDateTime fim, EscritorLinha escritor) throws IOException {
+        SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        long total = 0;
+        try (StatelessSession sessao = sessionFactory.openStatelessSession()) {
+            // O cursor do PostgreSQL só respeita o fetch size fora do autocommit; a transação é só de leitura
+            Transaction transacao = sessao.beginTransaction();
+            try (ScrollableResults<MovimentacaoExportDTO> linhas = sessao.createQuery(CONSULTA, MovimentacaoExportDTO.class)
+                    .setParameter("inicio", inicio)
+                    .setParameter("fim", fim)
+                    .setFetchSize(TAMANHO_FETCH)
+                    .setReadOnly(true)
+                    .scroll(ScrollMode.FORWARD_ONLY)) {
+                while (linhas.next()) {
+                    escritor.escrever(linhas.get());
+                    total++;
+                }
+            } finally {
+                transacao.rollback();
+            }
+        }
+        log.debug("Exportação de movimentações de {} a {}: {} linhas", inicio, fim, total);
+    }
+
+    private String linhaCsv(MovimentacaoExportDTO linha) {
+        return String.join(CampoCsv.SEPARADOR,
+                linha.getId().toString(),
+                linha.getDataMovimentacao().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME),
+                linha.getTipoMovimentacao().name(),
+                CampoCsv.inteiro(linha.getEstoqueItemId()),
+                CampoCsv.texto(linha.getCodigoItem()),
+                CampoCsv.inteiro(linha.getLocalId()),
+                CampoCsv.texto(linha.getNomeLocal()),
+                CampoCsv.inteiro(linha.getLoteId()),
+                CampoCsv.texto(linha.getNumeroLote()),
+                CampoCsv.numero(linha.getQuantidade()),
+                CampoCsv.numero(linha.getCusto()),
+                CampoCsv.inteiro(linha.getUsuarioId()),
+                CampoCsv.texto(linha.getObservacoes()));
+    }
+
+    @FunctionalInterface
+    private interface EscritorLinha {
+        void escrever(MovimentacaoExportDTO linha) throws IOException;
+    }
+}
@@ -0,0 +1,279 @@
+package com.estoque.service;
+
+import com.estoque.dto.SaldoHistoricoDTO;
+import com.estoque.dto.SaldoKardexDTO;
+import com.estoque.model.FechamentoEstoque;
+import com.estoque.model.SaldoFechamento;
+import com.estoque.repository.EstoqueItemRepository;
+import com.estoque.repository.FechamentoEstoqueRepository;
+import com.estoque.repository.MovimentacaoRepository;
+import com.estoque.repository.SaldoFechamentoRepository;
+import com.estoque.util.BancoDeDados;
+import com.estoque.util.Transacoes;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Fechamento mensal de estoque. Cada fechamento grava o saldo (quantidade e valor) de cada item por local
+ * no fim do mês, a partir do fechamento anterior mais as movimentações do mês. O saldo em uma data passa
+ * a ser o do último fechamento anterior mais as movimentações desde então, e os meses fechados deixam de
+ * aceitar movimentações retroativas, para que os saldos gravados continuem válidos.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FechamentoEstoqueService {
+
+    private static final String SQL_GRAVAR_SALDOS =
+            "INSERT INTO saldo_fechamento (competencia, estoque_item_id, local_id, quantidade, valor) " +
+            "SELECT ?, estoque_item_id, local_id, SUM(quantidade), SUM(valor) FROM (" +
+            "SELECT estoque_item_id, local_id, quantidade, valor FROM saldo_fechamento WHERE competencia = ? " +
+            "UNION ALL " +
+            "SELECT estoque_item_id, local_id, " +
+            "CASE WHEN tipo_movimentacao = 'ENTRADA' THEN quantidade ELSE -quantidade END, " +
+            "CASE WHEN tipo_movimentacao = 'ENTRADA' THEN COALESCE(custo, 0) ELSE -COALESCE(custo, 0) END " +
+            "FROM movimentacao WHERE data_movimentacao >= ? AND data_movimentacao < ?" +
+            ") movimento GROUP BY estoque_item_id, local_id HAVING SUM(quantidade) <> 0 OR SUM(valor) <> 0";
+
+    /**
+     * Início do histórico quando ainda não há fechamento anterior (data mínima aceita pelo banco)
+     */
+    private static final LocalDateTime INICIO_HISTORICO = LocalDateTime.of(1900, 1, 1, 0, 0);
+
+    private static final String SQL_BLOQUEAR_COMPETENCIA = "SELECT pg_advisory_xact_lock(?, ?)";
+
+    private static final String SQL_BLOQUEAR_COMPETENCIA_COMPARTILHADO = "SELECT pg_advisory_xact_lock_shared(?, ?)";
+
+    /**
+     * Primeira chave dos bloqueios consultivos do fechamento ("FECH"); a segunda é a competência (aaaamm)
+     */
+    private static final int CHAVE_BLOQUEIO_FECHAMENTO = 0x46454348;
+
+    private final FechamentoEstoqueRepository fechamentoEstoqueRepository;
+    private final SaldoFechamentoRepository saldoFechamentoRepository;
+    private final MovimentacaoRepository movimentacaoRepository;
+    private final EstoqueItemRepository estoqueItemRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Última competência fechada, carregada na primeira consulta e atualizada após o commit de cada fechamento
+     * e a cada conferência no banco. Em outra instância pode estar atrasada, por isso só serve para recusar
+     * (fechamentos não são desfeitos); a liberação é sempre conferida no banco.
+     */
+    private final AtomicReference<Optional<LocalDate>> ultimaCompetencia = new AtomicReference<>();
+
+    /**
+     * Chave do recurso de transação com as competências já conferidas na transação corrente
+     */
+    private final Object competenciasConferidas = new Object();
+
+    /**
+     * Fecha o mês informado; os meses devem ser fechados em sequência e já encerrados
+     */
+    @Transactional
+    public FechamentoEstoque fechar(YearMonth competencia) {
+        return fecharMes(competencia);
+    }
+
+    /**
+     * Fecha, um por transação, os meses encerrados ainda abertos. Sem fechamento anterior, fecha só o mês passado.
+     */
+    @Scheduled(cron = "${estoque.fechamento.cron:0 30 0 1 * *}")
+    public void fecharMesesPendentes() {
+        YearMonth alvo = YearMonth.now().minusMonths(1);
+        YearMonth mes = obterUltimaCompetencia()
+                .map(ultima -> YearMonth.from(ultima).plusMonths(1))
+                .orElse(alvo);
+        for (; !mes.isAfter(alvo); mes = mes.plusMonths(1)) {
+            YearMonth competencia = mes;
+            transactionTemplate.executeWithoutResult(status -> fecharMes(competencia));
+        }
+    }
+
+    /**
+     * Lista os fechamentos, do mais recente ao mais antigo
+     */
+    @Transactional(readOnly = true)
+    public List<FechamentoEstoque> listar() {
+        return fechamentoEstoqueRepository.findAllByOrderByCompetenciaDesc();
+    }
+
+    /**
+     * Saldos do item por local gravados no fechamento da competência
+     */
+    @Transactional(readOnly = true)
+    public List<SaldoFechamento> listarSaldosItem(YearMonth competencia, Long itemId) {
+        return saldoFechamentoRepository.findByCompetenciaAndEstoqueItemId(competencia.atDay(1), itemId);
+    }
+
+    /**
+     * Indica se o mês já foi fechado
+     */
+    public boolean competenciaFechada(YearMonth competencia) {
+        return fechada(obterUltimaCompetencia(), competencia);
+    }
+
+    /**
+     * Recusa datas de movimentação em meses já fechados. Dentro de uma transação, a primeira validação de cada
+     * competência toma o bloqueio compartilhado do mês (mantido até o fim da transação) e confere o fechamento
+     * no banco; as seguintes, na mesma transação, usam o resultado já conferido.
+     */
+    public void validarPeriodoAberto(LocalDateTime dataMovimentacao) {
+        YearMonth mes = YearMonth.from(dataMovimentacao);
+        Optional<LocalDate> ultima = obterUltimaCompetencia();
+        if (!fechada(ultima, mes) && TransactionSynchronizationManager.isSynchronizationActive() && conferidasNaTransacao().add(mes)) {
+            if (BancoDeDados.postgres(jdbcTemplate)) {
+                jdbcTemplate.queryForList(SQL_BLOQUEAR_COMPETENCIA_COMPARTILHADO, CHAVE_BLOQUEIO_FECHAMENTO, chaveBloqueio(mes));
+            }
+            ultima = fechamentoEstoqueRepository.findFirstByOrderByCompetenciaDesc().map(FechamentoEstoque::getCompetencia);
+            registrarUltimaCompetencia(ultima);
+        }
+        if (fechada(ultima, mes)) {
+            throw new IllegalArgumentException("Período de estoque fechado até " + YearMonth.from(ultima.get()) +
+                    "; movimentação em " + dataMovimentacao + " não é permitida");
+        }
+    }
+
+    /**
+     * Saldo do item na data (inclusive), em um local ou em todos (localId nulo)
+     */
+    @Transactional(readOnly = true)
+    public SaldoHistoricoDTO obterSaldoEm(Long itemId, Long localId, LocalDateTime data) {
+        if (!estoqueItemRepository.existsById(itemId)) {
+            throw new IllegalArgumentException("Item de estoque não encontrado com ID: " + itemId);
+        }
+        BaseSaldo base = obterBase(itemId, localId, data);
+        SaldoKardexDTO movimento = movimentacaoRepository.calcularMovimentoEntre(itemId, localId, base.desde(), data);
+        return new SaldoHistoricoDTO(itemId, localId, data,
+                base.competencia() != null ? YearMonth.from(base.competencia()).toString() : null,
+                base.quantidade().add(movimento.getQuantidade()),
+                base.valor().add(movimento.getValor()));
+    }
+
+    /**
+     * Saldo do último fechamento encerrado antes da data e o instante a partir do qual as movimentações
+     * devem ser somadas a ele
+     */
+    @Transactional(readOnly = true)
+    public BaseSaldo obterBase(Long itemId, Long localId, LocalDateTime data) {
+        LocalDate limite = YearMonth.from(data).minusMonths(1).atDay(1);
+        Optional<FechamentoEstoque> fechamento = fechamentoEstoqueRepository.findFirstByCompetenciaLessThanEqualOrderByCompetenciaDesc(limite);
+        if (fechamento.isEmpty()) {
+            return new BaseSaldo(null, INICIO_HISTORICO, BigDecimal.ZERO, BigDecimal.ZERO);
+        }
+        LocalDate competencia = fechamento.get().getCompetencia();
+        SaldoKardexDTO saldo = saldoFechamentoRepository.somarSaldo(competencia, itemId, localId);
+        return new BaseSaldo(competencia, competencia.plusMonths(1).atStartOfDay(), saldo.getQuantidade(), saldo.getValor());
+    }
+
+    private FechamentoEstoque fecharMes(YearMonth competencia) {
+        if (!competencia.isBefore(YearMonth.now())) {
+            throw new IllegalArgumentException("Só é possível fechar meses encerrados: " + competencia);
+        }
+        Optional<FechamentoEstoque> anterior = fechamentoEstoqueRepository.findFirstByOrderByCompetenciaDesc();
+        if (anterior.isPresent()) {
+            YearMonth ultima = YearMonth.from(anterior.get().getCompetencia());
+            if (!competencia.isAfter(ultima)) {
+                throw new IllegalArgumentException("Mês já fechado: " + competencia);
+            }
+            if (!competencia.equals(ultima.plusMonths(1))) {
+                throw new IllegalArgumentException("Feche antes o mês " + ultima.plusMonths(1));
+            }
+        }
+
+        // Espera as transações que movimentam o mês terminarem e barra as novas até o commit do fechamento
+        if (BancoDeDados.postgres(jdbcTemplate)) {
+            jdbcTemplate.queryForList(SQL_BLOQUEAR_COMPETENCIA, CHAVE_BLOQUEIO_FECHAMENTO, chaveBloqueio(competencia));
+        }
+
+        log.info("Fechando estoque da competência {}", competencia);
+        // O registro do fechamento vai primeiro: a chave única na competência barra um fechamento concorrente
+        FechamentoEstoque fechamento = new FechamentoEstoque();
+        fechamento.setCompetencia(competencia.atDay(1));
+        fechamento.setDataFechamento(LocalDateTime.now());
+        fechamento = fechamentoEstoqueRepository.saveAndFlush(fechamento);
+
+        LocalDate competenciaAnterior = anterior.map(FechamentoEstoque::getCompetencia).orElse(INICIO_HISTORICO.toLocalDate());
+        LocalDateTime desde = anterior.isPresent() ? competencia.atDay(1).atStartOfDay() : INICIO_HISTORICO;
+        int saldos = jdbcTemplate.update(SQL_GRAVAR_SALDOS,
+                Date.valueOf(competencia.atDay(1)),
+                Date.valueOf(competenciaAnterior),
+                Timestamp.valueOf(desde),
+                Timestamp.valueOf(competencia.plusMonths(1).atDay(1).atStartOfDay()));
+        fechamento.setQuantidadeSaldos(saldos);
+        fechamento = fechamentoEstoqueRepository.save(fechamento);
+
+        LocalDate fechada = competencia.atDay(1);
+        Transacoes.aposCommit(() -> registrarUltimaCompetencia(Optional.of(fechada)));
+        log.info("Estoque da competência {} fechado com {} saldos", competencia, saldos);
+        return fechamento;
+    }
+
+    private Optional<LocalDate> obterUltimaCompetencia() {
+        Optional<LocalDate> ultima = ultimaCompetencia.get();
+        if (ultima == null) {
+            ultima = fechamentoEstoqueRepository.findFirstByOrderByCompetenciaDesc().map(FechamentoEstoque::getCompetencia);
+            registrarUltimaCompetencia(ultima);
+        }
+        return ultima;
+    }
+
+    /**
+     * Atualiza o cache só para frente: uma leitura antiga não desfaz um fechamento já visto
+     */
+    private void registrarUltimaCompetencia(Optional<LocalDate> competencia) {
+        ultimaCompetencia.accumulateAndGet(competencia, (atual, nova) ->
+                atual == null || nova.isPresent() && (atual.isEmpty() || nova.get().isAfter(atual.get())) ? nova : atual);
+    }
+
+    private static boolean fechada(Optional<LocalDate> ultima, YearMonth mes) {
+        return ultima.isPresent() && !mes.isAfter(YearMonth.from(ultima.get()));
+    }
+
+    private static int chaveBloqueio(YearMonth competencia) {
+        return competencia.getYear() * 100 + competencia.getMonthValue();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<YearMonth> conferidasNaTransacao() {
+        Set<YearMonth> conferidas = (Set<YearMonth>) TransactionSynchronizationManager.getResource(competenciasConferidas);
+        if (conferidas == null) {
+            conferidas = new HashSet<>();
+            TransactionSynchronizationManager.bindResource(competenciasConferidas, conferidas);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(competenciasConferidas);
+                }
+            });
+        }
+        return conferidas;
+    }
+
+    /**
+     * Saldo de partida para consultas históricas: o do fechamento (nulo se não houver) e a data
+     * a partir da qual somar as movimentações
+     */
+    public record BaseSaldo(LocalDate competencia, LocalDateTime desde, BigDecimal quantidade, BigDecimal valor) {
+    }
+}
@@ -0,0 +1,230 @@
+package com.estoque.service;
+
+import com.estoque.dto.FilaRecalculoCustoDTO;
+import com.estoque.model.EstoqueCusto;
+import com.estoque.repository.EstoqueCustoRepository;
+import com.estoque.util.Transacoes;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fila assíncrona de reprocessamento do razão de custo médio, agrupada por item.
+ * Os lançamentos são enfileirados após o commit; eventos de um mesmo item que chegam
+ * antes do processamento são agrupados em uma única pendência (a partir da data mais antiga),
+ * e um pool limitado de threads drena a fila, processando no máximo uma pendência por item por vez.
+ * <p>
+ * As pendências ficam apenas em memória: se a aplicação parar antes de processá-las (queda, ou
+ * encerramento com a fila cheia), o razão desses itens fica desatualizado. Enquanto isso, as compras
+ * novas ficam com custo médio nulo e a consulta do custo médio calcula o valor a partir dos lançamentos
+ * ({@link CustoMedioService#custoMedioEm}). Na subida, {@link #reconciliar()} reenfileira os itens com compras
+ * sem custo médio; outras divergências (por exemplo, de uma exclusão não processada) só são
+ * corrigidas pelo recálculo completo.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FilaRecalculoCustoService {
+
+    private final CustoMedioService custoMedioService;
+    private final EstoqueCustoRepository estoqueCustoRepository;
+
+    private final ConcurrentHashMap<Long, Pendencia> pendentes = new ConcurrentHashMap<>();
+    private final LongAdder eventosRecebidos = new LongAdder();
+    private final LongAdder eventosAgrupados = new LongAdder();
+    private final LongAdder recalculosExecutados = new LongAdder();
+    private final LongAdder recalculosComFalha = new LongAdder();
+
+    @Value("${estoque.custo.fila.threads:2}")
+    private int threads;
+
+    private ExecutorService workers;
+
+    @PostConstruct
+    public void iniciarPool() {
+        AtomicInteger contador = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(threads, r -> new Thread(r, "fila-custo-" + contador.incrementAndGet()));
+    }
+
+    @PreDestroy
+    public void encerrarPool() throws InterruptedException {
+        workers.shutdown();
+        if (!workers.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("Fila de recálculo encerrada com {} itens pendentes; serão reenfileirados na próxima subida", pendentes.size());
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Reenfileira na subida os itens com compras ainda sem custo médio no razão,
+     * a partir da compra pendente mais antiga de cada um
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconciliar() {
+        List<Object[]> pendencias = estoqueCustoRepository.findPendenciasRazao();
+        for (Object[] pendencia : pendencias) {
+            enfileirar((Long) pendencia[0], (LocalDateTime) pendencia[1]);
+        }
+        if (!pendencias.isEmpty()) {
+            log.info("Reenfileirados {} itens com razão de custo médio pendente", pendencias.size());
+        }
+    }
+
+    /**
+     * Agenda o reprocessamento do razão a partir da posição do custo, se ele fizer parte do razão
+     */
+    public void agendar(EstoqueCusto custo) {
+        if (custoMedioService.isEntradaRazao(custo)) {
+            agendar(custo.getEstoqueItem().getId(), custo.getDataCusto());
+        }
+    }
+
+    /**
+     * Agenda o reprocessamento do razão do item a partir da data informada.
+     * Dentro de uma transação, o item só entra na fila após o commit.
+     */
+    public void agendar(Long itemId, LocalDateTime data) {
+        Transacoes.aposCommit(() -> enfileirar(itemId, data));
+    }
+
+    /**
+     * Indica se o item tem recálculo na fila ou em processamento
+     */
+    public boolean pendente(Long itemId) {
+        return pendentes.containsKey(itemId);
+    }
+
+    /**
+     * Retorna um future concluído quando o recálculo pendente do item (se houver) terminar
+     */
+    public CompletableFuture<Void> aguardar(Long itemId) {
+        // As pendências de um item terminam em ordem; basta aguardar a última
+        AtomicReference<CompletableFuture<Void>> ultima = new AtomicReference<>(CompletableFuture.completedFuture(null));
+        pendentes.computeIfPresent(itemId, (id, atual) -> {
+            ultima.set(atual.proxima != null ? atual.proxima.conclusao : atual.conclusao);
+            return atual;
+        });
+        return ultima.get();
+    }
+
+    /**
+     * Situação atual da fila
+     */
+    public FilaRecalculoCustoDTO obterSituacao() {
+        long agora = System.nanoTime();
+        long emProcessamento = 0;
+        long maisAntiga = agora;
+        for (Pendencia pendencia : pendentes.values()) {
+            if (pendencia.iniciada) {
+                emProcessamento++;
+            }
+            maisAntiga = Math.min(maisAntiga, pendencia.enfileiradaEm);
+        }
+        return new FilaRecalculoCustoDTO(
+                pendentes.size(),
+                emProcessamento,
+                TimeUnit.NANOSECONDS.toMillis(agora - maisAntiga),
+                eventosRecebidos.sum(),
+                eventosAgrupados.sum(),
+                recalculosExecutados.sum(),
+                recalculosComFalha.sum());
+    }
+
+    private void enfileirar(Long itemId, LocalDateTime data) {
+        eventosRecebidos.increment();
+        boolean[] nova = new boolean[1];
+        pendentes.compute(itemId, (id, atual) -> {
+            if (atual == null) {
+                nova[0] = true;
+                return new Pendencia(data);
+            }
+            if (!atual.iniciada) {
+                atual.mesclar(data);
+            } else if (atual.proxima == null) {
+                // Chegou durante o processamento: fica para a próxima rodada do item
+                atual.proxima = new Pendencia(data);
+            } else {
+                atual.proxima.mesclar(data);
+            }
+            return atual;
+        });
+
+        if (nova[0]) {
+            submeter(itemId);
+        } else {
+            eventosAgrupados.increment();
+        }
+    }
+
+    private void processar(Long itemId) {
+        Pendencia pendencia = pendentes.computeIfPresent(itemId, (id, atual) -> {
+            atual.iniciada = true;
+            return atual;
+        });
+        if (pendencia == null) {
+            return;
+        }
+
+        try {
+            custoMedioService.reprocessarAPartirDe(itemId, pendencia.dataInicial, 0L);
+            recalculosExecutados.increment();
+            pendencia.conclusao.complete(null);
+        } catch (RuntimeException e) {
+            log.error("Erro ao reprocessar razão de custo médio do item ID: {}", itemId, e);
+            recalculosComFalha.increment();
+            pendencia.conclusao.completeExceptionally(e);
+        }
+
+        Pendencia proxima = pendentes.computeIfPresent(itemId, (id, atual) -> atual.proxima);
+        if (proxima != null) {
+            submeter(itemId);
+        }
+    }
+
+    private void submeter(Long itemId) {
+        try {
+            workers.execute(() -> processar(itemId));
+        } catch (RejectedExecutionException e) {
+            log.warn("Fila de recálculo encerrada, item ID: {} não será reprocessado", itemId);
+        }
+    }
+
+    /**
+     * Recálculo pendente de um item; alterado apenas dentro de compute do mapa
+     */
+    private static final class Pendencia {
+
+        private final long enfileiradaEm = System.nanoTime();
+        private final CompletableFuture<Void> conclusao = new CompletableFuture<>();
+        private LocalDateTime dataInicial;
+        private volatile boolean iniciada;
+        private Pendencia proxima;
+
+        private Pendencia(LocalDateTime dataInicial) {
+            this.dataInicial = dataInicial;
+        }
+
+        private void mesclar(LocalDateTime data) {
+            if (data.isBefore(dataInicial)) {
+                dataInicial = data;
+            }
+        }
+    }
+}
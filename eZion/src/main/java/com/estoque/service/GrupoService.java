@@ -1,20 +1,57 @@
 package com.estoque.service;
 
+import com.estoque.dto.GrupoArvoreDTO;
+import com.estoque.dto.ItemGrupoDTO;
 import com.estoque.model.Grupo;
+import com.estoque.repository.EstoqueItemRepository;
 import com.estoque.repository.GrupoRepository;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 
+/**
+ * Grupos de itens e sua hierarquia. Cada grupo guarda o caminho materializado (IDs da raiz até ele) e o nível,
+ * mantidos na criação e na troca de pai; a subárvore de um grupo é uma consulta por prefixo do caminho.
+ */
 @Service
 @RequiredArgsConstructor
 @Transactional
+@Slf4j
 public class GrupoService {
 
+    private static final String SQL_GRUPOS_ARVORE =
+            "SELECT id, nome, codigo, grupo_pai_id, nivel, ativo FROM grupo";
+
+    private static final String SQL_PAIS = "SELECT id, grupo_pai_id FROM grupo";
+
+    private static final String SQL_GRAVAR_CAMINHO = "UPDATE grupo SET caminho = ?, nivel = ? WHERE id = ?";
+
+    private static final int TAMANHO_MAXIMO_CAMINHO = 500;
+
+    private static final int TAMANHO_BATCH = 1000;
+
     private final GrupoRepository grupoRepository;
+    private final EstoqueItemRepository estoqueItemRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final RelatorioCustoService relatorioCustoService;
 
     public Grupo criar(Grupo grupo) {
         if (grupoRepository.existsByNome(grupo.getNome())) {
@@ -28,15 +65,18 @@ public class GrupoService {
             }
         }
 
-        // Validação da hierarquia
+        // Validação da hierarquia; o pai fica bloqueado para que uma troca de pai concorrente não deixe o caminho desatualizado
+        Grupo pai = null;
         if (grupo.getGrupoPai() != null) {
-            Grupo pai = grupoRepository.findById(grupo.getGrupoPai().getId())
+            pai = grupoRepository.findByIdParaAtualizacao(grupo.getGrupoPai().getId())
                 .orElseThrow(() -> new IllegalArgumentException("Grupo pai não encontrado"));
-            grupo.setGrupoPai(pai);
         }
+        grupo.setGrupoPai(pai);
 
         grupo.setAtivo(true);
         Grupo grupoSalvo = grupoRepository.save(grupo);
+        grupoSalvo.setCaminho(caminhoFilho(pai, grupoSalvo.getId()));
+        grupoSalvo.setNivel(pai != null ? pai.getNivel() + 1 : 0);
 
         // Se código não foi informado, define como o ID convertido para string
         if (grupo.getCodigo() == null || grupo.getCodigo().trim().isEmpty()) {
@@ -73,7 +113,7 @@ public class GrupoService {
     }
 
     public Grupo atualizar(Long id, Grupo grupoAtualizado) {
-        Grupo grupo = grupoRepository.findById(id)
+        Grupo grupo = grupoRepository.findByIdParaAtualizacao(id)
             .orElseThrow(() -> new IllegalArgumentException("Grupo não encontrado"));
 
         if (!grupo.getNome().equals(grupoAtualizado.getNome()) &&
@@ -90,22 +130,50 @@ public class GrupoService {
             grupo.setCodigo(grupoAtualizado.getCodigo());
         }
 
-        // Validação da hierarquia
+        // Validação da hierarquia: o novo pai não pode ser o próprio grupo nem um de seus descendentes
+        Grupo novoPai = null;
         if (grupoAtualizado.getGrupoPai() != null) {
             if (grupoAtualizado.getGrupoPai().getId().equals(id)) {
                 throw new IllegalArgumentException("Um grupo não pode ser pai de si mesmo");
             }
-            Grupo pai = grupoRepository.findById(grupoAtualizado.getGrupoPai().getId())
+            novoPai = grupoRepository.findByIdParaAtualizacao(grupoAtualizado.getGrupoPai().getId())
                 .orElseThrow(() -> new IllegalArgumentException("Grupo pai não encontrado"));
-            grupo.setGrupoPai(pai);
-        } else {
-            grupo.setGrupoPai(null);
+            if (caminhoDe(novoPai).startsWith(caminhoDe(grupo))) {
+                throw new IllegalArgumentException("Um grupo não pode ser filho de um de seus descendentes");
+            }
+        }
+        Long paiAtualId = grupo.getGrupoPai() != null ? grupo.getGrupoPai().getId() : null;
+        boolean moveu = !Objects.equals(paiAtualId, novoPai != null ? novoPai.getId() : null);
+        if (moveu) {
+            moverSubarvore(grupo, novoPai);
         }
 
+        // O relatório de custos em cache mostra o nome do grupo
+        if (moveu || !grupo.getNome().equals(grupoAtualizado.getNome())) {
+            relatorioCustoService.invalidarTodos();
+        }
         grupo.setNome(grupoAtualizado.getNome());
         return grupoRepository.save(grupo);
     }
 
+    /**
+     * Troca o pai do grupo e atualiza o caminho e o nível de toda a subárvore em um único UPDATE
+     */
+    private void moverSubarvore(Grupo grupo, Grupo novoPai) {
+        String caminhoAntigo = caminhoDe(grupo);
+        String caminhoNovo = caminhoFilho(novoPai, grupo.getId());
+        int deltaNivel = (novoPai != null ? novoPai.getNivel() + 1 : 0) - grupo.getNivel();
+
+        // Bloqueia a subárvore: um filho criado em paralelo termina antes e é incluído no UPDATE
+        grupoRepository.findSubarvoreParaAtualizacao(caminhoAntigo);
+        int movidos = grupoRepository.moverSubarvore(caminhoAntigo, caminhoNovo, caminhoAntigo.length() + 1, deltaNivel);
+        log.debug("Grupo ID: {} movido de {} para {} com {} grupos na subárvore", grupo.getId(), caminhoAntigo, caminhoNovo, movidos);
+
+        grupo.setGrupoPai(novoPai);
+        grupo.setCaminho(caminhoNovo);
+        grupo.setNivel(grupo.getNivel() + deltaNivel);
+    }
+
     public void ativar(Long id) {
         Grupo grupo = grupoRepository.findById(id)
             .orElseThrow(() -> new IllegalArgumentException("Grupo não encontrado"));
@@ -143,6 +211,144 @@ public class GrupoService {
         return grupoRepository.findFilhosByPaiId(paiId);
     }
 
+    /**
+     * Árvore completa de grupos, montada em O(n) a partir de uma única leitura
+     */
+    @Transactional(readOnly = true)
+    public List<GrupoArvoreDTO> montarArvore() {
+        return montarArvore(jdbcTemplate.query(SQL_GRUPOS_ARVORE + " ORDER BY nome", (rs, linha) -> novoNo(rs)));
+    }
+
+    /**
+     * Subárvore do grupo (o grupo e seus descendentes), a partir de uma única consulta por prefixo do caminho
+     */
+    @Transactional(readOnly = true)
+    public GrupoArvoreDTO montarSubarvore(Long id) {
+        Grupo grupo = grupoRepository.findById(id)
+            .orElseThrow(() -> new IllegalArgumentException("Grupo não encontrado"));
+        List<GrupoArvoreDTO> raizes = montarArvore(jdbcTemplate.query(SQL_GRUPOS_ARVORE + " WHERE caminho LIKE ? ORDER BY nome",
+                (rs, linha) -> novoNo(rs), caminhoDe(grupo) + "%"));
+        return raizes.get(0);
+    }
+
+    /**
+     * Itens do grupo e de todos os seus subgrupos
+     */
+    @Transactional(readOnly = true)
+    public List<ItemGrupoDTO> listarItensSubarvore(Long id) {
+        Grupo grupo = grupoRepository.findById(id)
+            .orElseThrow(() -> new IllegalArgumentException("Grupo não encontrado"));
+        return estoqueItemRepository.findBySubarvoreGrupo(caminhoDe(grupo));
+    }
+
+    /**
+     * Preenche na subida o caminho e o nível dos grupos que ainda não os têm (cadastros anteriores)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void completarCaminhos() {
+        if (grupoRepository.existsByCaminhoIsNull()) {
+            reconstruirCaminhos();
+        }
+    }
+
+    /**
+     * Recalcula o caminho e o nível de todos os grupos a partir dos pais, em O(n); grupos em ciclo
+     * ficam sem caminho e são registrados no log. Retorna o número de grupos atualizados.
+     */
+    public int reconstruirCaminhos() {
+        Map<Long, Long> pais = new HashMap<>();
+        jdbcTemplate.query(SQL_PAIS, rs -> {
+            long paiId = rs.getLong("grupo_pai_id");
+            Long grupoPaiId = rs.wasNull() ? null : paiId;
+            pais.put(rs.getLong("id"), grupoPaiId);
+        });
+
+        Map<Long, String> caminhos = new LinkedHashMap<>();
+        Map<Long, Integer> niveis = new HashMap<>();
+        Set<Long> emCiclo = new HashSet<>();
+        for (Long id : pais.keySet()) {
+            // Sobe até um ancestral já resolvido (ou a raiz) e desce atribuindo os caminhos
+            Deque<Long> pendentes = new ArrayDeque<>();
+            Set<Long> visitados = new HashSet<>();
+            Long atual = id;
+            boolean ciclo = false;
+            while (atual != null && !caminhos.containsKey(atual)) {
+                if (emCiclo.contains(atual) || !visitados.add(atual)) {
+                    ciclo = true;
+                    break;
+                }
+                pendentes.push(atual);
+                atual = pais.get(atual);
+            }
+            if (ciclo) {
+                log.warn("Grupos em ciclo na hierarquia, sem caminho: {}", pendentes);
+                emCiclo.addAll(pendentes);
+                continue;
+            }
+            String caminho = atual != null ? caminhos.get(atual) : "/";
+            int nivel = atual != null ? niveis.get(atual) : -1;
+            while (!pendentes.isEmpty()) {
+                Long grupoId = pendentes.pop();
+                caminho = caminho + grupoId + "/";
+                nivel++;
+                caminhos.put(grupoId, caminho);
+                niveis.put(grupoId, nivel);
+            }
+        }
+
+        List<Map.Entry<Long, String>> linhas = new ArrayList<>(caminhos.entrySet());
+        jdbcTemplate.batchUpdate(SQL_GRAVAR_CAMINHO, linhas, TAMANHO_BATCH, (ps, linha) -> {
+            ps.setString(1, linha.getValue());
+            ps.setInt(2, niveis.get(linha.getKey()));
+            ps.setLong(3, linha.getKey());
+        });
+        log.info("Caminhos de {} grupos reconstruídos", linhas.size());
+        return linhas.size();
+    }
+
+    private static List<GrupoArvoreDTO> montarArvore(List<GrupoArvoreDTO> nos) {
+        Map<Long, GrupoArvoreDTO> porId = new HashMap<>();
+        for (GrupoArvoreDTO no : nos) {
+            porId.put(no.getId(), no);
+        }
+        // Os nós chegam em ordem de nome, então os filhos de cada nó também ficam em ordem de nome
+        List<GrupoArvoreDTO> raizes = new ArrayList<>();
+        for (GrupoArvoreDTO no : nos) {
+            GrupoArvoreDTO pai = no.getGrupoPaiId() != null ? porId.get(no.getGrupoPaiId()) : null;
+            if (pai != null) {
+                pai.getFilhos().add(no);
+            } else {
+                raizes.add(no);
+            }
+        }
+        return raizes;
+    }
+
+    private static GrupoArvoreDTO novoNo(ResultSet rs) throws SQLException {
+        long paiId = rs.getLong("grupo_pai_id");
+        Long grupoPaiId = rs.wasNull() ? null : paiId;
+        int valorNivel = rs.getInt("nivel");
+        Integer nivel = rs.wasNull() ? null : valorNivel;
+        return new GrupoArvoreDTO(rs.getLong("id"), rs.getString("nome"), rs.getString("codigo"), grupoPaiId,
+                nivel, rs.getBoolean("ativo"), new ArrayList<>());
+    }
+
+    private static String caminhoDe(Grupo grupo) {
+        if (grupo.getCaminho() == null) {
+            // Só grupos em ciclo ficam sem caminho após a reconstrução
+            throw new IllegalArgumentException("Grupo ID: " + grupo.getId() + " sem caminho na hierarquia; corrija o ciclo de pais");
+        }
+        return grupo.getCaminho();
+    }
+
+    private static String caminhoFilho(Grupo pai, Long id) {
+        String caminho = (pai != null ? caminhoDe(pai) : "/") + id + "/";
+        if (caminho.length() > TAMANHO_MAXIMO_CAMINHO) {
+            throw new IllegalArgumentException("A hierarquia de grupos excede a profundidade máxima");
+        }
+        return caminho;
+    }
+
     public boolean podeExcluir(Long id) {
         return grupoRepository.countFilhosByPaiId(id) == 0;
     }
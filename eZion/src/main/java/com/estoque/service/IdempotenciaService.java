@@ -0,0 +1,144 @@
+package com.estoque.service;
+
+import com.estoque.model.ChaveIdempotencia;
+import com.estoque.repository.ChaveIdempotenciaRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Idempotência das operações de registro com chave informada pelo cliente (cabeçalho Idempotency-Key).
+ * A chave é gravada na mesma transação da operação, antes dela: a chave única faz uma repetição
+ * concorrente aguardar a primeira e falhar, e uma repetição posterior recebe a resposta gravada.
+ * As chaves recentes ficam em um cache LRU limitado, de modo que a repetição comum (o coletor que
+ * reenvia logo após perder a resposta) é atendida sem consultar o banco.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class IdempotenciaService {
+
+    private static final String SQL_INSERIR_CHAVE =
+            "INSERT INTO chave_idempotencia (chave, operacao, data_criacao) VALUES (?, ?, ?)";
+
+    private static final String SQL_GRAVAR_RESPOSTA = "UPDATE chave_idempotencia SET resposta = ? WHERE chave = ?";
+
+    private static final int TAMANHO_MAXIMO_CHAVE = 100;
+
+    private final ChaveIdempotenciaRepository chaveIdempotenciaRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${estoque.idempotencia.cache-tamanho:10000}")
+    private int tamanhoCache;
+
+    @Value("${estoque.idempotencia.retencao-horas:48}")
+    private long retencaoHoras;
+
+    /**
+     * Chaves recentes e suas respostas, em ordem de acesso
+     */
+    private Map<String, RespostaGravada> recentes;
+
+    @PostConstruct
+    void criarCache() {
+        recentes = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, RespostaGravada> maisAntiga) {
+                return size() > tamanhoCache;
+            }
+        });
+    }
+
+    /**
+     * Executa a operação uma única vez por chave, em uma transação, e devolve a sua resposta; uma repetição
+     * com a mesma chave devolve a resposta da primeira execução. Sem chave, apenas executa a operação.
+     * Operações recusadas (exceção) não gravam a chave e podem ser repetidas.
+     */
+    public <T> T executar(String chave, String operacao, Class<T> tipo, Supplier<T> acao) {
+        if (chave == null) {
+            return transactionTemplate.execute(status -> acao.get());
+        }
+        if (chave.isBlank() || chave.length() > TAMANHO_MAXIMO_CHAVE) {
+            throw new IllegalArgumentException("A chave de idempotência deve ter de 1 a " + TAMANHO_MAXIMO_CHAVE + " caracteres");
+        }
+
+        RespostaGravada gravada = recentes.get(chave);
+        if (gravada != null) {
+            log.debug("Repetição da chave de idempotência {} atendida pelo cache", chave);
+            return ler(chave, gravada, operacao, tipo);
+        }
+
+        try {
+            Execucao<T> execucao = transactionTemplate.execute(status -> {
+                jdbcTemplate.update(SQL_INSERIR_CHAVE, chave, operacao, Timestamp.valueOf(LocalDateTime.now()));
+                T valor = acao.get();
+                String resposta = escrever(valor);
+                jdbcTemplate.update(SQL_GRAVAR_RESPOSTA, resposta, chave);
+                return new Execucao<>(valor, resposta);
+            });
+            recentes.put(chave, new RespostaGravada(operacao, execucao.resposta()));
+            return execucao.valor();
+        } catch (DuplicateKeyException e) {
+            // Chave já usada (fora do cache ou por uma requisição concorrente, que já terminou)
+            ChaveIdempotencia registrada = chaveIdempotenciaRepository.findByChave(chave)
+                .orElseThrow(() -> e);
+            log.debug("Repetição da chave de idempotência {} atendida pela resposta gravada", chave);
+            RespostaGravada original = new RespostaGravada(registrada.getOperacao(), registrada.getResposta());
+            recentes.put(chave, original);
+            return ler(chave, original, operacao, tipo);
+        }
+    }
+
+    /**
+     * Remove as chaves mais antigas que o período de retenção
+     */
+    @Scheduled(cron = "${estoque.idempotencia.limpeza-cron:0 15 3 * * *}")
+    @Transactional
+    public void removerChavesExpiradas() {
+        int removidas = chaveIdempotenciaRepository.deleteByDataCriacaoBefore(LocalDateTime.now().minusHours(retencaoHoras));
+        log.info("{} chaves de idempotência expiradas removidas", removidas);
+    }
+
+    private <T> T ler(String chave, RespostaGravada gravada, String operacao, Class<T> tipo) {
+        if (!gravada.operacao().equals(operacao)) {
+            throw new IllegalArgumentException("A chave de idempotência " + chave + " já foi usada em outra operação");
+        }
+        try {
+            return objectMapper.readValue(gravada.resposta(), tipo);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Resposta gravada inválida para a chave de idempotência " + chave, e);
+        }
+    }
+
+    private String escrever(Object resposta) {
+        try {
+            return objectMapper.writeValueAsString(resposta);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Não foi possível gravar a resposta da operação", e);
+        }
+    }
+
+    private record RespostaGravada(String operacao, String resposta) {
+    }
+
+    private record Execucao<T>(T valor, String resposta) {
+    }
+}
@@ -0,0 +1,238 @@
+package com.estoque.service;
+
+import com.compras.model.PedidoCompra;
+import com.compras.repository.PedidoCompraRepository;
+import com.estoque.dto.ErroLinhaDTO;
+import com.estoque.dto.ImportacaoCustosDTO;
+import com.estoque.model.EstoqueCusto;
+import com.estoque.model.EstoqueCusto.TipoCusto;
+import com.estoque.model.EstoqueItem;
+import com.estoque.model.Lote;
+import com.estoque.repository.EstoqueItemRepository;
+import com.estoque.repository.LoteRepository;
+import com.estoque.util.ConsultaEmBlocos;
+import com.seguranca.model.Usuario;
+import com.seguranca.repository.UsuarioRepository;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Importação em lote de custos (ex.: linhas de nota fiscal de compra).
+ * Resolve as referências com uma consulta IN por entidade, grava com batch JDBC
+ * e agenda o reprocessamento do razão de custo médio uma única vez por item, a partir da compra mais antiga importada.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ImportacaoCustoService {
+
+    private static final String SQL_INSERIR_CUSTO =
+            "INSERT INTO estoque_custo (estoque_item_id, lote_id, tipo_custo, valor, custo_unitario, custo_medio_com_frete, " +
+            "frete_rateado, custo_medio, quantidade, valor_base, icms, ipi, pis, cofins, icms_st, iss, irpj, csll, " +
+            "data_custo, usuario_id, descricao, data_criacao, data_atualizacao, pedido_compra_id) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final int TAMANHO_BATCH = 1000;
+
+    private final EstoqueItemRepository estoqueItemRepository;
+    private final LoteRepository loteRepository;
+    private final UsuarioRepository usuarioRepository;
+    private final PedidoCompraRepository pedidoCompraRepository;
+    private final FilaRecalculoCustoService filaRecalculoCustoService;
+    private final CamadaCustoService camadaCustoService;
+    private final RelatorioCustoService relatorioCustoService;
+    private final JdbcTemplate jdbcTemplate;
+    private final Validator validator;
+
+    /**
+     * Importa os custos informados; linhas inválidas são ignoradas e relatadas com seu número (base 1)
+     */
+    @Transactional
+    public ImportacaoCustosDTO importar(List<EstoqueCusto> custos) {
+        log.debug("Importando {} custos em lote", custos.size());
+
+        Map<Long, EstoqueItem> itens = buscarPorIds(custos, c -> c.getEstoqueItem() != null ? c.getEstoqueItem().getId() : null,
+                estoqueItemRepository::findAllById, EstoqueItem::getId);
+        Map<Long, Lote> lotes = buscarPorIds(custos, c -> c.getLote() != null ? c.getLote().getId() : null,
+                loteRepository::findAllById, Lote::getId);
+        Map<Long, Usuario> usuarios = buscarPorIds(custos, c -> c.getUsuario() != null ? c.getUsuario().getId() : null,
+                usuarioRepository::findAllById, Usuario::getId);
+        Map<Long, PedidoCompra> pedidos = buscarPorIds(custos, c -> c.getPedidoCompra() != null ? c.getPedidoCompra().getId() : null,
+                pedidoCompraRepository::findAllById, PedidoCompra::getId);
+
+        List<EstoqueCusto> validos = new ArrayList<>();
+        List<ErroLinhaDTO> erros = new ArrayList<>();
+
+        for (int i = 0; i < custos.size(); i++) {
+            String erro = resolverEValidar(custos.get(i), itens, lotes, usuarios, pedidos);
+            if (erro != null) {
+                erros.add(new ErroLinhaDTO(i + 1, erro));
+            } else {
+                validos.add(custos.get(i));
+            }
+        }
+
+        jdbcTemplate.batchUpdate(SQL_INSERIR_CUSTO, validos, TAMANHO_BATCH, this::preencherInsercao);
+
+        // Uma única pendência na fila de recálculo por item, a partir da compra mais antiga da importação
+        Map<Long, LocalDateTime> inicioPorItem = new HashMap<>();
+        for (EstoqueCusto custo : validos) {
+            if (custo.getTipoCusto() == TipoCusto.COMPRA &&
+                custo.getQuantidade() != null && custo.getQuantidade().compareTo(BigDecimal.ZERO) > 0) {
+                inicioPorItem.merge(custo.getEstoqueItem().getId(), custo.getDataCusto(),
+                        (atual, nova) -> nova.isBefore(atual) ? nova : atual);
+            }
+        }
+        inicioPorItem.forEach(filaRecalculoCustoService::agendar);
+        relatorioCustoService.invalidar(validos.stream()
+                .map(custo -> YearMonth.from(custo.getDataCusto()))
+                .collect(Collectors.toSet()));
+
+        // Itens PEPS: abre as camadas das compras importadas
+        validos.stream()
+                .map(EstoqueCusto::getEstoqueItem)
+                .filter(camadaCustoService::usaCamadas)
+                .map(EstoqueItem::getId)
+                .distinct()
+                .forEach(camadaCustoService::sincronizarEntradas);
+
+        log.debug("Importação concluída: {} custos gravados, {} linhas com erro, {} itens recalculados",
+                validos.size(), erros.size(), inicioPorItem.size());
+        return new ImportacaoCustosDTO(custos.size(), validos.size(), erros.size(), inicioPorItem.size(), erros);
+    }
+
+    private String resolverEValidar(EstoqueCusto custo, Map<Long, EstoqueItem> itens,
+                                    Map<Long, Lote> lotes, Map<Long, Usuario> usuarios,
+                                    Map<Long, PedidoCompra> pedidos) {
+        if (custo.getEstoqueItem() != null && custo.getEstoqueItem().getId() != null) {
+            EstoqueItem item = itens.get(custo.getEstoqueItem().getId());
+            if (item == null) {
+                return "Item de estoque não encontrado com ID: " + custo.getEstoqueItem().getId();
+            }
+            custo.setEstoqueItem(item);
+        } else {
+            custo.setEstoqueItem(null);
+        }
+
+        if (custo.getLote() != null && custo.getLote().getId() != null) {
+            Lote lote = lotes.get(custo.getLote().getId());
+            if (lote == null) {
+                return "Lote não encontrado com ID: " + custo.getLote().getId();
+            }
+            custo.setLote(lote);
+        } else {
+            custo.setLote(null);
+        }
+
+        if (custo.getUsuario() != null && custo.getUsuario().getId() != null) {
+            Usuario usuario = usuarios.get(custo.getUsuario().getId());
+            if (usuario == null) {
+                return "Usuário não encontrado com ID: " + custo.getUsuario().getId();
+            }
+            custo.setUsuario(usuario);
+        } else {
+            custo.setUsuario(null);
+        }
+
+        if (custo.getPedidoCompra() != null && custo.getPedidoCompra().getId() != null) {
+            PedidoCompra pedidoCompra = pedidos.get(custo.getPedidoCompra().getId());
+            if (pedidoCompra == null) {
+                return "Pedido de compra não encontrado com ID: " + custo.getPedidoCompra().getId();
+            }
+            custo.setPedidoCompra(pedidoCompra);
+        } else {
+            custo.setPedidoCompra(null);
+        }
+
+        custo.aplicarValoresPadrao();
+
+        Set<ConstraintViolation<EstoqueCusto>> violacoes = validator.validate(custo);
+        if (!violacoes.isEmpty()) {
+            return violacoes.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("; "));
+        }
+        return null;
+    }
+
+    private <T> Map<Long, T> buscarPorIds(List<EstoqueCusto> custos, Function<EstoqueCusto, Long> extrairId,
+                                          Function<List<Long>, List<T>> buscar, Function<T, Long> id) {
+        Set<Long> ids = new HashSet<>();
+        for (EstoqueCusto custo : custos) {
+            Long valor = extrairId.apply(custo);
+            if (valor != null) {
+                ids.add(valor);
+            }
+        }
+        return ConsultaEmBlocos.buscar(ids, buscar).stream().collect(Collectors.toMap(id, Function.identity()));
+    }
+
+    private void preencherInsercao(PreparedStatement ps, EstoqueCusto custo) throws SQLException {
+        ps.setLong(1, custo.getEstoqueItem().getId());
+        if (custo.getLote() != null) {
+            ps.setLong(2, custo.getLote().getId());
+        } else {
+            ps.setNull(2, Types.BIGINT);
+        }
+        ps.setString(3, custo.getTipoCusto().name());
+        ps.setBigDecimal(4, custo.getValor());
+        setDecimal(ps, 5, custo.getCustoUnitario());
+        setDecimal(ps, 6, custo.getCustoMedioComFrete());
+        setDecimal(ps, 7, custo.getFreteRateado());
+        setDecimal(ps, 8, custo.getCustoMedio());
+        setDecimal(ps, 9, custo.getQuantidade());
+        setDecimal(ps, 10, custo.getValorBase());
+        setDecimal(ps, 11, custo.getIcms());
+        setDecimal(ps, 12, custo.getIpi());
+        setDecimal(ps, 13, custo.getPis());
+        setDecimal(ps, 14, custo.getCofins());
+        setDecimal(ps, 15, custo.getIcmsSt());
+        setDecimal(ps, 16, custo.getIss());
+        setDecimal(ps, 17, custo.getIrpj());
+        setDecimal(ps, 18, custo.getCsll());
+        ps.setTimestamp(19, Timestamp.valueOf(custo.getDataCusto()));
+        ps.setLong(20, custo.getUsuario().getId());
+        if (custo.getDescricao() != null) {
+            ps.setString(21, custo.getDescricao());
+        } else {
+            ps.setNull(21, Types.VARCHAR);
+        }
+        ps.setTimestamp(22, Timestamp.valueOf(custo.getDataCriacao()));
+        ps.setTimestamp(23, Timestamp.valueOf(custo.getDataAtualizacao()));
+        if (custo.getPedidoCompra() != null) {
+            ps.setLong(24, custo.getPedidoCompra().getId());
+        } else {
+            ps.setNull(24, Types.BIGINT);
+        }
+    }
+
+    private void setDecimal(PreparedStatement ps, int indice, BigDecimal valor) throws SQLException {
+        if (valor != null) {
+            ps.setBigDecimal(indice, valor);
+        } else {
+            ps.setNull(indice, Types.NUMERIC);
+        }
+    }
+}
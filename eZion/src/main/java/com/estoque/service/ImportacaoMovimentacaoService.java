@@ -0,0 +1,472 @@
+package com.estoque.service;
+
+import com.estoque.dto.ErroLinhaDTO;
+import com.estoque.dto.ImportacaoMovimentacoesDTO;
+import com.estoque.model.EstoqueItem;
+import com.estoque.model.Local;
+import com.estoque.model.Lote;
+import com.estoque.model.Movimentacao;
+import com.estoque.model.Movimentacao.TipoMovimentacao;
+import com.estoque.model.SaldoEstoque;
+import com.estoque.repository.EstoqueCustoRepository;
+import com.estoque.repository.EstoqueItemRepository;
+import com.estoque.repository.LocalRepository;
+import com.estoque.repository.LoteRepository;
+import com.estoque.service.SaldoEstoqueService.ChaveSaldo;
+import com.estoque.util.ConsultaEmBlocos;
+import com.seguranca.model.Usuario;
+import com.seguranca.repository.UsuarioRepository;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Registro em lote de movimentações (ex.: ajuste de inventário, importação de armazém).
+ * Resolve as referências com consultas IN por entidade (em blocos), calcula o custo médio uma vez por item,
+ * aplica baixas de lote e saldos agregados por lote e por item/local/lote e grava com batch JDBC.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ImportacaoMovimentacaoService {
+
+    private static final String SQL_INSERIR_MOVIMENTACAO =
+            "INSERT INTO movimentacao (estoque_item_id, lote_id, tipo_movimentacao, quantidade, custo, local_id, " +
+            "observacoes, data_movimentacao, usuario_id, data_criacao, data_atualizacao, transferencia_id) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String SQL_BAIXAR_LOTE =
+            "UPDATE lote SET quantidade_disponivel = quantidade_disponivel - ?, versao = versao + 1, data_atualizacao = ? " +
+            "WHERE id = ? AND quantidade_disponivel >= ?";
+
+    private static final String SQL_DEVOLVER_LOTE =
+            "UPDATE lote SET quantidade_disponivel = quantidade_disponivel + ?, versao = versao + 1, data_atualizacao = ? WHERE id = ?";
+
+    private static final String SQL_ATUALIZAR_CUSTO = "UPDATE movimentacao SET custo = ? WHERE id = ?";
+
+    private static final int TAMANHO_BATCH = 1000;
+
+    private final EstoqueItemRepository estoqueItemRepository;
+    private final LocalRepository localRepository;
+    private final LoteRepository loteRepository;
+    private final UsuarioRepository usuarioRepository;
+    private final EstoqueCustoRepository estoqueCustoRepository;
+    private final EstoqueCustoService estoqueCustoService;
+    private final SaldoEstoqueService saldoEstoqueService;
+    private final CamadaCustoService camadaCustoService;
+    private final FechamentoEstoqueService fechamentoEstoqueService;
+    private final DisponibilidadeLoteService disponibilidadeLoteService;
+    private final JdbcTemplate jdbcTemplate;
+    private final Validator validator;
+
+    /**
+     * Registra as movimentações informadas; linhas inválidas ou sem saldo são ignoradas e relatadas com seu número (base 1)
+     */
+    @Transactional
+    public ImportacaoMovimentacoesDTO importar(List<Movimentacao> movimentacoes) {
+        log.debug("Importando {} movimentações", movimentacoes.size());
+        int total = movimentacoes.size();
+
+        Map<Long, EstoqueItem> itens = buscarPorIds(movimentacoes, m -> m.getEstoqueItem() != null ? m.getEstoqueItem().getId() : null,
+                estoqueItemRepository::findAllById, EstoqueItem::getId);
+        Map<Long, Local> locais = buscarPorIds(movimentacoes, m -> m.getLocal() != null ? m.getLocal().getId() : null,
+                localRepository::findAllById, Local::getId);
+        Map<Long, Lote> lotes = buscarPorIds(movimentacoes, m -> m.getLote() != null ? m.getLote().getId() : null,
+                loteRepository::findAllById, Lote::getId);
+        Map<Long, Usuario> usuarios = buscarPorIds(movimentacoes, m -> m.getUsuario() != null ? m.getUsuario().getId() : null,
+                usuarioRepository::findAllById, Usuario::getId);
+
+        LocalDateTime agora = LocalDateTime.now();
+        String[] erros = new String[total];
+        for (int i = 0; i < total; i++) {
+            erros[i] = resolverEValidar(movimentacoes.get(i), itens, locais, lotes, usuarios, agora);
+        }
+
+        conferirDisponibilidade(movimentacoes, erros);
+        Set<Long> lotesRecusados = baixarLotes(movimentacoes, erros);
+        Map<Long, BigDecimal> devolucoes = aplicarSaldos(movimentacoes, erros);
+        devolverLotes(devolucoes);
+
+        List<Movimentacao> validas = new ArrayList<>();
+        for (int i = 0; i < total; i++) {
+            if (erros[i] == null) {
+                validas.add(movimentacoes.get(i));
+            }
+        }
+
+        // Custo médio: uma consulta por item (e uma por data nas linhas retroativas)
+        CustosMedios custosMedios = new CustosMedios();
+        List<Movimentacao> saidasPeps = new ArrayList<>();
+        for (Movimentacao movimentacao : validas) {
+            if (movimentacao.getTipoMovimentacao() == TipoMovimentacao.SAIDA && camadaCustoService.usaCamadas(movimentacao.getEstoqueItem())) {
+                saidasPeps.add(movimentacao);
+            } else if (movimentacao.getCusto() == null) {
+                BigDecimal custoMedio = custosMedios.obter(movimentacao.getEstoqueItem().getId(), movimentacao.getDataMovimentacao());
+                movimentacao.setCusto(movimentacao.calcularCustoMovimentacao(custoMedio));
+            }
+        }
+
+        inserir(validas);
+
+        // Itens PEPS: as saídas consomem as camadas depois de gravadas (o consumo referencia a movimentação)
+        List<Movimentacao> custosPeps = new ArrayList<>();
+        for (Movimentacao saida : saidasPeps) {
+            BigDecimal custoCamadas = camadaCustoService.consumir(saida);
+            if (saida.getCusto() == null) {
+                saida.setCusto(custoCamadas);
+                custosPeps.add(saida);
+            }
+        }
+        jdbcTemplate.batchUpdate(SQL_ATUALIZAR_CUSTO, custosPeps, TAMANHO_BATCH, (ps, saida) -> {
+            ps.setBigDecimal(1, saida.getCusto());
+            ps.setLong(2, saida.getId());
+        });
+
+        List<Long> ids = new ArrayList<>(total);
+        List<ErroLinhaDTO> errosLinha = new ArrayList<>();
+        for (int i = 0; i < total; i++) {
+            if (erros[i] != null) {
+                ids.add(null);
+                errosLinha.add(new ErroLinhaDTO(i + 1, erros[i]));
+            } else {
+                ids.add(movimentacoes.get(i).getId());
+            }
+        }
+
+        log.debug("Registro em lote concluído: {} movimentações gravadas, {} linhas com erro, {} lotes sem quantidade",
+                validas.size(), errosLinha.size(), lotesRecusados.size());
+        return new ImportacaoMovimentacoesDTO(total, validas.size(), errosLinha.size(), ids, errosLinha);
+    }
+
+    private String resolverEValidar(Movimentacao movimentacao, Map<Long, EstoqueItem> itens, Map<Long, Local> locais,
+                                    Map<Long, Lote> lotes, Map<Long, Usuario> usuarios, LocalDateTime agora) {
+        if (movimentacao.getEstoqueItem() != null && movimentacao.getEstoqueItem().getId() != null) {
+            EstoqueItem item = itens.get(movimentacao.getEstoqueItem().getId());
+            if (item == null) {
+                return "Item de estoque não encontrado com ID: " + movimentacao.getEstoqueItem().getId();
+            }
+            movimentacao.setEstoqueItem(item);
+        } else {
+            movimentacao.setEstoqueItem(null);
+        }
+
+        if (movimentacao.getLocal() != null && movimentacao.getLocal().getId() != null) {
+            Local local = locais.get(movimentacao.getLocal().getId());
+            if (local == null) {
+                return "Local não encontrado com ID: " + movimentacao.getLocal().getId();
+            }
+            movimentacao.setLocal(local);
+        } else {
+            movimentacao.setLocal(null);
+        }
+
+        if (movimentacao.getLote() != null && movimentacao.getLote().getId() != null) {
+            Lote lote = lotes.get(movimentacao.getLote().getId());
+            if (lote == null) {
+                return "Lote não encontrado com ID: " + movimentacao.getLote().getId();
+            }
+            movimentacao.setLote(lote);
+        } else {
+            movimentacao.setLote(null);
+        }
+
+        if (movimentacao.getUsuario() != null && movimentacao.getUsuario().getId() != null) {
+            Usuario usuario = usuarios.get(movimentacao.getUsuario().getId());
+            if (usuario == null) {
+                return "Usuário não encontrado com ID: " + movimentacao.getUsuario().getId();
+            }
+            movimentacao.setUsuario(usuario);
+        } else {
+            movimentacao.setUsuario(null);
+        }
+
+        if (movimentacao.getDataMovimentacao() == null) {
+            movimentacao.setDataMovimentacao(agora);
+        }
+        try {
+            fechamentoEstoqueService.validarPeriodoAberto(movimentacao.getDataMovimentacao());
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+        movimentacao.setDataCriacao(agora);
+        movimentacao.setDataAtualizacao(agora);
+
+        // Referências sem ID ficam nulas e são recusadas pela validação
+        Set<ConstraintViolation<Movimentacao>> violacoes = validator.validate(movimentacao);
+        if (!violacoes.isEmpty()) {
+            return violacoes.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("; "));
+        }
+        return null;
+    }
+
+    /**
+     * Percorre as linhas na ordem recebida contra a quantidade disponível dos lotes e os saldos atuais
+     * e recusa cada saída que não cabe no que restou; uma saída sem saldo recusa só a própria linha
+     */
+    private void conferirDisponibilidade(List<Movimentacao> movimentacoes, String[] erros) {
+        Set<Long> itemIds = new HashSet<>();
+        for (int i = 0; i < movimentacoes.size(); i++) {
+            if (erros[i] == null) {
+                itemIds.add(movimentacoes.get(i).getEstoqueItem().getId());
+            }
+        }
+        Map<ChaveSaldo, BigDecimal> saldos = saldoEstoqueService.obterSaldos(itemIds);
+        boolean rejeitarNegativo = saldoEstoqueService.rejeitaSaldoNegativo();
+        Map<Long, BigDecimal> disponivelPorLote = new HashMap<>();
+
+        for (int i = 0; i < movimentacoes.size(); i++) {
+            if (erros[i] != null) {
+                continue;
+            }
+            Movimentacao movimentacao = movimentacoes.get(i);
+            ChaveSaldo chave = chave(movimentacao);
+            BigDecimal saldo = saldos.getOrDefault(chave, BigDecimal.ZERO);
+            BigDecimal quantidade = movimentacao.getQuantidade();
+            if (movimentacao.getTipoMovimentacao() == TipoMovimentacao.ENTRADA) {
+                saldos.put(chave, saldo.add(quantidade));
+                continue;
+            }
+
+            Lote lote = movimentacao.getLote();
+            BigDecimal disponivel = lote != null
+                    ? disponivelPorLote.computeIfAbsent(lote.getId(), id -> lote.getQuantidadeDisponivel() != null ? lote.getQuantidadeDisponivel() : BigDecimal.ZERO)
+                    : null;
+            if (disponivel != null && disponivel.compareTo(quantidade) < 0) {
+                erros[i] = "Quantidade disponível insuficiente no lote: " + lote.getNumeroLote();
+            } else if (rejeitarNegativo && saldo.compareTo(quantidade) < 0) {
+                erros[i] = mensagemSaldoInsuficiente(movimentacao) + " (disponível: " + saldo + ", solicitado: " + quantidade + ")";
+            } else {
+                if (lote != null) {
+                    disponivelPorLote.put(lote.getId(), disponivel.subtract(quantidade));
+                }
+                saldos.put(chave, saldo.subtract(quantidade));
+            }
+        }
+    }
+
+    /**
+     * Baixa condicional da quantidade disponível, agregada por lote. Se outra operação consumiu o lote
+     * desde a leitura, refaz as saídas desse lote uma a uma, na ordem recebida, contra a quantidade atual,
+     * e recusa só as que não cabem. Retorna os lotes com alguma saída recusada.
+     */
+    private Set<Long> baixarLotes(List<Movimentacao> movimentacoes, String[] erros) {
+        Map<Long, BigDecimal> baixaPorLote = new HashMap<>();
+        Set<Long> itens = new HashSet<>();
+        for (int i = 0; i < movimentacoes.size(); i++) {
+            Movimentacao movimentacao = movimentacoes.get(i);
+            if (erros[i] == null && movimentacao.getTipoMovimentacao() == TipoMovimentacao.SAIDA && movimentacao.getLote() != null) {
+                baixaPorLote.merge(movimentacao.getLote().getId(), movimentacao.getQuantidade(), BigDecimal::add);
+                itens.add(movimentacao.getEstoqueItem().getId());
+            }
+        }
+        // As devoluções de lote da importação são desses mesmos itens
+        disponibilidadeLoteService.registrarAlteracaoItens(itens);
+
+        List<Map.Entry<Long, BigDecimal>> baixas = new ArrayList<>(baixaPorLote.entrySet());
+        Timestamp agora = Timestamp.valueOf(LocalDateTime.now());
+        int[][] atualizados = jdbcTemplate.batchUpdate(SQL_BAIXAR_LOTE, baixas, TAMANHO_BATCH, (ps, baixa) -> {
+            ps.setBigDecimal(1, baixa.getValue());
+            ps.setTimestamp(2, agora);
+            ps.setLong(3, baixa.getKey());
+            ps.setBigDecimal(4, baixa.getValue());
+        });
+
+        Set<Long> alterados = new HashSet<>();
+        int indice = 0;
+        for (int[] bloco : atualizados) {
+            for (int contagem : bloco) {
+                if (contagem == 0) {
+                    alterados.add(baixas.get(indice).getKey());
+                }
+                indice++;
+            }
+        }
+
+        Set<Long> recusados = new HashSet<>();
+        for (int i = 0; i < movimentacoes.size(); i++) {
+            Movimentacao movimentacao = movimentacoes.get(i);
+            if (erros[i] == null && movimentacao.getTipoMovimentacao() == TipoMovimentacao.SAIDA &&
+                    movimentacao.getLote() != null && alterados.contains(movimentacao.getLote().getId())) {
+                BigDecimal quantidade = movimentacao.getQuantidade();
+                if (jdbcTemplate.update(SQL_BAIXAR_LOTE, quantidade, agora, movimentacao.getLote().getId(), quantidade) == 0) {
+                    erros[i] = "Quantidade disponível insuficiente no lote: " + movimentacao.getLote().getNumeroLote();
+                    recusados.add(movimentacao.getLote().getId());
+                }
+            }
+        }
+        return recusados;
+    }
+
+    /**
+     * Aplica os saldos agregados por item/local/lote. Se o saldo de uma chave foi alterado por outra operação
+     * desde a leitura, refaz as linhas dessa chave uma a uma, na ordem recebida, contra o saldo atual: só as saídas
+     * que não cabem são recusadas, e as quantidades de lote que elas já tinham baixado são devolvidas.
+     */
+    private Map<Long, BigDecimal> aplicarSaldos(List<Movimentacao> movimentacoes, String[] erros) {
+        Map<ChaveSaldo, BigDecimal> deltas = new HashMap<>();
+        for (int i = 0; i < movimentacoes.size(); i++) {
+            if (erros[i] == null) {
+                Movimentacao movimentacao = movimentacoes.get(i);
+                deltas.merge(chave(movimentacao), delta(movimentacao), BigDecimal::add);
+            }
+        }
+
+        Set<ChaveSaldo> alteradas = saldoEstoqueService.aplicarDeltas(deltas);
+
+        Map<Long, BigDecimal> devolucoes = new HashMap<>();
+        for (int i = 0; i < movimentacoes.size(); i++) {
+            Movimentacao movimentacao = movimentacoes.get(i);
+            if (erros[i] == null && alteradas.contains(chave(movimentacao)) &&
+                    !saldoEstoqueService.aplicarDelta(chave(movimentacao), delta(movimentacao))) {
+                erros[i] = mensagemSaldoInsuficiente(movimentacao);
+                if (movimentacao.getLote() != null) {
+                    devolucoes.merge(movimentacao.getLote().getId(), movimentacao.getQuantidade(), BigDecimal::add);
+                }
+            }
+        }
+        return devolucoes;
+    }
+
+    private void devolverLotes(Map<Long, BigDecimal> devolucoes) {
+        Timestamp agora = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(SQL_DEVOLVER_LOTE, new ArrayList<>(devolucoes.entrySet()), TAMANHO_BATCH, (ps, devolucao) -> {
+            ps.setBigDecimal(1, devolucao.getValue());
+            ps.setTimestamp(2, agora);
+            ps.setLong(3, devolucao.getKey());
+        });
+    }
+
+    /**
+     * Insere as movimentações em blocos e preenche o ID gerado de cada uma (também usado pelas transferências)
+     */
+    void inserir(List<Movimentacao> movimentacoes) {
+        for (int inicio = 0; inicio < movimentacoes.size(); inicio += TAMANHO_BATCH) {
+            List<Movimentacao> bloco = movimentacoes.subList(inicio, Math.min(inicio + TAMANHO_BATCH, movimentacoes.size()));
+            GeneratedKeyHolder chaves = new GeneratedKeyHolder();
+            jdbcTemplate.batchUpdate(con -> con.prepareStatement(SQL_INSERIR_MOVIMENTACAO, new String[]{"id"}),
+                    new BatchPreparedStatementSetter() {
+                        @Override
+                        public void setValues(PreparedStatement ps, int i) throws SQLException {
+                            preencherInsercao(ps, bloco.get(i));
+                        }
+
+                        @Override
+                        public int getBatchSize() {
+                            return bloco.size();
+                        }
+                    }, chaves);
+
+            List<Map<String, Object>> ids = chaves.getKeyList();
+            for (int i = 0; i < bloco.size(); i++) {
+                bloco.get(i).setId(((Number) ids.get(i).values().iterator().next()).longValue());
+            }
+        }
+    }
+
+    private void preencherInsercao(PreparedStatement ps, Movimentacao movimentacao) throws SQLException {
+        ps.setLong(1, movimentacao.getEstoqueItem().getId());
+        if (movimentacao.getLote() != null) {
+            ps.setLong(2, movimentacao.getLote().getId());
+        } else {
+            ps.setNull(2, Types.BIGINT);
+        }
+        ps.setString(3, movimentacao.getTipoMovimentacao().name());
+        ps.setBigDecimal(4, movimentacao.getQuantidade());
+        if (movimentacao.getCusto() != null) {
+            ps.setBigDecimal(5, movimentacao.getCusto());
+        } else {
+            ps.setNull(5, Types.NUMERIC);
+        }
+        ps.setLong(6, movimentacao.getLocal().getId());
+        ps.setString(7, movimentacao.getObservacoes());
+        ps.setTimestamp(8, Timestamp.valueOf(movimentacao.getDataMovimentacao()));
+        ps.setLong(9, movimentacao.getUsuario().getId());
+        ps.setTimestamp(10, Timestamp.valueOf(movimentacao.getDataCriacao()));
+        ps.setTimestamp(11, Timestamp.valueOf(movimentacao.getDataAtualizacao()));
+        if (movimentacao.getTransferenciaId() != null) {
+            ps.setObject(12, movimentacao.getTransferenciaId());
+        } else {
+            ps.setNull(12, Types.OTHER);
+        }
+    }
+
+    private static String mensagemSaldoInsuficiente(Movimentacao movimentacao) {
+        return "Saldo insuficiente do item ID: " + movimentacao.getEstoqueItem().getId() +
+                " no local ID: " + movimentacao.getLocal().getId() +
+                (movimentacao.getLote() != null ? " / lote ID: " + movimentacao.getLote().getId() : "");
+    }
+
+    private static BigDecimal delta(Movimentacao movimentacao) {
+        return movimentacao.getTipoMovimentacao() == TipoMovimentacao.ENTRADA
+                ? movimentacao.getQuantidade()
+                : movimentacao.getQuantidade().negate();
+    }
+
+    private static ChaveSaldo chave(Movimentacao movimentacao) {
+        return new ChaveSaldo(movimentacao.getEstoqueItem().getId(), movimentacao.getLocal().getId(),
+                movimentacao.getLote() != null ? movimentacao.getLote().getId() : SaldoEstoque.SEM_LOTE);
+    }
+
+    private <T> Map<Long, T> buscarPorIds(List<Movimentacao> movimentacoes, Function<Movimentacao, Long> extrairId,
+                                          Function<List<Long>, List<T>> buscar, Function<T, Long> id) {
+        Set<Long> ids = new HashSet<>();
+        for (Movimentacao movimentacao : movimentacoes) {
+            Long valor = extrairId.apply(movimentacao);
+            if (valor != null) {
+                ids.add(valor);
+            }
+        }
+        return ConsultaEmBlocos.buscar(ids, buscar).stream().collect(Collectors.toMap(id, Function.identity()));
+    }
+
+    /**
+     * Custos médios da importação, do razão vigente na data de cada linha (mesma regra do registro individual).
+     * Linhas a partir da última compra do item compartilham o custo médio atual do razão;
+     * as retroativas consultam o razão uma vez por data.
+     */
+    private final class CustosMedios {
+
+        private final Map<Long, LocalDateTime> ultimasCompras = new HashMap<>();
+        private final Map<Long, BigDecimal> custosAtuais = new HashMap<>();
+        private final Map<List<Object>, BigDecimal> custosRetroativos = new HashMap<>();
+
+        BigDecimal obter(Long itemId, LocalDateTime data) {
+            LocalDateTime ultimaCompra = ultimasCompras.computeIfAbsent(itemId, id -> {
+                LocalDateTime dataCompra = estoqueCustoRepository.findDataUltimaCompra(id);
+                return dataCompra != null ? dataCompra : LocalDateTime.MIN;
+            });
+            if (ultimaCompra.isAfter(data)) {
+                return custosRetroativos.computeIfAbsent(Arrays.asList(itemId, data),
+                        chave -> estoqueCustoService.obterCustoMedioParaMovimentacao(itemId, data));
+            }
+            // Sem compras no razão o custo médio é zero em qualquer data
+            return custosAtuais.computeIfAbsent(itemId, id -> ultimaCompra == LocalDateTime.MIN ? BigDecimal.ZERO :
+                    estoqueCustoService.obterCustoMedioParaMovimentacao(id, ultimaCompra));
+        }
+    }
+}
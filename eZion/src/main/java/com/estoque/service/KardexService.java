@@ -0,0 +1,104 @@
+package com.estoque.service;
+
+import com.estoque.dto.KardexDTO;
+import com.estoque.dto.LinhaKardexDTO;
+import com.estoque.dto.SaldoKardexDTO;
+import com.estoque.model.Movimentacao.TipoMovimentacao;
+import com.estoque.repository.EstoqueItemRepository;
+import com.estoque.repository.MovimentacaoRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Kardex (ficha de estoque) do item: cada movimentação do período com quantidade, valor e custo médio
+ * acumulados. O saldo inicial da página é o do último fechamento de estoque mais uma soma pelo índice
+ * (item, data, id) até o cursor; os acumulados são calculados em uma única passada sobre as linhas da página.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class KardexService {
+
+    public static final int TAMANHO_MAXIMO_PAGINA = 1000;
+
+    private static final int ESCALA_CUSTO = 4;
+
+    private final MovimentacaoRepository movimentacaoRepository;
+    private final EstoqueItemRepository estoqueItemRepository;
+    private final FechamentoEstoqueService fechamentoEstoqueService;
+
+    /**
+     * Página do kardex do item no período; sem cursor, começa na primeira movimentação do período
+     */
+    @Transactional(readOnly = true)
+    public KardexDTO gerar(Long itemId, LocalDateTime inicio, LocalDateTime fim,
+                           LocalDateTime aposData, Long aposId, int tamanho) {
+        if (!estoqueItemRepository.existsById(itemId)) {
+            throw new IllegalArgumentException("Item de estoque não encontrado com ID: " + itemId);
+        }
+        if (fim.isBefore(inicio)) {
+            throw new IllegalArgumentException("A data final deve ser igual ou posterior à data inicial");
+        }
+        if (tamanho < 1 || tamanho > TAMANHO_MAXIMO_PAGINA) {
+            throw new IllegalArgumentException("O tamanho da página deve estar entre 1 e " + TAMANHO_MAXIMO_PAGINA);
+        }
+        if ((aposData == null) != (aposId == null)) {
+            throw new IllegalArgumentException("Informe a data e o ID do cursor juntos");
+        }
+        if (aposData != null && aposData.isBefore(inicio)) {
+            throw new IllegalArgumentException("O cursor é anterior ao início do período");
+        }
+
+        // Sem cursor, o ponto de partida é o início do período (id 0 não inclui nenhuma movimentação da data)
+        LocalDateTime cursorData = aposData != null ? aposData : inicio;
+        long cursorId = aposId != null ? aposId : 0L;
+        log.debug("Gerando kardex do item ID: {} de {} a {} após ({}, {})", itemId, inicio, fim, cursorData, cursorId);
+
+        // Saldo inicial: último fechamento de estoque mais as movimentações desde ele até o cursor
+        FechamentoEstoqueService.BaseSaldo base = fechamentoEstoqueService.obterBase(itemId, null, cursorData);
+        SaldoKardexDTO movimento = movimentacaoRepository.calcularSaldoKardexAte(itemId, base.desde(), cursorData, cursorId);
+        SaldoKardexDTO saldoInicial = new SaldoKardexDTO(base.quantidade().add(movimento.getQuantidade()),
+                base.valor().add(movimento.getValor()));
+        List<LinhaKardexDTO> linhas = movimentacaoRepository.findLinhasKardex(itemId, cursorData, cursorId, fim,
+                PageRequest.of(0, tamanho + 1));
+
+        LocalDateTime proximaData = null;
+        Long proximoId = null;
+        if (linhas.size() > tamanho) {
+            linhas = linhas.subList(0, tamanho);
+            LinhaKardexDTO ultima = linhas.get(tamanho - 1);
+            proximaData = ultima.getDataMovimentacao();
+            proximoId = ultima.getMovimentacaoId();
+        }
+
+        BigDecimal saldoQuantidade = saldoInicial.getQuantidade();
+        BigDecimal saldoValor = saldoInicial.getValor();
+        for (LinhaKardexDTO linha : linhas) {
+            boolean entrada = linha.getTipoMovimentacao() == TipoMovimentacao.ENTRADA;
+            saldoQuantidade = entrada ? saldoQuantidade.add(linha.getQuantidade()) : saldoQuantidade.subtract(linha.getQuantidade());
+            saldoValor = entrada ? saldoValor.add(linha.getValor()) : saldoValor.subtract(linha.getValor());
+            linha.setCustoUnitario(dividir(linha.getValor(), linha.getQuantidade()));
+            linha.setSaldoQuantidade(saldoQuantidade);
+            linha.setSaldoValor(saldoValor);
+            linha.setCustoMedio(dividir(saldoValor, saldoQuantidade));
+        }
+
+        return new KardexDTO(itemId, inicio, fim, saldoInicial.getQuantidade(), saldoInicial.getValor(),
+                linhas, proximaData, proximoId);
+    }
+
+    private static BigDecimal dividir(BigDecimal valor, BigDecimal quantidade) {
+        if (quantidade.signum() <= 0) {
+            return BigDecimal.ZERO;
+        }
+        return valor.divide(quantidade, ESCALA_CUSTO, RoundingMode.HALF_UP);
+    }
+}
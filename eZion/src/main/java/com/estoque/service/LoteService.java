@@ -1,26 +1,74 @@
 package com.estoque.service;
 
+import com.estoque.dto.AjusteQuantidadeLoteDTO;
+import com.estoque.dto.CriacaoLotesRequestDTO;
+import com.estoque.dto.ItemCriacaoLoteDTO;
+import com.estoque.dto.LoteDisponivelDTO;
+import com.estoque.dto.LoteCriadoDTO;
+import com.estoque.dto.LoteValidadeDTO;
 import com.estoque.model.EstoqueItem;
 import com.estoque.model.Lote;
 import com.estoque.repository.EstoqueItemRepository;
 import com.estoque.repository.LoteRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class LoteService {
 
+    private static final String SQL_AJUSTAR_QUANTIDADE =
+            "UPDATE lote SET quantidade_disponivel = quantidade_disponivel + ?, versao = versao + 1, data_atualizacao = ? " +
+            "WHERE id = ? AND quantidade_disponivel + ? >= 0 AND quantidade_disponivel + ? <= quantidade_total";
+
+    private static final String SQL_INSERIR_LOTE =
+            "INSERT INTO lote (estoque_item_id, numero_lote, data_entrada, data_validade, quantidade_total, " +
+            "quantidade_disponivel, fornecedor, observacoes, ativo, versao, data_criacao, data_atualizacao) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, true, 0, ?, ?)";
+
+    private static final int TAMANHO_BATCH = 1000;
+
+    /**
+     * Padrão do número dos lotes criados em lote: código do item, data de entrada e número sequencial
+     */
+    private static final String PADRAO_NUMERO_LOTE = "{ITEM}-{DATA}-{SEQ}";
+
+    private static final DateTimeFormatter FORMATO_DATA_LOTE = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private static final int TAMANHO_MAXIMO_NUMERO_LOTE = 50;
+
     private final LoteRepository loteRepository;
     private final EstoqueItemRepository estoqueItemRepository;
+    private final VencimentoLoteService vencimentoLoteService;
+    private final DisponibilidadeLoteService disponibilidadeLoteService;
+    private final JdbcTemplate jdbcTemplate;
+    private final NumeracaoLoteService numeracaoLoteService;
 
     /**
      * Cria um novo lote
@@ -44,7 +92,81 @@ public class LoteService {
             lote.setQuantidadeDisponivel(lote.getQuantidadeTotal());
         }
 
-        return loteRepository.save(lote);
+        Lote loteSalvo = loteRepository.save(lote);
+        vencimentoLoteService.registrarAlteracao(loteSalvo);
+        disponibilidadeLoteService.registrarAlteracaoItem(item.getId());
+        return loteSalvo;
+    }
+
+    /**
+     * Cria vários lotes de uma vez (ex.: recebimento de um contêiner), numerados pelo servidor conforme o padrão
+     * informado. O {SEQ} vem de blocos da sequência do banco, de modo que nenhum número precisa ser consultado
+     * antes; os itens são lidos em uma consulta e os lotes gravados em inserts em batch.
+     */
+    @Transactional
+    public List<LoteCriadoDTO> criarEmLote(CriacaoLotesRequestDTO request) {
+        List<ItemCriacaoLoteDTO> linhas = request.getLotes();
+        log.debug("Criando {} lotes em lote", linhas.size());
+        String padrao = request.getPadraoNumero() != null ? request.getPadraoNumero() : PADRAO_NUMERO_LOTE;
+        if (!padrao.contains("{SEQ}")) {
+            throw new IllegalArgumentException("O padrão do número do lote deve conter {SEQ}");
+        }
+
+        Set<Long> itemIds = new HashSet<>();
+        for (int i = 0; i < linhas.size(); i++) {
+            ItemCriacaoLoteDTO linha = linhas.get(i);
+            if (linha == null || linha.getEstoqueItemId() == null || linha.getQuantidadeTotal() == null
+                    || linha.getQuantidadeTotal().signum() <= 0) {
+                throw new IllegalArgumentException("Linha " + (i + 1) + ": informe o item e uma quantidade maior que zero");
+            }
+            itemIds.add(linha.getEstoqueItemId());
+        }
+        Map<Long, EstoqueItem> itens = estoqueItemRepository.findAllById(itemIds).stream()
+                .collect(Collectors.toMap(EstoqueItem::getId, Function.identity()));
+
+        String data = request.getDataEntrada().format(FORMATO_DATA_LOTE);
+        long[] sequencias = numeracaoLoteService.reservar(linhas.size());
+        LocalDateTime agora = LocalDateTime.now();
+        List<Lote> lotes = new ArrayList<>(linhas.size());
+        for (int i = 0; i < linhas.size(); i++) {
+            ItemCriacaoLoteDTO linha = linhas.get(i);
+            EstoqueItem item = itens.get(linha.getEstoqueItemId());
+            if (item == null) {
+                throw new IllegalArgumentException("Linha " + (i + 1) + ": item de estoque não encontrado com ID: " + linha.getEstoqueItemId());
+            }
+            String numeroLote = padrao.replace("{ITEM}", item.getCodigo())
+                    .replace("{DATA}", data)
+                    .replace("{SEQ}", String.format("%08d", sequencias[i]));
+            if (numeroLote.length() > TAMANHO_MAXIMO_NUMERO_LOTE) {
+                throw new IllegalArgumentException("Linha " + (i + 1) + ": o número do lote " + numeroLote +
+                        " excede " + TAMANHO_MAXIMO_NUMERO_LOTE + " caracteres");
+            }
+
+            Lote lote = new Lote();
+            lote.setEstoqueItem(item);
+            lote.setNumeroLote(numeroLote);
+            lote.setDataEntrada(request.getDataEntrada());
+            lote.setDataValidade(linha.getDataValidade());
+            lote.setQuantidadeTotal(linha.getQuantidadeTotal());
+            lote.setQuantidadeDisponivel(linha.getQuantidadeTotal());
+            lote.setFornecedor(request.getFornecedor());
+            lote.setObservacoes(linha.getObservacoes());
+            lote.setVersao(0L);
+            lote.setDataCriacao(agora);
+            lote.setDataAtualizacao(agora);
+            lotes.add(lote);
+        }
+
+        inserir(lotes);
+        disponibilidadeLoteService.registrarAlteracaoItens(itemIds);
+
+        List<LoteCriadoDTO> criados = new ArrayList<>(lotes.size());
+        for (Lote lote : lotes) {
+            vencimentoLoteService.registrarAlteracao(lote);
+            criados.add(new LoteCriadoDTO(lote.getId(), lote.getNumeroLote(), lote.getEstoqueItem().getId()));
+        }
+        log.debug("{} lotes criados", criados.size());
+        return criados;
     }
 
     /**
@@ -84,30 +206,46 @@ public class LoteService {
     }
 
     /**
-     * Lista lotes ativos de um item (FIFO)
+     * Lista lotes ativos com quantidade disponível de um item (FIFO), com a quantidade acumulada (cache em memória)
      */
-    @Transactional(readOnly = true)
-    public List<Lote> listarLotesDisponiveisFIFO(Long itemId) {
+    public List<LoteDisponivelDTO> listarLotesDisponiveisFIFO(Long itemId) {
         log.debug("Listando lotes disponíveis (FIFO) do item ID: {}", itemId);
-        return loteRepository.findLotesDisponiveisByItemId(itemId);
+        return disponibilidadeLoteService.listarFIFO(itemId);
     }
 
     /**
-     * Lista lotes vencidos
+     * Lista lotes ativos vencidos (índice de vencimentos em memória)
      */
-    @Transactional(readOnly = true)
-    public List<Lote> listarLotesVencidos() {
+    public List<LoteValidadeDTO> listarLotesVencidos() {
         log.debug("Listando lotes vencidos");
-        return loteRepository.findLotesVencidosAnte(LocalDate.now());
+        return vencimentoLoteService.listarVencidosAntes(LocalDate.now());
     }
 
     /**
-     * Lista lotes para vencer em um período
+     * Lista lotes ativos para vencer em um período (índice de vencimentos em memória)
      */
-    @Transactional(readOnly = true)
-    public List<Lote> listarLotesParaVencer(LocalDate dataInicio, LocalDate dataFim) {
+    public List<LoteValidadeDTO> listarLotesParaVencer(LocalDate dataInicio, LocalDate dataFim) {
         log.debug("Listando lotes para vencer entre {} e {}", dataInicio, dataFim);
-        return loteRepository.findLotesParaVencerEntre(dataInicio, dataFim);
+        return vencimentoLoteService.listarVencendoEntre(dataInicio, dataFim);
+    }
+
+    /**
+     * Lista lotes ativos que vencem de hoje até os próximos dias informados
+     */
+    public List<LoteValidadeDTO> listarLotesAVencer(int dias) {
+        if (dias < 0) {
+            throw new IllegalArgumentException("O número de dias não pode ser negativo");
+        }
+        LocalDate hoje = LocalDate.now();
+        return vencimentoLoteService.listarVencendoEntre(hoje, hoje.plusDays(dias));
+    }
+
+    /**
+     * Processa os lotes vencidos agora (o job diário faz o mesmo); retorna o número de lotes desativados
+     */
+    public int processarVencidos() {
+        log.debug("Processando lotes vencidos");
+        return vencimentoLoteService.processarVencidos();
     }
 
     /**
@@ -120,6 +258,11 @@ public class LoteService {
         Lote lote = loteRepository.findById(id)
             .orElseThrow(() -> new IllegalArgumentException("Lote não encontrado com ID: " + id));
 
+        // Edição feita sobre uma versão antiga do lote
+        if (loteAtualizado.getVersao() != null && !loteAtualizado.getVersao().equals(lote.getVersao())) {
+            throw new ObjectOptimisticLockingFailureException(Lote.class, id);
+        }
+
         // Validar número do lote se foi alterado
         if (!lote.getNumeroLote().equals(loteAtualizado.getNumeroLote())) {
             if (loteRepository.existsByNumeroLote(loteAtualizado.getNumeroLote())) {
@@ -140,54 +283,96 @@ public class LoteService {
         lote.setFornecedor(loteAtualizado.getFornecedor());
         lote.setObservacoes(loteAtualizado.getObservacoes());
 
-        return loteRepository.save(lote);
+        Lote loteSalvo = loteRepository.save(lote);
+        vencimentoLoteService.registrarAlteracao(loteSalvo);
+        disponibilidadeLoteService.registrarAlteracaoItem(loteSalvo.getEstoqueItem().getId());
+        return loteSalvo;
     }
 
     /**
-     * Reduz quantidade disponível do lote
+     * Reduz quantidade disponível do lote (update condicional, sem ler o lote antes)
      */
     @Transactional
     public void reduzirQuantidade(Long loteId, BigDecimal quantidade) {
         log.debug("Reduzindo quantidade do lote ID: {} em: {}", loteId, quantidade);
+        validarQuantidadePositiva(quantidade);
 
-        Lote lote = loteRepository.findById(loteId)
-            .orElseThrow(() -> new IllegalArgumentException("Lote não encontrado com ID: " + loteId));
-
-        if (lote.getQuantidadeDisponivel().compareTo(quantidade) < 0) {
+        if (loteRepository.baixarQuantidadeDisponivel(loteId, quantidade, LocalDateTime.now()) == 0) {
+            if (!loteRepository.existsById(loteId)) {
+                throw new IllegalArgumentException("Lote não encontrado com ID: " + loteId);
+            }
             throw new IllegalArgumentException("Quantidade disponível insuficiente no lote");
         }
-
-        lote.setQuantidadeDisponivel(lote.getQuantidadeDisponivel().subtract(quantidade));
-        loteRepository.save(lote);
+        disponibilidadeLoteService.registrarAlteracaoLotes(List.of(loteId));
     }
 
     /**
-     * Aumenta quantidade disponível do lote
+     * Aumenta quantidade disponível do lote (update condicional, sem ler o lote antes)
      */
     @Transactional
     public void aumentarQuantidade(Long loteId, BigDecimal quantidade) {
         log.debug("Aumentando quantidade do lote ID: {} em: {}", loteId, quantidade);
+        validarQuantidadePositiva(quantidade);
 
-        Lote lote = loteRepository.findById(loteId)
-            .orElseThrow(() -> new IllegalArgumentException("Lote não encontrado com ID: " + loteId));
-
-        BigDecimal novaQuantidade = lote.getQuantidadeDisponivel().add(quantidade);
-        if (novaQuantidade.compareTo(lote.getQuantidadeTotal()) > 0) {
+        if (loteRepository.aumentarQuantidadeDisponivel(loteId, quantidade, LocalDateTime.now()) == 0) {
+            if (!loteRepository.existsById(loteId)) {
+                throw new IllegalArgumentException("Lote não encontrado com ID: " + loteId);
+            }
             throw new IllegalArgumentException("Quantidade não pode exceder a quantidade total do lote");
         }
+        disponibilidadeLoteService.registrarAlteracaoLotes(List.of(loteId));
+    }
 
-        lote.setQuantidadeDisponivel(novaQuantidade);
-        loteRepository.save(lote);
+    /**
+     * Ajusta a quantidade disponível de vários lotes em um batch de updates condicionais; se algum lote
+     * ficaria negativo ou acima da quantidade total, nenhum ajuste é aplicado. Retorna o número de lotes ajustados.
+     */
+    @Transactional
+    public int ajustarQuantidades(List<AjusteQuantidadeLoteDTO> ajustes) {
+        log.debug("Ajustando quantidade de {} lotes", ajustes.size());
+        // Soma por lote, em ordem de ID: ajustes concorrentes bloqueiam as linhas na mesma ordem
+        Map<Long, BigDecimal> deltas = new TreeMap<>();
+        for (AjusteQuantidadeLoteDTO ajuste : ajustes) {
+            if (ajuste.getLoteId() == null || ajuste.getQuantidade() == null) {
+                throw new IllegalArgumentException("Informe o lote e a quantidade de cada ajuste");
+            }
+            deltas.merge(ajuste.getLoteId(), ajuste.getQuantidade(), BigDecimal::add);
+        }
+        deltas.values().removeIf(delta -> delta.signum() == 0);
+
+        List<Map.Entry<Long, BigDecimal>> lotes = new ArrayList<>(deltas.entrySet());
+        Timestamp agora = Timestamp.valueOf(LocalDateTime.now());
+        int[][] atualizados = jdbcTemplate.batchUpdate(SQL_AJUSTAR_QUANTIDADE, lotes, TAMANHO_BATCH, (ps, delta) -> {
+            ps.setBigDecimal(1, delta.getValue());
+            ps.setTimestamp(2, agora);
+            ps.setLong(3, delta.getKey());
+            ps.setBigDecimal(4, delta.getValue());
+            ps.setBigDecimal(5, delta.getValue());
+        });
+
+        List<Long> recusados = new ArrayList<>();
+        int indice = 0;
+        for (int[] bloco : atualizados) {
+            for (int contagem : bloco) {
+                if (contagem == 0) {
+                    recusados.add(lotes.get(indice).getKey());
+                }
+                indice++;
+            }
+        }
+        if (!recusados.isEmpty()) {
+            throw new IllegalArgumentException("Lotes não encontrados ou com quantidade disponível fora dos limites: " + recusados);
+        }
+        disponibilidadeLoteService.registrarAlteracaoLotes(deltas.keySet());
+        return lotes.size();
     }
 
     /**
-     * Calcula o estoque disponível de um item
+     * Calcula o estoque disponível de um item (cache em memória)
      */
-    @Transactional(readOnly = true)
     public BigDecimal calcularEstoqueDisponivel(Long itemId) {
         log.debug("Calculando estoque disponível do item ID: {}", itemId);
-        BigDecimal estoque = loteRepository.calcularEstoqueDisponivel(itemId);
-        return estoque != null ? estoque : BigDecimal.ZERO;
+        return disponibilidadeLoteService.calcularDisponivel(itemId);
     }
 
     /**
@@ -210,6 +395,58 @@ public class LoteService {
             .orElseThrow(() -> new IllegalArgumentException("Lote não encontrado com ID: " + id));
         lote.setAtivo(false);
         loteRepository.save(lote);
+        vencimentoLoteService.registrarAlteracao(lote);
+        disponibilidadeLoteService.registrarAlteracaoItem(lote.getEstoqueItem().getId());
+    }
+
+    /**
+     * Insere os lotes em blocos e preenche o ID gerado de cada um
+     */
+    private void inserir(List<Lote> lotes) {
+        for (int inicio = 0; inicio < lotes.size(); inicio += TAMANHO_BATCH) {
+            List<Lote> bloco = lotes.subList(inicio, Math.min(inicio + TAMANHO_BATCH, lotes.size()));
+            GeneratedKeyHolder chaves = new GeneratedKeyHolder();
+            jdbcTemplate.batchUpdate(con -> con.prepareStatement(SQL_INSERIR_LOTE, new String[]{"id"}),
+                    new BatchPreparedStatementSetter() {
+                        @Override
+                        public void setValues(PreparedStatement ps, int i) throws SQLException {
+                            preencherInsercao(ps, bloco.get(i));
+                        }
+
+                        @Override
+                        public int getBatchSize() {
+                            return bloco.size();
+                        }
+                    }, chaves);
+
+            List<Map<String, Object>> ids = chaves.getKeyList();
+            for (int i = 0; i < bloco.size(); i++) {
+                bloco.get(i).setId(((Number) ids.get(i).values().iterator().next()).longValue());
+            }
+        }
+    }
+
+    private static void preencherInsercao(PreparedStatement ps, Lote lote) throws SQLException {
+        ps.setLong(1, lote.getEstoqueItem().getId());
+        ps.setString(2, lote.getNumeroLote());
+        ps.setDate(3, Date.valueOf(lote.getDataEntrada()));
+        if (lote.getDataValidade() != null) {
+            ps.setDate(4, Date.valueOf(lote.getDataValidade()));
+        } else {
+            ps.setNull(4, Types.DATE);
+        }
+        ps.setBigDecimal(5, lote.getQuantidadeTotal());
+        ps.setBigDecimal(6, lote.getQuantidadeDisponivel());
+        ps.setString(7, lote.getFornecedor());
+        ps.setString(8, lote.getObservacoes());
+        ps.setTimestamp(9, Timestamp.valueOf(lote.getDataCriacao()));
+        ps.setTimestamp(10, Timestamp.valueOf(lote.getDataAtualizacao()));
+    }
+
+    private static void validarQuantidadePositiva(BigDecimal quantidade) {
+        if (quantidade == null || quantidade.signum() <= 0) {
+            throw new IllegalArgumentException("Quantidade deve ser maior que zero");
+        }
     }
 
     /**
@@ -221,6 +458,8 @@ public class LoteService {
         if (!loteRepository.existsById(id)) {
             throw new IllegalArgumentException("Lote não encontrado com ID: " + id);
         }
+        disponibilidadeLoteService.registrarAlteracaoLotes(List.of(id));
         loteRepository.deleteById(id);
+        vencimentoLoteService.registrarExclusao(id);
     }
 }
\ No newline at end of file
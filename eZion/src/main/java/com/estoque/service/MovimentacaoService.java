@@ -1,9 +1,14 @@
 package com.estoque.service;
 
+import com.estoque.dto.ImportacaoMovimentacoesDTO;
+import com.estoque.dto.KardexDTO;
+import com.estoque.dto.SaldoHistoricoDTO;
+import com.estoque.dto.VerificacaoSaldoEstoqueDTO;
 import com.estoque.model.EstoqueItem;
 import com.estoque.model.Local;
 import com.estoque.model.Lote;
 import com.estoque.model.Movimentacao;
+import com.estoque.model.SaldoEstoque;
 import com.estoque.repository.EstoqueItemRepository;
 import com.estoque.repository.LocalRepository;
 import com.estoque.repository.LoteRepository;
@@ -15,10 +20,13 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Service
 @RequiredArgsConstructor
@@ -31,6 +39,15 @@ public class MovimentacaoService {
     private final LoteRepository loteRepository;
     private final UsuarioRepository usuarioRepository;
     private final EstoqueCustoService estoqueCustoService;
+    private final CamadaCustoService camadaCustoService;
+    private final ImportacaoMovimentacaoService importacaoMovimentacaoService;
+    private final ExportacaoMovimentacaoService exportacaoMovimentacaoService;
+    private final KardexService kardexService;
+    private final FechamentoEstoqueService fechamentoEstoqueService;
+    private final SaldoEstoqueService saldoEstoqueService;
+    private final TransferenciaEstoqueService transferenciaEstoqueService;
+    private final IdempotenciaService idempotenciaService;
+    private final DisponibilidadeLoteService disponibilidadeLoteService;
 
     /**
      * Lista todas as movimentações
@@ -95,11 +112,90 @@ public class MovimentacaoService {
         return movimentacaoRepository.findByPeriodo(inicio, fim);
     }
 
+    /**
+     * Página do kardex do item no período, a partir do cursor (data, ID) informado
+     */
+    public KardexDTO gerarKardex(Long itemId, LocalDateTime inicio, LocalDateTime fim,
+                                 LocalDateTime aposData, Long aposId, int tamanho) {
+        return kardexService.gerar(itemId, inicio, fim, aposData, aposId, tamanho);
+    }
+
+    /**
+     * Saldo do item em uma data, a partir do último fechamento de estoque
+     */
+    public SaldoHistoricoDTO obterSaldoEm(Long itemId, Long localId, LocalDateTime data) {
+        log.debug("Calculando saldo do item ID: {} em {}", itemId, data);
+        return fechamentoEstoqueService.obterSaldoEm(itemId, localId, data);
+    }
+
+    /**
+     * Valida o período de uma exportação de movimentações
+     */
+    public void validarPeriodoExportacao(LocalDateTime inicio, LocalDateTime fim) {
+        exportacaoMovimentacaoService.validarPeriodo(inicio, fim);
+    }
+
+    /**
+     * Escreve as movimentações do período em NDJSON, lendo por cursor
+     */
+    public void escreverExportacaoNdjson(LocalDateTime inicio, LocalDateTime fim, OutputStream saida) throws IOException {
+        log.debug("Exportando movimentações de {} a {} em NDJSON", inicio, fim);
+        exportacaoMovimentacaoService.escreverNdjson(inicio, fim, saida);
+    }
+
+    /**
+     * Escreve as movimentações do período em CSV, lendo por cursor
+     */
+    public void escreverExportacaoCsv(LocalDateTime inicio, LocalDateTime fim, OutputStream saida) throws IOException {
+        log.debug("Exportando movimentações de {} a {} em CSV", inicio, fim);
+        exportacaoMovimentacaoService.escreverCsv(inicio, fim, saida);
+    }
+
     /**
      * Registra uma nova movimentação
      */
     @Transactional
     public Movimentacao registrar(Movimentacao movimentacao) {
+        return registrar(movimentacao, true);
+    }
+
+    /**
+     * Registra uma nova movimentação uma única vez por chave de idempotência; a repetição devolve a movimentação já gravada
+     */
+    public Movimentacao registrar(Movimentacao movimentacao, String chaveIdempotencia) {
+        AtomicReference<Movimentacao> registrada = new AtomicReference<>();
+        Long id = idempotenciaService.executar(chaveIdempotencia, "MOVIMENTACAO", Long.class, () -> {
+            registrada.set(registrar(movimentacao, true));
+            return registrada.get().getId();
+        });
+        if (registrada.get() != null) {
+            return registrada.get();
+        }
+        return movimentacaoRepository.findById(id)
+            .orElseThrow(() -> new IllegalArgumentException("Movimentação não encontrada com ID: " + id));
+    }
+
+    /**
+     * Registra movimentações em lote (ajustes de inventário, importações), relatando os erros por linha
+     */
+    public ImportacaoMovimentacoesDTO registrarEmLote(List<Movimentacao> movimentacoes) {
+        return registrarEmLote(movimentacoes, null);
+    }
+
+    /**
+     * Registra movimentações em lote uma única vez por chave de idempotência; a repetição devolve o resultado original
+     */
+    public ImportacaoMovimentacoesDTO registrarEmLote(List<Movimentacao> movimentacoes, String chaveIdempotencia) {
+        log.debug("Registrando {} movimentações em lote", movimentacoes.size());
+        return idempotenciaService.executar(chaveIdempotencia, "MOVIMENTACAO_LOTE", ImportacaoMovimentacoesDTO.class,
+                () -> importacaoMovimentacaoService.importar(movimentacoes));
+    }
+
+    /**
+     * Registra uma movimentação; com baixarLote = false a quantidade disponível do lote
+     * já foi baixada pelo chamador (alocação de lotes). Executa na transação do chamador.
+     */
+    Movimentacao registrar(Movimentacao movimentacao, boolean baixarLote) {
         log.debug("Registrando nova movimentação: {}", movimentacao.getObservacoes());
 
         // Validar se o item existe
@@ -130,38 +226,99 @@ public class MovimentacaoService {
         if (movimentacao.getDataMovimentacao() == null) {
             movimentacao.setDataMovimentacao(LocalDateTime.now());
         }
+        fechamentoEstoqueService.validarPeriodoAberto(movimentacao.getDataMovimentacao());
+
+        // Itens PEPS: a saída é valorizada pelas camadas de custo consumidas
+        boolean consumirCamadas = movimentacao.getTipoMovimentacao() == Movimentacao.TipoMovimentacao.SAIDA &&
+                camadaCustoService.usaCamadas(item);
 
-        // Calcular o custo da movimentação baseado no último custo médio do item
-        if (movimentacao.getCusto() == null) {
-            BigDecimal custoMedioItem = estoqueCustoService.calcularCustoMedioPonderado(item.getId());
+        // Calcular o custo da movimentação baseado no custo médio do item na data da movimentação
+        if (movimentacao.getCusto() == null && !consumirCamadas) {
+            BigDecimal custoMedioItem = estoqueCustoService.obterCustoMedioParaMovimentacao(item.getId(), movimentacao.getDataMovimentacao());
             BigDecimal custoCalculado = movimentacao.calcularCustoMovimentacao(custoMedioItem);
             movimentacao.setCusto(custoCalculado);
             log.debug("Custo calculado para movimentação: {} (custo médio: {}, quantidade: {})",
                     custoCalculado, custoMedioItem, movimentacao.getQuantidade());
         }
 
-        return movimentacaoRepository.save(movimentacao);
+        // Saída de um lote informado: baixa condicional da quantidade disponível do lote
+        if (baixarLote && movimentacao.getTipoMovimentacao() == Movimentacao.TipoMovimentacao.SAIDA && movimentacao.getLote() != null &&
+                loteRepository.baixarQuantidadeDisponivel(movimentacao.getLote().getId(), movimentacao.getQuantidade(), LocalDateTime.now()) == 0) {
+            throw new IllegalArgumentException("Quantidade disponível insuficiente no lote: " + movimentacao.getLote().getNumeroLote());
+        }
+        // A alocação de lotes baixa e registra os lotes no cache ela mesma (baixarLote = false)
+        if (baixarLote && movimentacao.getLote() != null && movimentacao.getTipoMovimentacao() == Movimentacao.TipoMovimentacao.SAIDA) {
+            disponibilidadeLoteService.registrarBaixas(item.getId(), List.of(movimentacao.getLote().getId()));
+        }
+
+        // Atualiza o saldo antes de gravar: uma baixa sem saldo é recusada sem inserir a movimentação
+        saldoEstoqueService.registrarMovimentacao(movimentacao);
+
+        Movimentacao movimentacaoSalva = movimentacaoRepository.save(movimentacao);
+
+        if (consumirCamadas) {
+            BigDecimal custoCamadas = camadaCustoService.consumir(movimentacaoSalva);
+            if (movimentacaoSalva.getCusto() == null) {
+                movimentacaoSalva.setCusto(custoCamadas);
+                log.debug("Custo PEPS calculado para movimentação: {}", custoCamadas);
+            }
+        }
+
+        return movimentacaoSalva;
     }
 
     /**
-     * Calcula o saldo atual de um item baseado nas movimentações
+     * Retorna o saldo atual de um item (tabela de saldos materializada)
      */
     @Transactional(readOnly = true)
     public BigDecimal calcularSaldoAtual(Long itemId) {
         log.debug("Calculando saldo atual do item ID: {}", itemId);
-        BigDecimal saldo = movimentacaoRepository.calcularSaldoByEstoqueItemId(itemId);
-        return saldo != null ? saldo : BigDecimal.ZERO;
+        return saldoEstoqueService.obterSaldoItem(itemId);
     }
 
     /**
-     * Exclui uma movimentação
+     * Lista os saldos de um item por local e lote
+     */
+    @Transactional(readOnly = true)
+    public List<SaldoEstoque> listarSaldosItem(Long itemId) {
+        log.debug("Listando saldos por local e lote do item ID: {}", itemId);
+        return saldoEstoqueService.listarSaldosItem(itemId);
+    }
+
+    /**
+     * Reconstrói a tabela de saldos a partir das movimentações
+     */
+    public int reconstruirSaldos() {
+        return saldoEstoqueService.reconstruir();
+    }
+
+    /**
+     * Verifica a tabela de saldos contra as movimentações
+     */
+    public VerificacaoSaldoEstoqueDTO verificarSaldos() {
+        return saldoEstoqueService.verificar();
+    }
+
+    /**
+     * Exclui uma movimentação; a saída ou entrada de uma transferência exclui a transferência inteira
      */
     @Transactional
     public void excluir(Long id) {
         log.debug("Excluindo movimentação ID: {}", id);
-        if (!movimentacaoRepository.existsById(id)) {
-            throw new IllegalArgumentException("Movimentação não encontrada com ID: " + id);
+        Movimentacao movimentacao = movimentacaoRepository.findById(id)
+            .orElseThrow(() -> new IllegalArgumentException("Movimentação não encontrada com ID: " + id));
+        if (movimentacao.getTransferenciaId() != null) {
+            transferenciaEstoqueService.excluir(movimentacao.getTransferenciaId());
+            return;
+        }
+        fechamentoEstoqueService.validarPeriodoAberto(movimentacao.getDataMovimentacao());
+        // Devolve às camadas PEPS o que a saída consumiu (se houver)
+        camadaCustoService.estornarConsumo(id);
+        saldoEstoqueService.estornarMovimentacao(movimentacao);
+        if (movimentacao.getTipoMovimentacao() == Movimentacao.TipoMovimentacao.SAIDA && movimentacao.getLote() != null) {
+            loteRepository.devolverQuantidadeDisponivel(movimentacao.getLote().getId(), movimentacao.getQuantidade(), LocalDateTime.now());
+            disponibilidadeLoteService.registrarAlteracaoItem(movimentacao.getEstoqueItem().getId());
         }
-        movimentacaoRepository.deleteById(id);
+        movimentacaoRepository.delete(movimentacao);
     }
 }
\ No newline at end of file
@@ -0,0 +1,52 @@
+package com.estoque.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * Números sequenciais para a numeração automática de lotes. Cada chamada à sequência do banco reserva
+ * um bloco de números, distribuído em memória; os números são únicos entre instâncias e reinícios
+ * (com lacunas), de modo que os lotes gerados não precisam consultar a unicidade do número.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class NumeracaoLoteService {
+
+    /**
+     * Tamanho do bloco: também é o incremento da sequência, não deve mudar depois de criada
+     */
+    private static final int TAMANHO_BLOCO = 100;
+
+    private static final String SEQUENCIA = "lote_numero_seq";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private long proximo;
+    private long limite;
+
+    @PostConstruct
+    void criarSequencia() {
+        jdbcTemplate.execute("CREATE SEQUENCE IF NOT EXISTS " + SEQUENCIA + " START WITH 1 INCREMENT BY " + TAMANHO_BLOCO);
+    }
+
+    /**
+     * Reserva a quantidade de números informada
+     */
+    public synchronized long[] reservar(int quantidade) {
+        long[] numeros = new long[quantidade];
+        for (int i = 0; i < quantidade; i++) {
+            if (proximo >= limite) {
+                Long inicioBloco = jdbcTemplate.queryForObject("SELECT nextval('" + SEQUENCIA + "')", Long.class);
+                proximo = inicioBloco;
+                limite = inicioBloco + TAMANHO_BLOCO;
+                log.debug("Bloco de números de lote reservado: {} a {}", proximo, limite - 1);
+            }
+            numeros[i] = proximo++;
+        }
+        return numeros;
+    }
+}
@@ -0,0 +1,182 @@
+package com.estoque.service;
+
+import com.estoque.dto.ParticaoEstoqueDTO;
+import com.estoque.util.BancoDeDados;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Manutenção das partições mensais de movimentacao e estoque_custo (PostgreSQL), criadas pelo script
+ * db/particionamento-estoque.sql. Cria as partições dos próximos meses antes que sejam necessárias e
+ * arquiva partições de movimentacao de meses fechados (desanexa e move para o schema de arquivo).
+ * Em bancos sem as tabelas particionadas não faz nada.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ParticionamentoEstoqueService {
+
+    /**
+     * Tabelas particionadas e suas colunas de partição
+     */
+    private static final Map<String, String> TABELAS = new LinkedHashMap<>(Map.of(
+            "movimentacao", "data_movimentacao",
+            "estoque_custo", "data_custo"));
+
+    private static final String TABELA_ARQUIVAVEL = "movimentacao";
+
+    private static final String SCHEMA_ARQUIVO = "arquivo_estoque";
+
+    private static final DateTimeFormatter SUFIXO_PARTICAO = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    private static final String SQL_PARTICIONADA =
+            "SELECT COUNT(*) FROM pg_partitioned_table WHERE partrelid = to_regclass(?)";
+
+    private static final String SQL_EXISTE = "SELECT to_regclass(?) IS NOT NULL";
+
+    private static final String SQL_LISTAR =
+            "SELECT c.relname, pg_get_expr(c.relpartbound, c.oid), c.reltuples::bigint " +
+            "FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+            "WHERE i.inhparent = to_regclass(?) ORDER BY c.relname";
+
+    private static final String SQL_ARQUIVADAS =
+            "SELECT COUNT(*) FROM pg_tables WHERE schemaname = ? AND tablename LIKE ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final FechamentoEstoqueService fechamentoEstoqueService;
+
+    @Value("${estoque.particao.meses-adiante:3}")
+    private int mesesAdiante;
+
+    /**
+     * Cria as partições que faltam na subida e diariamente
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${estoque.particao.cron:0 0 2 * * *}")
+    public void manterParticoes() {
+        criarParticoes();
+    }
+
+    /**
+     * Cria as partições do mês corrente até os meses adiante configurados; retorna as criadas
+     */
+    public List<String> criarParticoes() {
+        List<String> criadas = new ArrayList<>();
+        for (String tabela : TABELAS.keySet()) {
+            if (!particionada(tabela)) {
+                continue;
+            }
+            for (int i = 0; i <= mesesAdiante; i++) {
+                YearMonth mes = YearMonth.now().plusMonths(i);
+                String particao = nomeParticao(tabela, mes);
+                if (Boolean.TRUE.equals(jdbcTemplate.queryForObject(SQL_EXISTE, Boolean.class, particao))) {
+                    continue;
+                }
+                try {
+                    jdbcTemplate.execute("CREATE TABLE " + particao + " PARTITION OF " + tabela +
+                            " FOR VALUES FROM ('" + mes.atDay(1) + "') TO ('" + mes.plusMonths(1).atDay(1) + "')");
+                    criadas.add(particao);
+                    log.info("Partição {} criada", particao);
+                } catch (DataAccessException e) {
+                    // Ex.: a partição padrão já tem linhas do mês; precisam ser movidas antes
+                    log.warn("Não foi possível criar a partição {}: {}", particao, e.getMessage());
+                }
+            }
+        }
+        return criadas;
+    }
+
+    /**
+     * Lista as partições das tabelas particionadas, com a estimativa de linhas do último ANALYZE
+     */
+    public List<ParticaoEstoqueDTO> listar() {
+        List<ParticaoEstoqueDTO> particoes = new ArrayList<>();
+        for (String tabela : TABELAS.keySet()) {
+            if (particionada(tabela)) {
+                particoes.addAll(jdbcTemplate.query(SQL_LISTAR,
+                        (rs, linha) -> new ParticaoEstoqueDTO(tabela, rs.getString(1), rs.getString(2), rs.getLong(3)),
+                        tabela));
+            }
+        }
+        return particoes;
+    }
+
+    /**
+     * Desanexa a partição do mês e a move para o schema de arquivo. Só partições de movimentacao de meses
+     * fechados: os saldos históricos partem dos fechamentos, enquanto o custo médio usa todo o histórico
+     * de estoque_custo. Enquanto houver partições arquivadas, as reconstruções de saldos e camadas de custo
+     * são recusadas.
+     */
+    @Transactional
+    public String arquivar(String tabela, YearMonth competencia) {
+        if (!TABELA_ARQUIVAVEL.equals(tabela)) {
+            throw new IllegalArgumentException("Só partições de " + TABELA_ARQUIVAVEL + " podem ser arquivadas");
+        }
+        if (!particionada(tabela)) {
+            throw new IllegalArgumentException("A tabela " + tabela + " não é particionada");
+        }
+        if (!fechamentoEstoqueService.competenciaFechada(competencia)) {
+            throw new IllegalArgumentException("Só partições de meses fechados podem ser arquivadas: " + competencia);
+        }
+        String particao = nomeParticao(tabela, competencia);
+        if (!Boolean.TRUE.equals(jdbcTemplate.queryForObject(SQL_EXISTE, Boolean.class, particao))) {
+            throw new IllegalArgumentException("Partição não encontrada: " + particao);
+        }
+
+        jdbcTemplate.execute("CREATE SCHEMA IF NOT EXISTS " + SCHEMA_ARQUIVO);
+        jdbcTemplate.execute("ALTER TABLE " + tabela + " DETACH PARTITION " + particao);
+        jdbcTemplate.execute("ALTER TABLE " + particao + " SET SCHEMA " + SCHEMA_ARQUIVO);
+        log.info("Partição {} arquivada em {}", particao, SCHEMA_ARQUIVO);
+        return SCHEMA_ARQUIVO + "." + particao;
+    }
+
+    /**
+     * Indica se há partições de movimentacao arquivadas, ou seja, se a tabela não tem mais o histórico completo
+     */
+    public boolean possuiParticoesArquivadas() {
+        if (!BancoDeDados.postgres(jdbcTemplate)) {
+            return false;
+        }
+        Integer arquivadas = jdbcTemplate.queryForObject(SQL_ARQUIVADAS, Integer.class,
+                SCHEMA_ARQUIVO, TABELA_ARQUIVAVEL + "\\_p%");
+        return arquivadas != null && arquivadas > 0;
+    }
+
+    /**
+     * Recusa operações que recompõem dados somando todo o histórico de movimentacao (saldos, camadas de
+     * custo): com partições arquivadas o resultado ficaria sem os meses arquivados
+     */
+    public void exigirHistoricoCompleto(String operacao) {
+        if (possuiParticoesArquivadas()) {
+            throw new IllegalArgumentException(operacao + " exige o histórico completo de " + TABELA_ARQUIVAVEL +
+                    ", mas há partições arquivadas em " + SCHEMA_ARQUIVO + "; reanexe-as antes (ver db/particionamento-estoque.sql)");
+        }
+    }
+
+    private boolean particionada(String tabela) {
+        if (!BancoDeDados.postgres(jdbcTemplate)) {
+            return false;
+        }
+        Integer particionadas = jdbcTemplate.queryForObject(SQL_PARTICIONADA, Integer.class, tabela);
+        return particionadas != null && particionadas > 0;
+    }
+
+    private static String nomeParticao(String tabela, YearMonth mes) {
+        return tabela + "_p" + mes.format(SUFIXO_PARTICAO);
+    }
+}
@@ -0,0 +1,150 @@
+package com.estoque.service;
+
+import com.estoque.dto.LinhaRateioFreteDTO;
+import com.estoque.dto.RateioFreteDTO;
+import com.estoque.dto.RateioFreteRequestDTO;
+import com.estoque.dto.RateioFreteRequestDTO.CriterioRateio;
+import com.estoque.repository.EstoqueCustoRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Rateio do frete de uma compra entre suas linhas de custo, por quantidade, valor ou peso.
+ * O frete é distribuído em 4 casas pelo maior resto: cada linha recebe a parte inteira da sua cota
+ * e os centésimos de centavo que sobram vão, um a um, para as linhas com maior parte fracionária.
+ * Assim a soma dos fretes rateados é exatamente o valor do frete e nenhuma linha fica negativa.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RateioFreteService {
+
+    private static final String SQL_ATUALIZAR_FRETE =
+            "UPDATE estoque_custo SET frete_rateado = ?, data_atualizacao = ? WHERE id = ?";
+
+    private static final int TAMANHO_BATCH = 500;
+
+    private final EstoqueCustoRepository estoqueCustoRepository;
+    private final FilaRecalculoCustoService filaRecalculoCustoService;
+    private final CamadaCustoService camadaCustoService;
+    private final RelatorioCustoService relatorioCustoService;
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Rateia o frete entre as linhas do pedido de compra (ou os custos informados) e grava o frete rateado
+     */
+    @Transactional
+    public RateioFreteDTO ratear(RateioFreteRequestDTO request) {
+        List<LinhaRateioFreteDTO> linhas = buscarLinhas(request);
+        if (linhas.isEmpty()) {
+            throw new IllegalArgumentException("Nenhuma linha de custo encontrada para o rateio");
+        }
+
+        log.debug("Rateando frete de {} por {} entre {} linhas", request.getValorFrete(), request.getCriterio(), linhas.size());
+
+        BigDecimal[] bases = new BigDecimal[linhas.size()];
+        BigDecimal totalBase = BigDecimal.ZERO;
+        for (int i = 0; i < linhas.size(); i++) {
+            bases[i] = calcularBase(linhas.get(i), request.getCriterio());
+            if (bases[i].signum() < 0) {
+                throw new IllegalArgumentException("O custo ID: " + linhas.get(i).getEstoqueCustoId() +
+                        " tem base de rateio negativa por " + request.getCriterio());
+            }
+            totalBase = totalBase.add(bases[i]);
+        }
+        if (totalBase.signum() == 0) {
+            throw new IllegalArgumentException("A soma da base de rateio por " + request.getCriterio() + " é zero");
+        }
+
+        // Frete em unidades de 0,0001; cota de cada linha = parte inteira de unidades * base / total
+        BigDecimal unidades = request.getValorFrete().movePointRight(4).setScale(0, RoundingMode.HALF_UP);
+        BigDecimal[] cotas = new BigDecimal[linhas.size()];
+        BigDecimal[] restos = new BigDecimal[linhas.size()];
+        BigDecimal distribuido = BigDecimal.ZERO;
+        for (int i = 0; i < linhas.size(); i++) {
+            BigDecimal[] divisao = unidades.multiply(bases[i]).divideAndRemainder(totalBase);
+            cotas[i] = divisao[0];
+            restos[i] = divisao[1];
+            distribuido = distribuido.add(divisao[0]);
+        }
+
+        // Sobra (menos de uma unidade por linha) para os maiores restos; empates ficam com a primeira linha
+        int sobra = unidades.subtract(distribuido).intValueExact();
+        Integer[] ordem = new Integer[linhas.size()];
+        for (int i = 0; i < ordem.length; i++) {
+            ordem[i] = i;
+        }
+        Arrays.sort(ordem, (a, b) -> restos[b].compareTo(restos[a]));
+        for (int k = 0; k < sobra; k++) {
+            cotas[ordem[k]] = cotas[ordem[k]].add(BigDecimal.ONE);
+        }
+        for (int i = 0; i < linhas.size(); i++) {
+            linhas.get(i).setFreteRateado(cotas[i].movePointLeft(4).setScale(4, RoundingMode.UNNECESSARY));
+        }
+
+        Timestamp agora = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(SQL_ATUALIZAR_FRETE, linhas, TAMANHO_BATCH, (ps, linha) -> {
+            ps.setBigDecimal(1, linha.getFreteRateado());
+            ps.setTimestamp(2, agora);
+            ps.setLong(3, linha.getEstoqueCustoId());
+        });
+
+        // Itens PEPS: o saldo das camadas passa a incluir o frete
+        camadaCustoService.reavaliarEntradas(linhas.stream().map(LinhaRateioFreteDTO::getEstoqueCustoId).toList());
+
+        // Um único reprocessamento do razão por item, a partir da linha mais antiga
+        Map<Long, LocalDateTime> inicioPorItem = new HashMap<>();
+        for (LinhaRateioFreteDTO linha : linhas) {
+            inicioPorItem.merge(linha.getEstoqueItemId(), linha.getDataCusto(),
+                    (atual, nova) -> nova.isBefore(atual) ? nova : atual);
+        }
+        inicioPorItem.forEach(filaRecalculoCustoService::agendar);
+        relatorioCustoService.invalidar(linhas.stream()
+                .map(linha -> YearMonth.from(linha.getDataCusto()))
+                .collect(Collectors.toSet()));
+
+        return new RateioFreteDTO(request.getValorFrete(), request.getCriterio(), inicioPorItem.size(), linhas);
+    }
+
+    private List<LinhaRateioFreteDTO> buscarLinhas(RateioFreteRequestDTO request) {
+        if (request.getPedidoCompraId() != null) {
+            return estoqueCustoRepository.findLinhasRateioByPedidoCompraId(request.getPedidoCompraId());
+        }
+        if (request.getEstoqueCustoIds() != null && !request.getEstoqueCustoIds().isEmpty()) {
+            List<LinhaRateioFreteDTO> linhas = estoqueCustoRepository.findLinhasRateioByIds(request.getEstoqueCustoIds());
+            if (linhas.size() != request.getEstoqueCustoIds().stream().distinct().count()) {
+                throw new IllegalArgumentException("Um ou mais custos informados não foram encontrados ou não são de compra");
+            }
+            return linhas;
+        }
+        throw new IllegalArgumentException("Informe o pedido de compra ou os custos a ratear");
+    }
+
+    private BigDecimal calcularBase(LinhaRateioFreteDTO linha, CriterioRateio criterio) {
+        BigDecimal quantidade = linha.getQuantidade() != null ? linha.getQuantidade() : BigDecimal.ZERO;
+        return switch (criterio) {
+            case QUANTIDADE -> quantidade;
+            case VALOR -> linha.getValor();
+            case PESO -> {
+                if (linha.getPesoUnitario() == null) {
+                    throw new IllegalArgumentException("Item de estoque ID: " + linha.getEstoqueItemId() + " não possui peso cadastrado");
+                }
+                yield quantidade.multiply(linha.getPesoUnitario());
+            }
+        };
+    }
+}
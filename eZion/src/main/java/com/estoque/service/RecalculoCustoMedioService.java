@@ -0,0 +1,345 @@
+package com.estoque.service;
+
+import com.estoque.model.EstoqueCusto;
+import com.estoque.model.RecalculoCustoBloco;
+import com.estoque.model.RecalculoCustoBloco.StatusBloco;
+import com.estoque.model.RecalculoCustoJob;
+import com.estoque.model.RecalculoCustoJob.StatusJob;
+import com.estoque.repository.EstoqueCustoRepository;
+import com.estoque.repository.RecalculoCustoBlocoRepository;
+import com.estoque.repository.RecalculoCustoJobRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Job de recálculo dos custos médios de todo o catálogo.
+ * Os itens com compras são divididos em blocos de IDs contíguos, processados em paralelo
+ * por um pool limitado de threads. Cada bloco roda em uma transação própria, com updates
+ * em batch via JDBC, e é marcado como concluído nessa mesma transação; após uma queda,
+ * o job é retomado a partir dos blocos ainda não confirmados.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RecalculoCustoMedioService {
+
+    private static final String SQL_COMPRAS_FAIXA =
+            "SELECT id, estoque_item_id, quantidade, valor, icms, ipi, pis, cofins, icms_st, iss, irpj, csll, " +
+            "frete_rateado, custo_medio, quantidade_acumulada, valor_acumulado FROM estoque_custo " +
+            "WHERE tipo_custo = 'COMPRA' AND quantidade > 0 AND estoque_item_id BETWEEN ? AND ? " +
+            "ORDER BY estoque_item_id, data_custo, id";
+
+    private static final String SQL_ATUALIZAR_CUSTO =
+            "UPDATE estoque_custo SET custo_medio = ?, quantidade_acumulada = ?, valor_acumulado = ?, " +
+            "data_atualizacao = ? WHERE id = ?";
+
+    private static final String SQL_CONCLUIR_BLOCO =
+            "UPDATE recalculo_custo_bloco SET status = 'CONCLUIDO', data_conclusao = ? WHERE id = ? AND status <> 'CONCLUIDO'";
+
+    private static final String SQL_FALHAR_BLOCO =
+            "UPDATE recalculo_custo_bloco SET status = 'FALHOU' WHERE id = ? AND status <> 'CONCLUIDO'";
+
+    private static final String SQL_PROGRESSO_JOB =
+            "UPDATE recalculo_custo_job SET blocos_concluidos = blocos_concluidos + 1, itens_processados = itens_processados + ?, " +
+            "lancamentos_atualizados = lancamentos_atualizados + ?, data_atualizacao = ? WHERE id = ?";
+
+    private static final int TAMANHO_BATCH = 500;
+
+    private final EstoqueCustoRepository estoqueCustoRepository;
+    private final RecalculoCustoJobRepository jobRepository;
+    private final RecalculoCustoBlocoRepository blocoRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Set<Long> jobsEmExecucao = ConcurrentHashMap.newKeySet();
+
+    @Value("${estoque.custo.recalculo.threads:4}")
+    private int threads;
+
+    @Value("${estoque.custo.recalculo.itens-por-bloco:200}")
+    private int itensPorBloco;
+
+    private ExecutorService coordenador;
+    private ExecutorService workers;
+
+    @PostConstruct
+    public void iniciarPools() {
+        AtomicInteger contador = new AtomicInteger();
+        coordenador = Executors.newSingleThreadExecutor(r -> new Thread(r, "recalculo-custo-coordenador"));
+        workers = Executors.newFixedThreadPool(threads, r -> new Thread(r, "recalculo-custo-" + contador.incrementAndGet()));
+    }
+
+    @PreDestroy
+    public void encerrarPools() {
+        coordenador.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    /**
+     * Retoma, na subida da aplicação, os jobs interrompidos por uma queda
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void retomarJobsInterrompidos() {
+        for (RecalculoCustoJob job : jobRepository.findByStatusOrderByIdAsc(StatusJob.EM_EXECUCAO)) {
+            log.info("Retomando job de recálculo de custos médios ID: {} ({}/{} blocos concluídos)",
+                    job.getId(), job.getBlocosConcluidos(), job.getTotalBlocos());
+            agendar(job.getId());
+        }
+    }
+
+    /**
+     * Inicia o recálculo de todos os itens, ou devolve o job que já está em execução
+     */
+    public RecalculoCustoJob iniciar() {
+        List<RecalculoCustoJob> ativos = jobRepository.findByStatusOrderByIdAsc(StatusJob.EM_EXECUCAO);
+        if (!ativos.isEmpty()) {
+            RecalculoCustoJob job = ativos.get(0);
+            log.debug("Job de recálculo ID: {} já está em execução", job.getId());
+            agendar(job.getId());
+            return job;
+        }
+
+        RecalculoCustoJob job;
+        try {
+            job = transactionTemplate.execute(status -> criarJob());
+        } catch (DataIntegrityViolationException e) {
+            // Outro pedido criou o job entre a consulta e a inclusão: a chave única em em_execucao recusou este
+            job = jobRepository.findByStatusOrderByIdAsc(StatusJob.EM_EXECUCAO).stream().findFirst()
+                .orElseThrow(() -> e);
+            log.debug("Job de recálculo ID: {} foi iniciado por outro pedido", job.getId());
+        }
+        if (job.getStatus() == StatusJob.EM_EXECUCAO) {
+            agendar(job.getId());
+        }
+        return job;
+    }
+
+    /**
+     * Retoma um job que falhou, reprocessando apenas os blocos não confirmados
+     */
+    public RecalculoCustoJob retomar(Long jobId) {
+        RecalculoCustoJob job = jobRepository.findById(jobId)
+            .orElseThrow(() -> new IllegalArgumentException("Job de recálculo não encontrado com ID: " + jobId));
+
+        if (job.getStatus() == StatusJob.CONCLUIDO) {
+            throw new IllegalArgumentException("Job de recálculo já foi concluído");
+        }
+
+        job.setStatus(StatusJob.EM_EXECUCAO);
+        job.setEmExecucao(true);
+        job.setMensagemErro(null);
+        job.setDataFim(null);
+        try {
+            job = jobRepository.saveAndFlush(job);
+        } catch (DataIntegrityViolationException e) {
+            throw new IllegalArgumentException("Já existe outro job de recálculo em execução");
+        }
+
+        agendar(job.getId());
+        return job;
+    }
+
+    /**
+     * Busca um job por ID
+     */
+    @Transactional(readOnly = true)
+    public Optional<RecalculoCustoJob> obter(Long jobId) {
+        return jobRepository.findById(jobId);
+    }
+
+    /**
+     * Busca o job mais recente
+     */
+    @Transactional(readOnly = true)
+    public Optional<RecalculoCustoJob> obterUltimo() {
+        return jobRepository.findFirstByOrderByIdDesc();
+    }
+
+    private RecalculoCustoJob criarJob() {
+        List<Long> itemIds = estoqueCustoRepository.findItemIdsComCompras();
+
+        RecalculoCustoJob job = new RecalculoCustoJob();
+        job.setStatus(StatusJob.EM_EXECUCAO);
+        job.setEmExecucao(true);
+        job.setTotalItens(itemIds.size());
+        job.setTotalBlocos((itemIds.size() + itensPorBloco - 1) / itensPorBloco);
+        job = jobRepository.save(job);
+
+        List<RecalculoCustoBloco> blocos = new ArrayList<>();
+        for (int inicio = 0, numero = 1; inicio < itemIds.size(); inicio += itensPorBloco, numero++) {
+            int fim = Math.min(inicio + itensPorBloco, itemIds.size()) - 1;
+            RecalculoCustoBloco bloco = new RecalculoCustoBloco();
+            bloco.setJobId(job.getId());
+            bloco.setNumero(numero);
+            bloco.setItemIdInicial(itemIds.get(inicio));
+            bloco.setItemIdFinal(itemIds.get(fim));
+            blocos.add(bloco);
+        }
+        blocoRepository.saveAll(blocos);
+
+        if (blocos.isEmpty()) {
+            job.setStatus(StatusJob.CONCLUIDO);
+            job.setEmExecucao(null);
+            job.setDataFim(LocalDateTime.now());
+        }
+
+        log.info("Job de recálculo de custos médios ID: {} criado com {} itens em {} blocos",
+                job.getId(), job.getTotalItens(), job.getTotalBlocos());
+        return job;
+    }
+
+    private void agendar(Long jobId) {
+        // Um job é executado por no máximo um coordenador neste nó
+        if (!jobsEmExecucao.add(jobId)) {
+            return;
+        }
+        coordenador.submit(() -> {
+            try {
+                executar(jobId);
+            } finally {
+                jobsEmExecucao.remove(jobId);
+            }
+        });
+    }
+
+    private void executar(Long jobId) {
+        List<RecalculoCustoBloco> pendentes = blocoRepository.findByJobIdAndStatusNotOrderByNumeroAsc(jobId, StatusBloco.CONCLUIDO);
+        log.debug("Executando job de recálculo ID: {} com {} blocos pendentes", jobId, pendentes.size());
+
+        List<Future<?>> execucoes = new ArrayList<>();
+        for (RecalculoCustoBloco bloco : pendentes) {
+            execucoes.add(workers.submit(() -> processarBloco(jobId, bloco)));
+        }
+
+        String erro = null;
+        for (Future<?> execucao : execucoes) {
+            try {
+                execucao.get();
+            } catch (ExecutionException e) {
+                erro = e.getCause().getMessage();
+            } catch (InterruptedException e) {
+                // Aplicação encerrando: o job continua EM_EXECUCAO e será retomado na próxima subida
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+
+        finalizar(jobId, erro);
+    }
+
+    private void processarBloco(Long jobId, RecalculoCustoBloco bloco) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                ReplayFaixa replay = new ReplayFaixa();
+                jdbcTemplate.query(SQL_COMPRAS_FAIXA, replay, bloco.getItemIdInicial(), bloco.getItemIdFinal());
+
+                Timestamp agora = Timestamp.valueOf(LocalDateTime.now());
+                jdbcTemplate.batchUpdate(SQL_ATUALIZAR_CUSTO, replay.atualizacoes, TAMANHO_BATCH, (ps, args) -> {
+                    ps.setBigDecimal(1, (BigDecimal) args[0]);
+                    ps.setBigDecimal(2, (BigDecimal) args[1]);
+                    ps.setBigDecimal(3, (BigDecimal) args[2]);
+                    ps.setTimestamp(4, agora);
+                    ps.setLong(5, (Long) args[3]);
+                });
+
+                if (jdbcTemplate.update(SQL_CONCLUIR_BLOCO, agora, bloco.getId()) == 1) {
+                    jdbcTemplate.update(SQL_PROGRESSO_JOB, replay.itens, replay.atualizacoes.size(), agora, jobId);
+                }
+            });
+            log.debug("Bloco {} do job {} concluído (itens {} a {})",
+                    bloco.getNumero(), jobId, bloco.getItemIdInicial(), bloco.getItemIdFinal());
+        } catch (RuntimeException e) {
+            log.error("Erro ao processar bloco {} do job de recálculo ID: {}", bloco.getNumero(), jobId, e);
+            jdbcTemplate.update(SQL_FALHAR_BLOCO, bloco.getId());
+            throw e;
+        }
+    }
+
+    private void finalizar(Long jobId, String erro) {
+        transactionTemplate.executeWithoutResult(status -> jobRepository.findById(jobId).ifPresent(job -> {
+            job.setStatus(erro == null ? StatusJob.CONCLUIDO : StatusJob.FALHOU);
+            job.setEmExecucao(null);
+            job.setMensagemErro(erro != null && erro.length() > 500 ? erro.substring(0, 500) : erro);
+            job.setDataFim(LocalDateTime.now());
+            log.info("Job de recálculo de custos médios ID: {} finalizado como {}", jobId, job.getStatus());
+        }));
+    }
+
+    /**
+     * Percorre as compras de uma faixa de itens (ordenadas por item, data e id) acumulando
+     * o custo médio, e guarda apenas os lançamentos cujos valores mudaram
+     */
+    private static class ReplayFaixa implements RowCallbackHandler {
+
+        private final List<Object[]> atualizacoes = new ArrayList<>();
+        private int itens;
+        private Long itemAtual;
+        private AcumuladorCustoMedio acumulador;
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            long itemId = rs.getLong("estoque_item_id");
+            if (itemAtual == null || itemAtual != itemId) {
+                itemAtual = itemId;
+                acumulador = new AcumuladorCustoMedio();
+                itens++;
+            }
+
+            EstoqueCusto custo = new EstoqueCusto();
+            custo.setQuantidade(rs.getBigDecimal("quantidade"));
+            custo.setValor(rs.getBigDecimal("valor"));
+            custo.setIcms(rs.getBigDecimal("icms"));
+            custo.setIpi(rs.getBigDecimal("ipi"));
+            custo.setPis(rs.getBigDecimal("pis"));
+            custo.setCofins(rs.getBigDecimal("cofins"));
+            custo.setIcmsSt(rs.getBigDecimal("icms_st"));
+            custo.setIss(rs.getBigDecimal("iss"));
+            custo.setIrpj(rs.getBigDecimal("irpj"));
+            custo.setCsll(rs.getBigDecimal("csll"));
+            custo.setFreteRateado(rs.getBigDecimal("frete_rateado"));
+
+            BigDecimal custoMedio = acumulador.somar(custo.getQuantidade(), custo.calcularCustoTotalComFrete());
+
+            if (!mesmoValor(rs.getBigDecimal("custo_medio"), custoMedio) ||
+                !mesmoValor(rs.getBigDecimal("quantidade_acumulada"), acumulador.getQuantidade()) ||
+                !mesmoValor(rs.getBigDecimal("valor_acumulado"), acumulador.getValor())) {
+                atualizacoes.add(new Object[] {custoMedio, acumulador.getQuantidade(), acumulador.getValor(), rs.getLong("id")});
+            }
+        }
+
+        private static boolean mesmoValor(BigDecimal registrado, BigDecimal esperado) {
+            if (registrado == null || esperado == null) {
+                return Objects.equals(registrado, esperado);
+            }
+            return registrado.compareTo(esperado) == 0;
+        }
+    }
+}
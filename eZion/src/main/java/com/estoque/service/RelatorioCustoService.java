@@ -0,0 +1,219 @@
+package com.estoque.service;
+
+import com.estoque.dto.LinhaRelatorioCustoDTO;
+import com.estoque.dto.LinhaRelatorioCustoDTO.Agrupamento;
+import com.estoque.model.EstoqueCusto.TipoCusto;
+import com.estoque.repository.EstoqueCustoRepository;
+import com.estoque.util.CampoCsv;
+import com.estoque.util.Transacoes;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Relatório de custos e impostos por tipo de custo, mês e item ou grupo.
+ * A agregação é feita no banco, um mês por consulta, e as linhas são escritas na resposta
+ * à medida que cada mês fica pronto. Meses anteriores ao corrente ficam em cache;
+ * um lançamento com data em um desses meses descarta o mês do cache após o commit, e a alteração
+ * do código, descrição ou grupo de um item, ou do nome de um grupo, descarta o cache inteiro.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RelatorioCustoService {
+
+    private static final int MAXIMO_MESES = 60;
+
+    private static final String CABECALHO_CSV = "competencia;tipo_custo;estoque_item_id;codigo_item;grupo_id;descricao;" +
+            "quantidade_lancamentos;quantidade;valor;icms;ipi;pis;cofins;icms_st;iss;irpj;csll;total_impostos;frete_rateado";
+
+    private final EstoqueCustoRepository estoqueCustoRepository;
+    private final ObjectMapper objectMapper;
+
+    private final ConcurrentHashMap<ChaveMes, List<LinhaRelatorioCustoDTO>> mesesFechados = new ConcurrentHashMap<>();
+
+    /**
+     * Incrementada a cada descarte: uma consulta que leu o banco antes de um commit não grava o resultado no cache
+     */
+    private final AtomicLong geracao = new AtomicLong();
+
+    /**
+     * Valida o período do relatório e retorna seus meses em ordem
+     */
+    public List<YearMonth> listarMeses(YearMonth inicio, YearMonth fim) {
+        if (fim.isBefore(inicio)) {
+            throw new IllegalArgumentException("O mês final deve ser igual ou posterior ao mês inicial");
+        }
+        List<YearMonth> meses = new ArrayList<>();
+        for (YearMonth mes = inicio; !mes.isAfter(fim); mes = mes.plusMonths(1)) {
+            if (meses.size() == MAXIMO_MESES) {
+                throw new IllegalArgumentException("O relatório aceita no máximo " + MAXIMO_MESES + " meses");
+            }
+            meses.add(mes);
+        }
+        return meses;
+    }
+
+    /**
+     * Linhas do relatório de um mês, opcionalmente filtradas pelo tipo de custo
+     */
+    public List<LinhaRelatorioCustoDTO> totalizarMes(YearMonth mes, Agrupamento agrupamento, TipoCusto tipoCusto) {
+        List<LinhaRelatorioCustoDTO> linhas;
+        if (mes.isBefore(YearMonth.now())) {
+            linhas = obterMesFechado(new ChaveMes(mes, agrupamento));
+        } else {
+            linhas = consultar(mes, agrupamento);
+        }
+        if (tipoCusto == null) {
+            return linhas;
+        }
+        return linhas.stream().filter(linha -> linha.getTipoCusto() == tipoCusto).toList();
+    }
+
+    /**
+     * Escreve o relatório em CSV (separado por ponto e vírgula), um mês por vez
+     */
+    public void escreverCsv(List<YearMonth> meses, Agrupamento agrupamento, TipoCusto tipoCusto,
+                            OutputStream saida) throws IOException {
+        Writer writer = new OutputStreamWriter(saida, StandardCharsets.UTF_8);
+        writer.write(CABECALHO_CSV);
+        writer.write('\n');
+        for (YearMonth mes : meses) {
+            for (LinhaRelatorioCustoDTO linha : totalizarMes(mes, agrupamento, tipoCusto)) {
+                writer.write(linhaCsv(linha));
+                writer.write('\n');
+            }
+            writer.flush();
+        }
+    }
+
+    /**
+     * Escreve o relatório como um array JSON, um mês por vez
+     */
+    public void escreverJson(List<YearMonth> meses, Agrupamento agrupamento, TipoCusto tipoCusto,
+                             OutputStream saida) throws IOException {
+        try (JsonGenerator generator = objectMapper.createGenerator(saida)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartArray();
+            for (YearMonth mes : meses) {
+                for (LinhaRelatorioCustoDTO linha : totalizarMes(mes, agrupamento, tipoCusto)) {
+                    generator.writeObject(linha);
+                }
+                generator.flush();
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    /**
+     * Descarta do cache o mês da data informada (após o commit, se houver transação)
+     */
+    public void invalidar(LocalDateTime data) {
+        invalidar(Set.of(YearMonth.from(data)));
+    }
+
+    /**
+     * Descarta do cache os meses informados (após o commit, se houver transação)
+     */
+    public void invalidar(Collection<YearMonth> meses) {
+        Transacoes.aposCommit(() -> descartar(meses));
+    }
+
+    /**
+     * Descarta todo o cache (após o commit, se houver transação): itens e grupos renomeados ou itens
+     * que mudaram de grupo alteram as linhas de todos os meses
+     */
+    public void invalidarTodos() {
+        Transacoes.aposCommit(this::descartarTodos);
+    }
+
+    private List<LinhaRelatorioCustoDTO> obterMesFechado(ChaveMes chave) {
+        List<LinhaRelatorioCustoDTO> linhas = mesesFechados.get(chave);
+        if (linhas != null) {
+            return linhas;
+        }
+        long geracaoLeitura = geracao.get();
+        linhas = consultar(chave.mes(), chave.agrupamento());
+        synchronized (mesesFechados) {
+            if (geracao.get() == geracaoLeitura) {
+                mesesFechados.putIfAbsent(chave, linhas);
+            }
+        }
+        return linhas;
+    }
+
+    private void descartar(Collection<YearMonth> meses) {
+        synchronized (mesesFechados) {
+            geracao.incrementAndGet();
+            for (YearMonth mes : meses) {
+                for (Agrupamento agrupamento : Agrupamento.values()) {
+                    if (mesesFechados.remove(new ChaveMes(mes, agrupamento)) != null) {
+                        log.debug("Relatório de custos de {} por {} descartado do cache", mes, agrupamento);
+                    }
+                }
+            }
+        }
+    }
+
+    private void descartarTodos() {
+        synchronized (mesesFechados) {
+            geracao.incrementAndGet();
+            mesesFechados.clear();
+        }
+        log.debug("Cache do relatório de custos descartado");
+    }
+
+    private List<LinhaRelatorioCustoDTO> consultar(YearMonth mes, Agrupamento agrupamento) {
+        LocalDateTime inicio = mes.atDay(1).atStartOfDay();
+        LocalDateTime fim = mes.plusMonths(1).atDay(1).atStartOfDay();
+        List<LinhaRelatorioCustoDTO> linhas = agrupamento == Agrupamento.GRUPO
+                ? estoqueCustoRepository.totalizarPorTipoEGrupo(inicio, fim)
+                : estoqueCustoRepository.totalizarPorTipoEItem(inicio, fim);
+        String competencia = mes.toString();
+        linhas.forEach(linha -> linha.setCompetencia(competencia));
+        log.debug("Relatório de custos de {} por {}: {} linhas", mes, agrupamento, linhas.size());
+        return List.copyOf(linhas);
+    }
+
+    private String linhaCsv(LinhaRelatorioCustoDTO linha) {
+        return String.join(CampoCsv.SEPARADOR,
+                linha.getCompetencia(),
+                linha.getTipoCusto().name(),
+                CampoCsv.inteiro(linha.getEstoqueItemId()),
+                CampoCsv.texto(linha.getCodigoItem()),
+                CampoCsv.inteiro(linha.getGrupoId()),
+                CampoCsv.texto(linha.getDescricao()),
+                CampoCsv.inteiro(linha.getQuantidadeLancamentos()),
+                CampoCsv.numero(linha.getQuantidade()),
+                CampoCsv.numero(linha.getValor()),
+                CampoCsv.numero(linha.getIcms()),
+                CampoCsv.numero(linha.getIpi()),
+                CampoCsv.numero(linha.getPis()),
+                CampoCsv.numero(linha.getCofins()),
+                CampoCsv.numero(linha.getIcmsSt()),
+                CampoCsv.numero(linha.getIss()),
+                CampoCsv.numero(linha.getIrpj()),
+                CampoCsv.numero(linha.getCsll()),
+                CampoCsv.numero(linha.getTotalImpostos()),
+                CampoCsv.numero(linha.getFreteRateado()));
+    }
+
+    private record ChaveMes(YearMonth mes, Agrupamento agrupamento) {
+    }
+}
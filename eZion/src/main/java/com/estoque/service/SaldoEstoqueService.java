@@ -0,0 +1,367 @@
+package com.estoque.service;
+
+import com.estoque.dto.DivergenciaSaldoEstoqueDTO;
+import com.estoque.dto.VerificacaoSaldoEstoqueDTO;
+import com.estoque.model.Movimentacao;
+import com.estoque.model.SaldoEstoque;
+import com.estoque.model.SaldoEstoque.PoliticaSaldoNegativo;
+import com.estoque.repository.MovimentacaoRepository;
+import com.estoque.repository.SaldoEstoqueRepository;
+import com.estoque.util.ConsultaEmBlocos;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Manutenção da tabela saldo_estoque: cada movimentação aplica um delta atômico
+ * (UPDATE quantidade = quantidade + delta) na linha do item/local/lote, de modo que
+ * a leitura do saldo não precisa somar o histórico de movimentações.
+ * Com a política REJEITAR, baixas só são aplicadas se houver saldo na linha.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SaldoEstoqueService {
+
+    private static final String SQL_SOMAR_DELTA =
+            "UPDATE saldo_estoque SET quantidade = quantidade + ?, data_atualizacao = ? " +
+            "WHERE estoque_item_id = ? AND local_id = ? AND lote_id = ?";
+
+    private static final String SQL_BAIXAR_COM_SALDO =
+            "UPDATE saldo_estoque SET quantidade = quantidade + ?, data_atualizacao = ? " +
+            "WHERE estoque_item_id = ? AND local_id = ? AND lote_id = ? AND quantidade + ? >= 0";
+
+    private static final String SQL_INSERIR_SALDO =
+            "INSERT INTO saldo_estoque (estoque_item_id, local_id, lote_id, quantidade, data_atualizacao) VALUES (?, ?, ?, ?, ?)";
+
+    private static final String SQL_SALDOS_MOVIMENTACOES =
+            "SELECT estoque_item_id, local_id, COALESCE(lote_id, 0) AS lote_id, " +
+            "SUM(CASE WHEN tipo_movimentacao = 'ENTRADA' THEN quantidade ELSE -quantidade END) AS quantidade " +
+            "FROM movimentacao GROUP BY estoque_item_id, local_id, COALESCE(lote_id, 0)";
+
+    private static final int TAMANHO_BATCH = 1000;
+
+    private final SaldoEstoqueRepository saldoEstoqueRepository;
+    private final MovimentacaoRepository movimentacaoRepository;
+    private final ParticionamentoEstoqueService particionamentoEstoqueService;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${estoque.saldo.politica-negativo:REJEITAR}")
+    private PoliticaSaldoNegativo politicaSaldoNegativo;
+
+    /**
+     * Aplica ao saldo o efeito de uma movimentação recém-gravada
+     */
+    @Transactional
+    public void registrarMovimentacao(Movimentacao movimentacao) {
+        somarDelta(movimentacao, delta(movimentacao));
+    }
+
+    /**
+     * Desfaz no saldo o efeito de uma movimentação que está sendo excluída
+     */
+    @Transactional
+    public void estornarMovimentacao(Movimentacao movimentacao) {
+        somarDelta(movimentacao, delta(movimentacao).negate());
+    }
+
+    /**
+     * Aplica em batch deltas já agregados por item/local/lote (registro em lote de movimentações).
+     * Retorna as chaves cuja baixa foi recusada por falta de saldo; essas não são alteradas.
+     */
+    @Transactional
+    public Set<ChaveSaldo> aplicarDeltas(Map<ChaveSaldo, BigDecimal> deltas) {
+        List<Map.Entry<ChaveSaldo, BigDecimal>> baixas = new ArrayList<>();
+        List<Map.Entry<ChaveSaldo, BigDecimal>> somas = new ArrayList<>();
+        for (Map.Entry<ChaveSaldo, BigDecimal> delta : deltas.entrySet()) {
+            if (delta.getValue().signum() < 0 && politicaSaldoNegativo == PoliticaSaldoNegativo.REJEITAR) {
+                baixas.add(delta);
+            } else if (delta.getValue().signum() != 0) {
+                somas.add(delta);
+            }
+        }
+        Timestamp agora = Timestamp.valueOf(LocalDateTime.now());
+
+        Set<ChaveSaldo> recusadas = new HashSet<>();
+        int[][] baixados = jdbcTemplate.batchUpdate(SQL_BAIXAR_COM_SALDO, baixas, TAMANHO_BATCH, (ps, delta) -> {
+            preencherDelta(ps, delta.getKey(), delta.getValue(), agora);
+            ps.setBigDecimal(6, delta.getValue());
+        });
+        coletarSemLinha(baixas, baixados, recusadas);
+
+        Set<ChaveSaldo> semLinha = new HashSet<>();
+        int[][] somados = jdbcTemplate.batchUpdate(SQL_SOMAR_DELTA, somas, TAMANHO_BATCH,
+                (ps, delta) -> preencherDelta(ps, delta.getKey(), delta.getValue(), agora));
+        coletarSemLinha(somas, somados, semLinha);
+        List<Map.Entry<ChaveSaldo, BigDecimal>> novas = somas.stream().filter(delta -> semLinha.contains(delta.getKey())).toList();
+        boolean inseridas = !novas.isEmpty() && inserirComSavepoint(() ->
+                jdbcTemplate.batchUpdate(SQL_INSERIR_SALDO, novas, TAMANHO_BATCH, (ps, delta) -> {
+                    ps.setLong(1, delta.getKey().estoqueItemId());
+                    ps.setLong(2, delta.getKey().localId());
+                    ps.setLong(3, delta.getKey().loteId());
+                    ps.setBigDecimal(4, delta.getValue());
+                    ps.setTimestamp(5, agora);
+                }));
+        if (!novas.isEmpty() && !inseridas) {
+            // Alguma linha foi criada por uma transação concorrente: refaz linha a linha
+            for (Map.Entry<ChaveSaldo, BigDecimal> delta : novas) {
+                ChaveSaldo chave = delta.getKey();
+                inserirOuSomar(chave.estoqueItemId(), chave.localId(), chave.loteId(), delta.getValue(), agora);
+            }
+        }
+
+        log.debug("Saldos ajustados em lote: {} linhas, {} baixas recusadas", deltas.size(), recusadas.size());
+        return recusadas;
+    }
+
+    /**
+     * Saldos positivos do item no local, por lote (sem a linha de saldo sem lote)
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, BigDecimal> obterSaldosLotesNoLocal(Long itemId, Long localId) {
+        Map<Long, BigDecimal> saldos = new HashMap<>();
+        jdbcTemplate.query("SELECT lote_id, quantidade FROM saldo_estoque " +
+                        "WHERE estoque_item_id = ? AND local_id = ? AND lote_id <> ? AND quantidade > 0",
+                rs -> {
+                    saldos.put(rs.getLong("lote_id"), rs.getBigDecimal("quantidade"));
+                }, itemId, localId, SaldoEstoque.SEM_LOTE);
+        return saldos;
+    }
+
+    /**
+     * Saldos atuais dos itens informados, por item/local/lote
+     */
+    @Transactional(readOnly = true)
+    public Map<ChaveSaldo, BigDecimal> obterSaldos(Collection<Long> itemIds) {
+        Map<ChaveSaldo, BigDecimal> saldos = new HashMap<>();
+        for (SaldoEstoque saldo : ConsultaEmBlocos.buscar(itemIds, saldoEstoqueRepository::findByEstoqueItemIdIn)) {
+            saldos.put(new ChaveSaldo(saldo.getEstoqueItemId(), saldo.getLocalId(), saldo.getLoteId()), saldo.getQuantidade());
+        }
+        return saldos;
+    }
+
+    /**
+     * Indica se baixas que deixariam o saldo negativo são recusadas
+     */
+    public boolean rejeitaSaldoNegativo() {
+        return politicaSaldoNegativo == PoliticaSaldoNegativo.REJEITAR;
+    }
+
+    /**
+     * Saldo total do item em todos os locais e lotes
+     */
+    @Transactional(readOnly = true)
+    public BigDecimal obterSaldoItem(Long itemId) {
+        BigDecimal saldo = saldoEstoqueRepository.somarQuantidadeByEstoqueItemId(itemId);
+        return saldo != null ? saldo : BigDecimal.ZERO;
+    }
+
+    /**
+     * Saldos do item por local e lote
+     */
+    @Transactional(readOnly = true)
+    public List<SaldoEstoque> listarSaldosItem(Long itemId) {
+        return saldoEstoqueRepository.findByEstoqueItemId(itemId);
+    }
+
+    /**
+     * Reconstrói a tabela de saldos a partir do histórico de movimentações.
+     * Deve ser executada sem movimentações em andamento; confira com {@link #verificar()}.
+     * Recusada enquanto houver partições de movimentacao arquivadas.
+     */
+    @Transactional
+    public int reconstruir() {
+        particionamentoEstoqueService.exigirHistoricoCompleto("A reconstrução dos saldos");
+        log.info("Reconstruindo saldos de estoque a partir das movimentações");
+        jdbcTemplate.update("DELETE FROM saldo_estoque");
+        int saldos = jdbcTemplate.update(
+                "INSERT INTO saldo_estoque (estoque_item_id, local_id, lote_id, quantidade, data_atualizacao) " +
+                "SELECT s.estoque_item_id, s.local_id, s.lote_id, s.quantidade, ? FROM (" + SQL_SALDOS_MOVIMENTACOES + ") s",
+                Timestamp.valueOf(LocalDateTime.now()));
+        log.info("Saldos de estoque reconstruídos: {} linhas", saldos);
+        return saldos;
+    }
+
+    /**
+     * Compara a tabela de saldos com a soma das movimentações, por item/local/lote.
+     * Recusada enquanto houver partições de movimentacao arquivadas.
+     */
+    @Transactional(readOnly = true)
+    public VerificacaoSaldoEstoqueDTO verificar() {
+        particionamentoEstoqueService.exigirHistoricoCompleto("A verificação dos saldos");
+        Map<ChaveSaldo, BigDecimal> esperados = new HashMap<>();
+        jdbcTemplate.query(SQL_SALDOS_MOVIMENTACOES, rs -> {
+            esperados.put(new ChaveSaldo(rs.getLong("estoque_item_id"), rs.getLong("local_id"), rs.getLong("lote_id")),
+                    rs.getBigDecimal("quantidade"));
+        });
+
+        List<DivergenciaSaldoEstoqueDTO> divergencias = new ArrayList<>();
+        int verificados = 0;
+        for (SaldoEstoque saldo : saldoEstoqueRepository.findAll()) {
+            verificados++;
+            ChaveSaldo chave = new ChaveSaldo(saldo.getEstoqueItemId(), saldo.getLocalId(), saldo.getLoteId());
+            BigDecimal esperado = esperados.remove(chave);
+            if (esperado == null) {
+                esperado = BigDecimal.ZERO;
+            }
+            if (saldo.getQuantidade().compareTo(esperado) != 0) {
+                divergencias.add(divergencia(chave, saldo.getQuantidade(), esperado));
+            }
+        }
+        // Combinações com movimentações e sem linha de saldo
+        esperados.forEach((chave, esperado) -> {
+            if (esperado.compareTo(BigDecimal.ZERO) != 0) {
+                divergencias.add(divergencia(chave, BigDecimal.ZERO, esperado));
+            }
+        });
+
+        if (!divergencias.isEmpty()) {
+            log.warn("Saldos de estoque com {} divergências", divergencias.size());
+        }
+        return new VerificacaoSaldoEstoqueDTO(verificados, divergencias.isEmpty(), divergencias);
+    }
+
+    /**
+     * Preenche a tabela na primeira subida após sua criação, se já houver movimentações
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void inicializarSaldos() {
+        if (saldoEstoqueRepository.count() == 0 && movimentacaoRepository.count() > 0) {
+            if (particionamentoEstoqueService.possuiParticoesArquivadas()) {
+                log.warn("Tabela de saldos vazia, mas há partições de movimentacao arquivadas; reconstrução não executada");
+                return;
+            }
+            reconstruir();
+        }
+    }
+
+    /**
+     * Aplica o delta de uma única linha de saldo; retorna false se a baixa foi recusada por falta de saldo
+     * (nesse caso nada é alterado)
+     */
+    @Transactional
+    public boolean aplicarDelta(ChaveSaldo chave, BigDecimal delta) {
+        return aplicar(chave.estoqueItemId(), chave.localId(), chave.loteId(), delta, Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    private void somarDelta(Movimentacao movimentacao, BigDecimal delta) {
+        Long itemId = movimentacao.getEstoqueItem().getId();
+        Long localId = movimentacao.getLocal().getId();
+        long loteId = movimentacao.getLote() != null ? movimentacao.getLote().getId() : SaldoEstoque.SEM_LOTE;
+
+        if (!aplicar(itemId, localId, loteId, delta, Timestamp.valueOf(LocalDateTime.now()))) {
+            throw new IllegalArgumentException("Saldo insuficiente do item ID: " + itemId + " no local ID: " + localId +
+                    (loteId != SaldoEstoque.SEM_LOTE ? " / lote ID: " + loteId : "") +
+                    " (disponível: " + obterSaldo(itemId, localId, loteId) + ", solicitado: " + delta.negate() + ")");
+        }
+        log.debug("Saldo do item {} no local {} / lote {} ajustado em {}", itemId, localId, loteId, delta);
+    }
+
+    private boolean aplicar(long itemId, long localId, long loteId, BigDecimal delta, Timestamp agora) {
+        if (delta.signum() < 0 && politicaSaldoNegativo == PoliticaSaldoNegativo.REJEITAR) {
+            // Baixa condicional: a verificação do saldo e o decremento são um único UPDATE,
+            // serializado pelo bloqueio da linha entre baixas concorrentes do mesmo item/local/lote
+            return jdbcTemplate.update(SQL_BAIXAR_COM_SALDO, delta, agora, itemId, localId, loteId, delta) > 0;
+        }
+
+        int atualizados = jdbcTemplate.update(SQL_SOMAR_DELTA, delta, agora, itemId, localId, loteId);
+        if (atualizados == 0) {
+            // Primeira movimentação da combinação
+            inserirOuSomar(itemId, localId, loteId, delta, agora);
+        }
+        return true;
+    }
+
+    /**
+     * Cria a linha de saldo com o delta; se uma transação concorrente já a criou (chave única),
+     * soma o delta sobre a linha existente
+     */
+    private void inserirOuSomar(long itemId, long localId, long loteId, BigDecimal delta, Timestamp agora) {
+        if (!inserirComSavepoint(() -> jdbcTemplate.update(SQL_INSERIR_SALDO, itemId, localId, loteId, delta, agora))) {
+            log.debug("Saldo do item {} no local {} / lote {} criado por outra transação, somando o delta", itemId, localId, loteId);
+            jdbcTemplate.update(SQL_SOMAR_DELTA, delta, agora, itemId, localId, loteId);
+        }
+    }
+
+    /**
+     * Executa a inclusão dentro de um savepoint. Em violação da chave única desfaz só a inclusão
+     * (no PostgreSQL o erro abortaria a transação inteira) e retorna false.
+     */
+    private boolean inserirComSavepoint(Runnable inclusao) {
+        return Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) con -> {
+            Savepoint savepoint = con.setSavepoint();
+            try {
+                inclusao.run();
+            } catch (DuplicateKeyException e) {
+                con.rollback(savepoint);
+                return false;
+            }
+            con.releaseSavepoint(savepoint);
+            return true;
+        }));
+    }
+
+    private BigDecimal obterSaldo(Long itemId, Long localId, long loteId) {
+        List<BigDecimal> saldo = jdbcTemplate.queryForList(
+                "SELECT quantidade FROM saldo_estoque WHERE estoque_item_id = ? AND local_id = ? AND lote_id = ?",
+                BigDecimal.class, itemId, localId, loteId);
+        return saldo.isEmpty() ? BigDecimal.ZERO : saldo.get(0);
+    }
+
+    private static void preencherDelta(PreparedStatement ps, ChaveSaldo chave, BigDecimal delta, Timestamp agora) throws SQLException {
+        ps.setBigDecimal(1, delta);
+        ps.setTimestamp(2, agora);
+        ps.setLong(3, chave.estoqueItemId());
+        ps.setLong(4, chave.localId());
+        ps.setLong(5, chave.loteId());
+    }
+
+    private static void coletarSemLinha(List<Map.Entry<ChaveSaldo, BigDecimal>> deltas, int[][] atualizados, Set<ChaveSaldo> destino) {
+        int indice = 0;
+        for (int[] bloco : atualizados) {
+            for (int contagem : bloco) {
+                if (contagem == 0) {
+                    destino.add(deltas.get(indice).getKey());
+                }
+                indice++;
+            }
+        }
+    }
+
+    private static BigDecimal delta(Movimentacao movimentacao) {
+        return movimentacao.getTipoMovimentacao() == Movimentacao.TipoMovimentacao.ENTRADA
+                ? movimentacao.getQuantidade()
+                : movimentacao.getQuantidade().negate();
+    }
+
+    private static DivergenciaSaldoEstoqueDTO divergencia(ChaveSaldo chave, BigDecimal registrado, BigDecimal esperado) {
+        return new DivergenciaSaldoEstoqueDTO(chave.estoqueItemId(), chave.localId(), chave.loteId(), registrado, esperado);
+    }
+
+    /**
+     * Chave de uma linha de saldo (lote_id = {@link SaldoEstoque#SEM_LOTE} quando não há lote)
+     */
+    public record ChaveSaldo(long estoqueItemId, long localId, long loteId) {
+    }
+}
@@ -0,0 +1,201 @@
+package com.estoque.service;
+
+import com.estoque.dto.ItemTransferenciaDTO;
+import com.estoque.dto.LinhaTransferenciaDTO;
+import com.estoque.dto.TransferenciaDTO;
+import com.estoque.dto.TransferenciaRequestDTO;
+import com.estoque.model.EstoqueItem;
+import com.estoque.model.Local;
+import com.estoque.model.Lote;
+import com.estoque.model.Movimentacao;
+import com.estoque.model.Movimentacao.TipoMovimentacao;
+import com.estoque.model.SaldoEstoque;
+import com.estoque.repository.EstoqueItemRepository;
+import com.estoque.repository.LocalRepository;
+import com.estoque.repository.LoteRepository;
+import com.estoque.repository.MovimentacaoRepository;
+import com.estoque.service.SaldoEstoqueService.ChaveSaldo;
+import com.estoque.util.ConsultaEmBlocos;
+import com.seguranca.model.Usuario;
+import com.seguranca.repository.UsuarioRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Transferência de itens entre dois locais. Cada item gera uma saída na origem e uma entrada no destino,
+ * ligadas pelo mesmo ID de transferência, gravadas na mesma transação: ou a transferência inteira é
+ * registrada ou nada é. O custo médio é consultado uma vez por item e as duas pernas levam o mesmo custo,
+ * de modo que o valor do item não muda. A quantidade disponível dos lotes e as camadas PEPS também
+ * não mudam, pois o estoque só troca de local.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TransferenciaEstoqueService {
+
+    private final EstoqueItemRepository estoqueItemRepository;
+    private final LocalRepository localRepository;
+    private final LoteRepository loteRepository;
+    private final UsuarioRepository usuarioRepository;
+    private final MovimentacaoRepository movimentacaoRepository;
+    private final EstoqueCustoService estoqueCustoService;
+    private final SaldoEstoqueService saldoEstoqueService;
+    private final FechamentoEstoqueService fechamentoEstoqueService;
+    private final ImportacaoMovimentacaoService importacaoMovimentacaoService;
+    private final IdempotenciaService idempotenciaService;
+
+    /**
+     * Registra a transferência dos itens da origem para o destino
+     */
+    @Transactional
+    public TransferenciaDTO transferir(TransferenciaRequestDTO request) {
+        log.debug("Transferindo {} itens do local ID: {} para o local ID: {}",
+                request.getItens().size(), request.getLocalOrigemId(), request.getLocalDestinoId());
+        if (request.getLocalOrigemId().equals(request.getLocalDestinoId())) {
+            throw new IllegalArgumentException("Os locais de origem e destino devem ser diferentes");
+        }
+
+        Local origem = localRepository.findById(request.getLocalOrigemId())
+            .orElseThrow(() -> new IllegalArgumentException("Local não encontrado com ID: " + request.getLocalOrigemId()));
+        Local destino = localRepository.findById(request.getLocalDestinoId())
+            .orElseThrow(() -> new IllegalArgumentException("Local não encontrado com ID: " + request.getLocalDestinoId()));
+        Usuario usuario = usuarioRepository.findById(request.getUsuarioId())
+            .orElseThrow(() -> new IllegalArgumentException("Usuário não encontrado com ID: " + request.getUsuarioId()));
+
+        Map<Long, EstoqueItem> itens = buscarPorIds(request.getItens(), ItemTransferenciaDTO::getEstoqueItemId,
+                estoqueItemRepository::findAllById, EstoqueItem::getId);
+        Map<Long, Lote> lotes = buscarPorIds(request.getItens(), ItemTransferenciaDTO::getLoteId,
+                loteRepository::findAllById, Lote::getId);
+
+        LocalDateTime agora = LocalDateTime.now();
+        LocalDateTime dataMovimentacao = request.getDataMovimentacao() != null ? request.getDataMovimentacao() : agora;
+        fechamentoEstoqueService.validarPeriodoAberto(dataMovimentacao);
+
+        UUID transferenciaId = UUID.randomUUID();
+        Map<Long, BigDecimal> custosMedios = new HashMap<>();
+        Map<ChaveSaldo, BigDecimal> deltas = new LinkedHashMap<>();
+        List<Movimentacao> movimentacoes = new ArrayList<>(request.getItens().size() * 2);
+        for (ItemTransferenciaDTO linha : request.getItens()) {
+            EstoqueItem item = itens.get(linha.getEstoqueItemId());
+            if (item == null) {
+                throw new IllegalArgumentException("Item de estoque não encontrado com ID: " + linha.getEstoqueItemId());
+            }
+            Lote lote = null;
+            if (linha.getLoteId() != null) {
+                lote = lotes.get(linha.getLoteId());
+                if (lote == null) {
+                    throw new IllegalArgumentException("Lote não encontrado com ID: " + linha.getLoteId());
+                }
+                if (!lote.getEstoqueItem().getId().equals(item.getId())) {
+                    throw new IllegalArgumentException("O lote " + lote.getNumeroLote() + " não pertence ao item ID: " + item.getId());
+                }
+            }
+
+            BigDecimal custoMedio = custosMedios.computeIfAbsent(item.getId(),
+                    id -> estoqueCustoService.obterCustoMedioParaMovimentacao(id, dataMovimentacao));
+            Movimentacao saida = novaMovimentacao(request, TipoMovimentacao.SAIDA, item, origem, lote, linha.getQuantidade(),
+                    usuario, dataMovimentacao, agora, transferenciaId);
+            saida.setCusto(saida.calcularCustoMovimentacao(custoMedio));
+            Movimentacao entrada = novaMovimentacao(request, TipoMovimentacao.ENTRADA, item, destino, lote, linha.getQuantidade(),
+                    usuario, dataMovimentacao, agora, transferenciaId);
+            entrada.setCusto(saida.getCusto());
+            movimentacoes.add(saida);
+            movimentacoes.add(entrada);
+
+            long loteId = lote != null ? lote.getId() : SaldoEstoque.SEM_LOTE;
+            deltas.merge(new ChaveSaldo(item.getId(), origem.getId(), loteId), linha.getQuantidade().negate(), BigDecimal::add);
+            deltas.merge(new ChaveSaldo(item.getId(), destino.getId(), loteId), linha.getQuantidade(), BigDecimal::add);
+        }
+
+        // Baixas condicionais na origem e somas no destino; sem saldo em alguma chave, a transação é desfeita
+        Set<ChaveSaldo> recusadas = saldoEstoqueService.aplicarDeltas(deltas);
+        if (!recusadas.isEmpty()) {
+            ChaveSaldo chave = recusadas.iterator().next();
+            throw new IllegalArgumentException("Saldo insuficiente do item ID: " + chave.estoqueItemId() +
+                    " no local ID: " + chave.localId() +
+                    (chave.loteId() != SaldoEstoque.SEM_LOTE ? " / lote ID: " + chave.loteId() : ""));
+        }
+
+        importacaoMovimentacaoService.inserir(movimentacoes);
+
+        List<LinhaTransferenciaDTO> linhas = new ArrayList<>(request.getItens().size());
+        for (int i = 0; i < movimentacoes.size(); i += 2) {
+            Movimentacao saida = movimentacoes.get(i);
+            linhas.add(new LinhaTransferenciaDTO(saida.getEstoqueItem().getId(),
+                    saida.getLote() != null ? saida.getLote().getId() : null,
+                    saida.getQuantidade(), saida.getCusto(), saida.getId(), movimentacoes.get(i + 1).getId()));
+        }
+        log.debug("Transferência {} registrada com {} itens", transferenciaId, linhas.size());
+        return new TransferenciaDTO(transferenciaId, origem.getId(), destino.getId(), dataMovimentacao, linhas);
+    }
+
+    /**
+     * Registra a transferência uma única vez por chave de idempotência; a repetição devolve a transferência original
+     */
+    public TransferenciaDTO transferir(TransferenciaRequestDTO request, String chaveIdempotencia) {
+        return idempotenciaService.executar(chaveIdempotencia, "TRANSFERENCIA", TransferenciaDTO.class, () -> transferir(request));
+    }
+
+    /**
+     * Exclui as duas pernas de uma transferência, desfazendo seus saldos. Executa na transação do chamador.
+     */
+    void excluir(UUID transferenciaId) {
+        log.debug("Excluindo transferência {}", transferenciaId);
+        List<Movimentacao> movimentacoes = movimentacaoRepository.findByTransferenciaIdOrderById(transferenciaId);
+        for (Movimentacao movimentacao : movimentacoes) {
+            fechamentoEstoqueService.validarPeriodoAberto(movimentacao.getDataMovimentacao());
+        }
+        // Entradas primeiro: sem saldo no destino, a exclusão é recusada antes de devolver à origem
+        movimentacoes.sort((a, b) -> a.getTipoMovimentacao() == b.getTipoMovimentacao() ? 0
+                : a.getTipoMovimentacao() == TipoMovimentacao.ENTRADA ? -1 : 1);
+        for (Movimentacao movimentacao : movimentacoes) {
+            saldoEstoqueService.estornarMovimentacao(movimentacao);
+        }
+        movimentacaoRepository.deleteAll(movimentacoes);
+    }
+
+    private Movimentacao novaMovimentacao(TransferenciaRequestDTO request, TipoMovimentacao tipo, EstoqueItem item, Local local,
+                                          Lote lote, BigDecimal quantidade, Usuario usuario, LocalDateTime dataMovimentacao,
+                                          LocalDateTime agora, UUID transferenciaId) {
+        Movimentacao movimentacao = new Movimentacao();
+        movimentacao.setEstoqueItem(item);
+        movimentacao.setLocal(local);
+        movimentacao.setLote(lote);
+        movimentacao.setUsuario(usuario);
+        movimentacao.setTipoMovimentacao(tipo);
+        movimentacao.setQuantidade(quantidade);
+        movimentacao.setObservacoes(request.getObservacoes());
+        movimentacao.setDataMovimentacao(dataMovimentacao);
+        movimentacao.setDataCriacao(agora);
+        movimentacao.setDataAtualizacao(agora);
+        movimentacao.setTransferenciaId(transferenciaId);
+        return movimentacao;
+    }
+
+    private static <T> Map<Long, T> buscarPorIds(List<ItemTransferenciaDTO> linhas, Function<ItemTransferenciaDTO, Long> extrairId,
+                                                 Function<List<Long>, List<T>> buscar, Function<T, Long> id) {
+        Set<Long> ids = new HashSet<>();
+        for (ItemTransferenciaDTO linha : linhas) {
+            Long valor = extrairId.apply(linha);
+            if (valor != null) {
+                ids.add(valor);
+            }
+        }
+        return ConsultaEmBlocos.buscar(ids, buscar).stream().collect(Collectors.toMap(id, Function.identity()));
+    }
+}
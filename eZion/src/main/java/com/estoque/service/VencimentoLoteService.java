@@ -0,0 +1,190 @@
+package com.estoque.service;
+
+import com.estoque.dto.LoteValidadeDTO;
+import com.estoque.model.Lote;
+import com.estoque.repository.LoteRepository;
+import com.estoque.util.Transacoes;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Índice em memória dos vencimentos de lotes: os lotes ativos com validade, ordenados por data de validade.
+ * É carregado na subida e mantido pelas alterações de lote após o commit, de modo que as consultas de
+ * lotes vencidos e a vencer são respondidas sem consultar o banco. Um job diário desativa os lotes
+ * vencidos com um único UPDATE e alerta os vencidos e os que vencem nos próximos dias.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class VencimentoLoteService {
+
+    private static final String SQL_LOTES_COM_VALIDADE =
+            "SELECT id, numero_lote, estoque_item_id, data_validade FROM lote WHERE ativo = true AND data_validade IS NOT NULL";
+
+    private static final Comparator<Vencimento> ORDEM_VENCIMENTO =
+            Comparator.comparing(Vencimento::dataValidade).thenComparingLong(Vencimento::loteId);
+
+    private final LoteRepository loteRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final DisponibilidadeLoteService disponibilidadeLoteService;
+
+    @Value("${estoque.lote.desativar-vencidos:true}")
+    private boolean desativarVencidos;
+
+    @Value("${estoque.lote.alerta-dias:7}")
+    private int diasAlerta;
+
+    /**
+     * Lotes por data de validade e, para localizar a entrada de um lote alterado, por ID
+     */
+    private final NavigableSet<Vencimento> porValidade = new ConcurrentSkipListSet<>(ORDEM_VENCIMENTO);
+    private final ConcurrentHashMap<Long, Vencimento> porLote = new ConcurrentHashMap<>();
+
+    private volatile boolean carregado;
+
+    /**
+     * Carrega o índice na subida da aplicação
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void carregar() {
+        recarregar();
+    }
+
+    /**
+     * Lotes ativos vencidos antes da data, do vencimento mais antigo ao mais recente
+     */
+    public List<LoteValidadeDTO> listarVencidosAntes(LocalDate data) {
+        garantirCarregado();
+        return converter(porValidade.headSet(new Vencimento(data, Long.MIN_VALUE, null, 0), false));
+    }
+
+    /**
+     * Lotes ativos com validade no período (inclusive), em ordem de vencimento
+     */
+    public List<LoteValidadeDTO> listarVencendoEntre(LocalDate inicio, LocalDate fim) {
+        garantirCarregado();
+        if (fim.isBefore(inicio)) {
+            return List.of();
+        }
+        return converter(porValidade.subSet(new Vencimento(inicio, Long.MIN_VALUE, null, 0), true,
+                new Vencimento(fim, Long.MAX_VALUE, null, 0), true));
+    }
+
+    /**
+     * Atualiza o índice com o estado do lote quando a transação atual for confirmada
+     */
+    public void registrarAlteracao(Lote lote) {
+        Vencimento vencimento = Boolean.TRUE.equals(lote.getAtivo()) && lote.getDataValidade() != null
+                ? new Vencimento(lote.getDataValidade(), lote.getId(), lote.getNumeroLote(), lote.getEstoqueItem().getId())
+                : null;
+        Long loteId = lote.getId();
+        Transacoes.aposCommit(() -> atualizar(loteId, vencimento));
+    }
+
+    /**
+     * Retira o lote do índice quando a transação atual for confirmada
+     */
+    public void registrarExclusao(Long loteId) {
+        Transacoes.aposCommit(() -> atualizar(loteId, null));
+    }
+
+    /**
+     * Processa os vencimentos diariamente
+     */
+    @Scheduled(cron = "${estoque.lote.vencimento-cron:0 5 0 * * *}")
+    public void processarVencimentos() {
+        processarVencidos();
+    }
+
+    /**
+     * Desativa (ou só alerta, conforme estoque.lote.desativar-vencidos) os lotes vencidos e alerta os que vencem
+     * em breve; retorna o número de lotes desativados
+     */
+    public int processarVencidos() {
+        LocalDate hoje = LocalDate.now();
+        List<LoteValidadeDTO> vencidos = listarVencidosAntes(hoje);
+        for (LoteValidadeDTO lote : vencidos) {
+            log.warn("Lote {} (item ID: {}) vencido em {}", lote.getNumeroLote(), lote.getEstoqueItemId(), lote.getDataValidade());
+        }
+        int desativados = 0;
+        if (desativarVencidos && !vencidos.isEmpty()) {
+            desativados = transactionTemplate.execute(status -> {
+                int total = loteRepository.desativarVencidosAnte(hoje, LocalDateTime.now());
+                Transacoes.aposCommit(() -> removerVencidosAntes(hoje));
+                disponibilidadeLoteService.registrarAlteracaoGeral();
+                return total;
+            });
+            log.warn("{} lotes vencidos desativados", desativados);
+        }
+
+        for (LoteValidadeDTO lote : listarVencendoEntre(hoje, hoje.plusDays(diasAlerta))) {
+            log.warn("Lote {} (item ID: {}) vence em {}", lote.getNumeroLote(), lote.getEstoqueItemId(), lote.getDataValidade());
+        }
+        return desativados;
+    }
+
+    private void garantirCarregado() {
+        if (!carregado) {
+            recarregar();
+        }
+    }
+
+    private synchronized void recarregar() {
+        List<Vencimento> vencimentos = jdbcTemplate.query(SQL_LOTES_COM_VALIDADE, (rs, linha) -> new Vencimento(
+                rs.getDate("data_validade").toLocalDate(), rs.getLong("id"), rs.getString("numero_lote"), rs.getLong("estoque_item_id")));
+        porValidade.clear();
+        porLote.clear();
+        for (Vencimento vencimento : vencimentos) {
+            porValidade.add(vencimento);
+            porLote.put(vencimento.loteId(), vencimento);
+        }
+        carregado = true;
+        log.info("Índice de vencimentos carregado com {} lotes", vencimentos.size());
+    }
+
+    private synchronized void atualizar(Long loteId, Vencimento vencimento) {
+        Vencimento anterior = vencimento != null ? porLote.put(loteId, vencimento) : porLote.remove(loteId);
+        if (anterior != null) {
+            porValidade.remove(anterior);
+        }
+        if (vencimento != null) {
+            porValidade.add(vencimento);
+        }
+    }
+
+    private synchronized void removerVencidosAntes(LocalDate data) {
+        NavigableSet<Vencimento> vencidos = porValidade.headSet(new Vencimento(data, Long.MIN_VALUE, null, 0), false);
+        for (Vencimento vencimento : vencidos) {
+            porLote.remove(vencimento.loteId());
+        }
+        vencidos.clear();
+    }
+
+    private static List<LoteValidadeDTO> converter(NavigableSet<Vencimento> vencimentos) {
+        List<LoteValidadeDTO> lotes = new ArrayList<>();
+        for (Vencimento vencimento : vencimentos) {
+            lotes.add(new LoteValidadeDTO(vencimento.loteId(), vencimento.numeroLote(), vencimento.estoqueItemId(), vencimento.dataValidade()));
+        }
+        return lotes;
+    }
+
+    private record Vencimento(LocalDate dataValidade, long loteId, String numeroLote, long estoqueItemId) {
+    }
+}
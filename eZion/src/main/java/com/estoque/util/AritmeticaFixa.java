@@ -0,0 +1,126 @@
+package com.estoque.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Aritmética de ponto fixo para os laços do motor de custos.
+ * Valores monetários e quantidades são representados como long na escala 4 (1,2345 = 12345),
+ * evitando a criação de BigDecimal intermediários. Sempre que um valor não cabe na escala 4
+ * ou uma operação estoura o long, o cálculo é refeito em BigDecimal, com o mesmo resultado
+ * (inclusive a escala) que o cálculo original.
+ */
+public final class AritmeticaFixa {
+
+    /** Escala dos valores em ponto fixo */
+    public static final int ESCALA = 4;
+
+    private static final long FATOR_ESCALA_6 = 1_000_000L;
+    private static final long FATOR_ESCALA_6_PARA_4 = 100L;
+
+    private AritmeticaFixa() {
+    }
+
+    /**
+     * Indica se o valor pode ser convertido sem perda para a escala 4
+     */
+    public static boolean representavel(BigDecimal valor) {
+        return valor.scale() >= 0 && valor.scale() <= ESCALA && valor.precision() - valor.scale() <= 14;
+    }
+
+    /**
+     * Converte para ponto fixo na escala 4; o valor deve ser {@link #representavel(BigDecimal)}
+     */
+    public static long paraFixo(BigDecimal valor) {
+        return valor.unscaledValue().longValue() * potenciaDeDez(ESCALA - valor.scale());
+    }
+
+    /**
+     * Converte um valor em ponto fixo (escala 4) para BigDecimal na escala informada (menor ou igual a 4)
+     */
+    public static BigDecimal paraBigDecimal(long valor, int escala) {
+        if (escala == ESCALA) {
+            return BigDecimal.valueOf(valor, ESCALA);
+        }
+        return BigDecimal.valueOf(valor / potenciaDeDez(ESCALA - escala), escala);
+    }
+
+    /**
+     * Soma os valores informados ignorando nulos, com o mesmo resultado de encadear
+     * {@code BigDecimal.ZERO.add(...)}: a escala do resultado é a maior escala entre as parcelas.
+     */
+    public static BigDecimal somar(BigDecimal... valores) {
+        long soma = 0;
+        int escala = 0;
+        for (BigDecimal valor : valores) {
+            if (valor == null) {
+                continue;
+            }
+            if (!representavel(valor)) {
+                return somarBigDecimal(valores);
+            }
+            long fixo = paraFixo(valor);
+            long resultado = soma + fixo;
+            // Estouro quando as parcelas têm o mesmo sinal e o resultado troca de sinal
+            if (((soma ^ resultado) & (fixo ^ resultado)) < 0) {
+                return somarBigDecimal(valores);
+            }
+            soma = resultado;
+            escala = Math.max(escala, valor.scale());
+        }
+        return paraBigDecimal(soma, escala);
+    }
+
+    /**
+     * Divide dois valores em ponto fixo (escala 4) arredondando HALF_UP em 6 casas e depois em 4,
+     * como {@code valor.divide(quantidade, 6, HALF_UP).setScale(4, HALF_UP)}.
+     * Retorna o resultado em ponto fixo na escala 4, ou {@link Long#MIN_VALUE} se o cálculo estourar.
+     */
+    public static long dividirEscala6Para4(long valor, long quantidade) {
+        long numerador = valor * FATOR_ESCALA_6;
+        if (Math.multiplyHigh(valor, FATOR_ESCALA_6) != (numerador >> 63)) {
+            return Long.MIN_VALUE;
+        }
+        long escala6 = dividirMeioParaCima(numerador, quantidade);
+        return dividirMeioParaCima(escala6, FATOR_ESCALA_6_PARA_4);
+    }
+
+    /**
+     * Mesmo cálculo em BigDecimal, usado quando os valores não cabem em ponto fixo
+     */
+    public static BigDecimal dividirEscala6Para4(BigDecimal valor, BigDecimal quantidade) {
+        return valor.divide(quantidade, 6, RoundingMode.HALF_UP).setScale(4, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Divisão inteira com arredondamento HALF_UP (empates se afastam do zero)
+     */
+    static long dividirMeioParaCima(long dividendo, long divisor) {
+        long quociente = dividendo / divisor;
+        long resto = Math.abs(dividendo % divisor);
+        if (resto >= Math.abs(divisor) - resto) {
+            quociente += (dividendo < 0) == (divisor < 0) ? 1 : -1;
+        }
+        return quociente;
+    }
+
+    private static BigDecimal somarBigDecimal(BigDecimal... valores) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (BigDecimal valor : valores) {
+            if (valor != null) {
+                total = total.add(valor);
+            }
+        }
+        return total;
+    }
+
+    private static long potenciaDeDez(int expoente) {
+        return switch (expoente) {
+            case 0 -> 1L;
+            case 1 -> 10L;
+            case 2 -> 100L;
+            case 3 -> 1_000L;
+            default -> 10_000L;
+        };
+    }
+}
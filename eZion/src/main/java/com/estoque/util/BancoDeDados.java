@@ -0,0 +1,35 @@
+package com.estoque.util;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Identificação do banco por trás de um JdbcTemplate, para recursos que só existem no PostgreSQL
+ * (partições, advisory locks). O produto é lido uma vez por DataSource, dos metadados da conexão.
+ */
+public final class BancoDeDados {
+
+    private static final Map<DataSource, Boolean> POSTGRES = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private BancoDeDados() {
+    }
+
+    /**
+     * Indica se o banco é PostgreSQL (no H2 dos testes, mesmo no modo PostgreSQL, retorna false)
+     */
+    public static boolean postgres(JdbcTemplate jdbcTemplate) {
+        DataSource dataSource = jdbcTemplate.getDataSource();
+        Boolean valor = POSTGRES.get(dataSource);
+        if (valor == null) {
+            String produto = jdbcTemplate.execute((ConnectionCallback<String>) con -> con.getMetaData().getDatabaseProductName());
+            valor = "PostgreSQL".equalsIgnoreCase(produto);
+            POSTGRES.put(dataSource, valor);
+        }
+        return valor;
+    }
+}
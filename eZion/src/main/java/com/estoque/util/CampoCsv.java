@@ -0,0 +1,43 @@
+package com.estoque.util;
+
+import java.math.BigDecimal;
+
+/**
+ * Formatação dos campos dos arquivos CSV do estoque (separados por ponto e vírgula).
+ * Valores nulos viram campo vazio; textos com separador, aspas ou quebra de linha vão entre aspas.
+ */
+public final class CampoCsv {
+
+    /** Separador de campos */
+    public static final String SEPARADOR = ";";
+
+    private CampoCsv() {
+    }
+
+    /**
+     * Campo com um número inteiro (ex.: ID)
+     */
+    public static String inteiro(Long valor) {
+        return valor != null ? valor.toString() : "";
+    }
+
+    /**
+     * Campo com um valor decimal, sem notação científica
+     */
+    public static String numero(BigDecimal valor) {
+        return valor != null ? valor.toPlainString() : "";
+    }
+
+    /**
+     * Campo de texto, entre aspas (com as aspas internas duplicadas) quando necessário
+     */
+    public static String texto(String valor) {
+        if (valor == null) {
+            return "";
+        }
+        if (valor.indexOf(';') < 0 && valor.indexOf('"') < 0 && valor.indexOf('\n') < 0 && valor.indexOf('\r') < 0) {
+            return valor;
+        }
+        return '"' + valor.replace("\"", "\"\"") + '"';
+    }
+}
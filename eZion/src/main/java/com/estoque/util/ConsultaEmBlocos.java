@@ -0,0 +1,35 @@
+package com.estoque.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Consultas IN por listas de IDs de tamanho arbitrário, divididas em blocos.
+ * O PostgreSQL aceita no máximo 32767 parâmetros por comando; uma importação grande
+ * ultrapassaria esse limite com uma única consulta.
+ */
+public final class ConsultaEmBlocos {
+
+    /** Quantidade de IDs por consulta */
+    public static final int TAMANHO_BLOCO = 1000;
+
+    private ConsultaEmBlocos() {
+    }
+
+    /**
+     * Executa a consulta para cada bloco de até {@link #TAMANHO_BLOCO} IDs e junta os resultados
+     */
+    public static <T> List<T> buscar(Collection<Long> ids, Function<List<Long>, List<T>> consulta) {
+        List<Long> lista = ids instanceof List<Long> l ? l : new ArrayList<>(ids);
+        if (lista.size() <= TAMANHO_BLOCO) {
+            return lista.isEmpty() ? List.of() : consulta.apply(lista);
+        }
+        List<T> resultado = new ArrayList<>();
+        for (int inicio = 0; inicio < lista.size(); inicio += TAMANHO_BLOCO) {
+            resultado.addAll(consulta.apply(lista.subList(inicio, Math.min(inicio + TAMANHO_BLOCO, lista.size()))));
+        }
+        return resultado;
+    }
+}
@@ -0,0 +1,30 @@
+package com.estoque.util;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Ações que dependem do commit da transação atual, como atualizar caches e índices em memória
+ * ou enfileirar trabalho: se a transação for desfeita, a ação não é executada.
+ */
+public final class Transacoes {
+
+    private Transacoes() {
+    }
+
+    /**
+     * Executa a ação após o commit da transação atual, ou já, se não houver transação
+     */
+    public static void aposCommit(Runnable acao) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            acao.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                acao.run();
+            }
+        });
+    }
+}
@@ -2,6 +2,7 @@ package com.seguranca.config;
 
 import com.seguranca.security.JwtAuthenticationFilter;
 import com.seguranca.security.CustomUserDetailsService;
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -64,6 +65,9 @@ public class SecurityConfig {
             )
             .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
             .authorizeHttpRequests(authz -> authz
+                // Continuação assíncrona (respostas em streaming) de uma requisição já autorizada
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+
                 // Públicos - sem autenticação
                 .requestMatchers("/api/auth/login", "/api/auth/register", "/api/auth/refresh").permitAll()
                 .requestMatchers("/swagger-ui.html", "/swagger-ui/**", "/v3/api-docs/**", "/doc", "/doc/**").permitAll()
@@ -0,0 +1,28 @@
+-- ============================================
+-- Índice do caminho materializado de grupo (PostgreSQL)
+-- ============================================
+-- As consultas de subárvore (GrupoRepository, EstoqueItemRepository) filtram grupo.caminho por prefixo:
+--   caminho LIKE '/1/5/%'
+-- Em bancos com collation diferente de "C" (ex.: pt_BR.UTF-8), o índice btree comum criado pelo Hibernate
+-- a partir do @Index da entidade não atende ao LIKE e a consulta lê a tabela inteira. Com varchar_pattern_ops
+-- a comparação é byte a byte e o prefixo vira uma faixa do índice.
+--
+-- Executar depois da primeira subida da aplicação (que cria a coluna):  psql -d eZionDB -f indices-grupo.sql
+-- O índice mantém o nome do @Index, então o ddl-auto=update não volta a criar o índice comum.
+--
+-- Planos obtidos no PostgreSQL 16 (collation pt-BR) com 21 mil grupos em três níveis e 50 mil itens,
+-- para a consulta gerada pelo Hibernate (caminho like (?||'%') escape ''):
+--   subárvore de um grupo de nível 1 (21 grupos), antes: Seq Scan on grupo, Rows Removed by Filter: 21080
+--                          (475 buffers, 8 ms)
+--   depois: Index Scan using idx_grupo_caminho,
+--           Index Cond: caminho ~>=~ '/1268/1311/' AND caminho ~<~ '/1268/13110' (4 buffers, 0,05 ms)
+--   itens da subárvore de uma raiz (211 grupos, 633 itens), antes: Seq Scan on grupo no hash join
+--                          (1193 buffers, 41 ms)
+--   depois: Bitmap Index Scan on idx_grupo_caminho no hash join (728 buffers, 18 ms)
+-- Para conferir:
+--   EXPLAIN (ANALYZE, BUFFERS) SELECT id FROM grupo WHERE caminho LIKE '/1/5/%';
+
+DROP INDEX IF EXISTS idx_grupo_caminho;
+CREATE INDEX idx_grupo_caminho ON grupo (caminho varchar_pattern_ops);
+
+ANALYZE grupo;
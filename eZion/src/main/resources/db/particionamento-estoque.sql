@@ -0,0 +1,101 @@
+-- ============================================
+-- Particionamento mensal de movimentacao e estoque_custo (PostgreSQL 12+)
+-- ============================================
+-- Converte as duas tabelas em tabelas particionadas por faixa de data (um mês por partição).
+-- Executar uma única vez, com a aplicação parada:  psql -d eZionDB -f particionamento-estoque.sql
+--
+-- Depois da conversão:
+--   * a chave primária passa a ser (id, data); o id continua gerado pela sequência da tabela-mãe;
+--   * as partições dos próximos meses são criadas pela aplicação (ParticionamentoEstoqueService);
+--   * a partição "padrao" recebe datas fora das partições existentes e deve ficar vazia;
+--   * partições de meses fechados de movimentacao podem ser arquivadas pela API
+--     (POST /api/estoque/particoes/movimentacao/{yyyy-MM}/arquivar), que as desanexa e move para
+--     o schema arquivo_estoque;
+--   * enquanto houver partições arquivadas, a reconstrução e a verificação dos saldos e a reconstrução das
+--     camadas de custo são recusadas, pois somam todo o histórico de movimentacao. Para executá-las,
+--     reanexe antes as partições arquivadas, por exemplo:
+--       ALTER TABLE arquivo_estoque.movimentacao_p2024_01 SET SCHEMA public;
+--       ALTER TABLE movimentacao ATTACH PARTITION movimentacao_p2024_01 FOR VALUES FROM ('2024-01-01') TO ('2024-02-01');
+--
+-- Para conferir a poda de partições, compare o plano antes e depois da conversão, por exemplo:
+--   EXPLAIN (ANALYZE, BUFFERS) SELECT * FROM movimentacao
+--    WHERE data_movimentacao BETWEEN '2025-03-01' AND '2025-03-31 23:59:59';
+--   EXPLAIN (ANALYZE, BUFFERS) SELECT SUM(quantidade) FROM movimentacao
+--    WHERE estoque_item_id = 1 AND data_movimentacao >= '2025-03-01' AND data_movimentacao <= '2025-06-30';
+-- Depois da conversão, o plano deve listar só as partições dos meses do filtro.
+--
+-- Planos obtidos no PostgreSQL 16 com 240 mil movimentações em 24 meses (2024-01 a 2025-12, 200 itens):
+--   mês de março, antes:   Bitmap Heap Scan on movimentacao, Bitmap Index Scan on idx_movimentacao_data
+--                          (10199 linhas, 538 buffers, 13,5 ms)
+--   mês de março, depois:  Seq Scan on movimentacao_p2025_03 (10199 linhas, 157 buffers, 3,0 ms)
+--   item em 4 meses, antes:  Bitmap Index Scan on idx_movimentacao_item_data (196 linhas, 204 buffers, 0,57 ms)
+--   item em 4 meses, depois: Append de movimentacao_p2025_03 a _p2025_06, um Bitmap Index Scan por partição
+--                            (196 linhas, 207 buffers, 0,86 ms)
+--   soma de saldos por item/local/lote (reconstrução): Seq Scan em todas as partições nos dois casos
+--                          (240001 linhas, 3693 e 3698 buffers, ~340 ms) - sem filtro de data não há poda.
+
+BEGIN;
+
+-- Cria a tabela particionada no lugar da tabela original, copia os dados e recria FKs e índices
+CREATE OR REPLACE FUNCTION particionar_por_mes(tabela text, coluna text) RETURNS void AS $$
+DECLARE
+    legado text := tabela || '_legado';
+    mes date;
+    ultimo date;
+    sequencia text;
+    fk record;
+BEGIN
+    EXECUTE format('ALTER TABLE %I RENAME TO %I', tabela, legado);
+    EXECUTE format('CREATE TABLE %I (LIKE %I INCLUDING DEFAULTS INCLUDING IDENTITY INCLUDING CONSTRAINTS) ' ||
+                   'PARTITION BY RANGE (%I)', tabela, legado, coluna);
+
+    -- Uma partição por mês, do primeiro registro até três meses à frente
+    EXECUTE format('SELECT date_trunc(''month'', COALESCE(MIN(%I), now()))::date FROM %I', coluna, legado) INTO mes;
+    ultimo := (date_trunc('month', now()) + interval '3 months')::date;
+    WHILE mes <= ultimo LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L)',
+                       tabela || '_p' || to_char(mes, 'YYYY_MM'), tabela, mes, (mes + interval '1 month')::date);
+        mes := (mes + interval '1 month')::date;
+    END LOOP;
+    EXECUTE format('CREATE TABLE %I PARTITION OF %I DEFAULT', tabela || '_padrao', tabela);
+
+    EXECUTE format('INSERT INTO %I OVERRIDING SYSTEM VALUE SELECT * FROM %I', tabela, legado);
+    -- Coluna serial (o Hibernate cria o id assim): o DEFAULT copiado usa a sequência da tabela original,
+    -- que passa a pertencer à nova para não ser removida com ela; coluna identity já ganhou sequência própria
+    sequencia := pg_get_serial_sequence(legado, 'id');
+    IF sequencia IS NOT NULL AND pg_get_serial_sequence(tabela, 'id') IS NULL THEN
+        EXECUTE format('ALTER SEQUENCE %s OWNED BY %I.id', sequencia, tabela);
+    END IF;
+    EXECUTE format('SELECT setval(pg_get_serial_sequence(%L, ''id''), COALESCE((SELECT MAX(id) FROM %I), 0) + 1, false)',
+                   tabela, legado);
+
+    -- FKs da tabela original (para item, lote, local, usuário...) passam para a tabela particionada
+    FOR fk IN SELECT conname, pg_get_constraintdef(oid) AS definicao FROM pg_constraint
+              WHERE conrelid = legado::regclass AND contype = 'f' LOOP
+        EXECUTE format('ALTER TABLE %I DROP CONSTRAINT %I', legado, fk.conname);
+        EXECUTE format('ALTER TABLE %I ADD CONSTRAINT %I %s', tabela, fk.conname, fk.definicao);
+    END LOOP;
+
+    EXECUTE format('DROP TABLE %I', legado);
+    -- A chave de uma tabela particionada precisa incluir a coluna de partição
+    EXECUTE format('ALTER TABLE %I ADD PRIMARY KEY (id, %I)', tabela, coluna);
+END $$ LANGUAGE plpgsql;
+
+SELECT particionar_por_mes('movimentacao', 'data_movimentacao');
+SELECT particionar_por_mes('estoque_custo', 'data_custo');
+DROP FUNCTION particionar_por_mes(text, text);
+
+-- Índices das entidades (criados na tabela-mãe, valem para todas as partições)
+CREATE INDEX idx_movimentacao_data ON movimentacao (data_movimentacao, id);
+CREATE INDEX idx_movimentacao_item_data ON movimentacao (estoque_item_id, data_movimentacao, id);
+CREATE INDEX idx_movimentacao_transferencia ON movimentacao (transferencia_id);
+CREATE INDEX idx_estoque_custo_item_data ON estoque_custo (estoque_item_id, data_custo);
+CREATE INDEX idx_estoque_custo_pedido ON estoque_custo (pedido_compra_id);
+CREATE INDEX idx_estoque_custo_data_tipo ON estoque_custo (data_custo, tipo_custo);
+
+CREATE SCHEMA IF NOT EXISTS arquivo_estoque;
+
+COMMIT;
+
+ANALYZE movimentacao;
+ANALYZE estoque_custo;
@@ -0,0 +1,186 @@
+package com.estoque.service;
+
+import com.estoque.dto.LoteDisponivelDTO;
+import com.estoque.model.EstoqueItem;
+import com.estoque.model.EstoqueItem.TipoItem;
+import com.estoque.model.Grupo;
+import com.estoque.model.Lote;
+import com.estoque.model.Unidade;
+import com.estoque.repository.EstoqueItemRepository;
+import com.estoque.repository.GrupoRepository;
+import com.estoque.repository.LoteRepository;
+import com.estoque.repository.UnidadeRepository;
+import com.estoque.suporte.ExecucaoConcorrente;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Separações consecutivas no cache de lotes disponíveis: cada baixa condicional aceita é aplicada à entrada
+ * do item após o commit, sem recarregá-la do banco; baixas desfeitas não alteram o cache.
+ * Cada separação roda na própria transação (sem a transação do teste).
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("teste")
+@Import(DisponibilidadeLoteService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class DisponibilidadeLoteServiceTest {
+
+    private static final int THREADS = 8;
+
+    @Autowired
+    private DisponibilidadeLoteService disponibilidadeLoteService;
+
+    @Autowired
+    private LoteRepository loteRepository;
+
+    @Autowired
+    private EstoqueItemRepository estoqueItemRepository;
+
+    @Autowired
+    private GrupoRepository grupoRepository;
+
+    @Autowired
+    private UnidadeRepository unidadeRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private EstoqueItem item;
+
+    @BeforeEach
+    void preparar() {
+        jdbcTemplate.update("DELETE FROM lote");
+        jdbcTemplate.update("DELETE FROM estoque_item");
+        jdbcTemplate.update("DELETE FROM grupo");
+        jdbcTemplate.update("DELETE FROM unidade");
+
+        Grupo grupo = new Grupo();
+        grupo.setNome("Grupo");
+        Unidade unidade = new Unidade();
+        unidade.setSigla("UN");
+        unidade.setDescricao("Unidade");
+
+        item = new EstoqueItem();
+        item.setCodigo("ITEM");
+        item.setDescricao("Item");
+        item.setTipoItem(TipoItem.PRODUTO);
+        item.setGrupo(grupoRepository.save(grupo));
+        item.setUnidade(unidadeRepository.save(unidade));
+        item = estoqueItemRepository.save(item);
+        disponibilidadeLoteService.descartar(item.getId());
+    }
+
+    @Test
+    void separacoesConsecutivasSaoAtendidasPeloCache() {
+        Long loteA = criarLote("A", LocalDate.now().minusDays(2), "3");
+        Long loteB = criarLote("B", LocalDate.now().minusDays(1), "5");
+        assertDisponivel(Map.of(loteA, "3", loteB, "5"), "8");
+
+        // Alteração feita direto no banco, sem passar pelo cache: só aparece se o item for recarregado
+        jdbcTemplate.update("UPDATE lote SET numero_lote = 'B-BANCO' WHERE id = ?", loteB);
+
+        separar(loteA, "2");
+        assertDisponivel(Map.of(loteA, "1", loteB, "5"), "6");
+        separar(loteA, "1");
+        assertDisponivel(Map.of(loteB, "5"), "5");
+        separar(loteB, "2");
+        assertDisponivel(Map.of(loteB, "3"), "3");
+        assertEquals("B", disponibilidadeLoteService.listarFIFO(item.getId()).get(0).getNumeroLote(),
+                "as separações não devem recarregar o item do banco");
+        assertEquals(0, disponibilidadeLoteService.listarFIFO(item.getId()).get(0).getQuantidadeAcumulada()
+                .compareTo(new BigDecimal("3")));
+
+        disponibilidadeLoteService.registrarAlteracaoItem(item.getId());
+        assertEquals("B-BANCO", disponibilidadeLoteService.listarFIFO(item.getId()).get(0).getNumeroLote());
+    }
+
+    @Test
+    void separacaoDesfeitaNaoAlteraOCache() {
+        Long lote = criarLote("A", LocalDate.now(), "5");
+        assertDisponivel(Map.of(lote, "5"), "5");
+
+        TransactionTemplate transacao = new TransactionTemplate(transactionManager);
+        transacao.executeWithoutResult(status -> {
+            baixar(lote, "2");
+            status.setRollbackOnly();
+        });
+
+        assertDisponivel(Map.of(lote, "5"), "5");
+    }
+
+    @Test
+    void separacoesConcorrentesDeixamOCacheIgualAoBanco() throws Exception {
+        Long loteA = criarLote("A", LocalDate.now().minusDays(1), "30");
+        Long loteB = criarLote("B", LocalDate.now(), "30");
+        disponibilidadeLoteService.listarFIFO(item.getId());
+
+        ExecucaoConcorrente.executar(THREADS, 80, i -> {
+            try {
+                separar(i % 3 == 0 ? loteB : loteA, "1");
+            } catch (IllegalArgumentException e) {
+                // Lote esgotado: a baixa condicional recusou
+            }
+        });
+
+        // A esgotado; B com o que sobrou das baixas aceitas. O cache, sem recarga, deve bater com o banco
+        BigDecimal restanteB = loteRepository.findById(loteB).orElseThrow().getQuantidadeDisponivel();
+        assertEquals(0, loteRepository.findById(loteA).orElseThrow().getQuantidadeDisponivel().signum());
+        assertDisponivel(Map.of(loteB, restanteB.toPlainString()), restanteB.toPlainString());
+    }
+
+    /**
+     * Uma separação: baixa condicional do lote e registro da baixa no cache, na mesma transação
+     */
+    private void separar(Long loteId, String quantidade) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> baixar(loteId, quantidade));
+    }
+
+    private void baixar(Long loteId, String quantidade) {
+        if (loteRepository.baixarQuantidadeDisponivel(loteId, new BigDecimal(quantidade), LocalDateTime.now()) == 0) {
+            throw new IllegalArgumentException("Quantidade disponível insuficiente no lote");
+        }
+        disponibilidadeLoteService.registrarBaixas(item.getId(), List.of(loteId));
+    }
+
+    private Long criarLote(String numero, LocalDate dataEntrada, String disponivel) {
+        Lote lote = new Lote();
+        lote.setEstoqueItem(item);
+        lote.setNumeroLote(numero);
+        lote.setDataEntrada(dataEntrada);
+        lote.setQuantidadeTotal(new BigDecimal(disponivel));
+        lote.setQuantidadeDisponivel(new BigDecimal(disponivel));
+        return loteRepository.save(lote).getId();
+    }
+
+    private void assertDisponivel(Map<Long, String> esperado, String total) {
+        List<LoteDisponivelDTO> lotes = disponibilidadeLoteService.listarFIFO(item.getId());
+        assertEquals(esperado.size(), lotes.size(), "lotes disponíveis: " + lotes);
+        for (LoteDisponivelDTO lote : lotes) {
+            assertEquals(0, lote.getQuantidadeDisponivel().compareTo(new BigDecimal(esperado.get(lote.getLoteId()))),
+                    "quantidade disponível do lote " + lote.getNumeroLote() + ": " + lote.getQuantidadeDisponivel());
+        }
+        assertEquals(0, disponibilidadeLoteService.calcularDisponivel(item.getId()).compareTo(new BigDecimal(total)));
+    }
+}
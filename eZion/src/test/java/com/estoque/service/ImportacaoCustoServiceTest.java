@@ -0,0 +1,148 @@
+package com.estoque.service;
+
+import com.estoque.dto.ImportacaoCustosDTO;
+import com.estoque.model.EstoqueCusto;
+import com.estoque.model.EstoqueCusto.TipoCusto;
+import com.estoque.model.EstoqueItem;
+import com.estoque.model.EstoqueItem.TipoItem;
+import com.estoque.model.Grupo;
+import com.estoque.model.Lote;
+import com.estoque.model.Unidade;
+import com.estoque.repository.EstoqueItemRepository;
+import com.estoque.repository.GrupoRepository;
+import com.estoque.repository.UnidadeRepository;
+import com.seguranca.model.Usuario;
+import com.seguranca.repository.UsuarioRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Linhas inválidas da importação de custos são recusadas uma a uma, sem desfazer as válidas.
+ * Recálculo, camadas e relatório não participam da validação e ficam simulados.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("teste")
+@ImportAutoConfiguration(ValidationAutoConfiguration.class)
+@Import(ImportacaoCustoService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ImportacaoCustoServiceTest {
+
+    @Autowired
+    private ImportacaoCustoService importacaoCustoService;
+
+    @Autowired
+    private EstoqueItemRepository estoqueItemRepository;
+
+    @Autowired
+    private GrupoRepository grupoRepository;
+
+    @Autowired
+    private UnidadeRepository unidadeRepository;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockBean
+    private FilaRecalculoCustoService filaRecalculoCustoService;
+
+    @MockBean
+    private CamadaCustoService camadaCustoService;
+
+    @MockBean
+    private RelatorioCustoService relatorioCustoService;
+
+    private EstoqueItem item;
+
+    private Usuario usuario;
+
+    @BeforeEach
+    void preparar() {
+        jdbcTemplate.update("DELETE FROM estoque_custo");
+        jdbcTemplate.update("DELETE FROM estoque_item");
+        jdbcTemplate.update("DELETE FROM grupo");
+        jdbcTemplate.update("DELETE FROM unidade");
+        usuarioRepository.deleteAll();
+
+        Grupo grupo = new Grupo();
+        grupo.setNome("Grupo");
+        Unidade unidade = new Unidade();
+        unidade.setSigla("UN");
+        unidade.setDescricao("Unidade");
+
+        item = new EstoqueItem();
+        item.setCodigo("ITEM");
+        item.setDescricao("Item");
+        item.setTipoItem(TipoItem.PRODUTO);
+        item.setGrupo(grupoRepository.save(grupo));
+        item.setUnidade(unidadeRepository.save(unidade));
+        item = estoqueItemRepository.save(item);
+
+        usuario = new Usuario();
+        usuario.setUsername("importador");
+        usuario.setEmail("importador@ezion.local");
+        usuario.setSenha("x");
+        usuario.setNomeCompleto("Importador");
+        usuario = usuarioRepository.save(usuario);
+    }
+
+    @Test
+    void referenciasSemIdRecusamSoASuaLinha() {
+        EstoqueCusto semItem = custo(item.getId(), usuario.getId());
+        semItem.setEstoqueItem(new EstoqueItem());
+        EstoqueCusto semUsuario = custo(item.getId(), usuario.getId());
+        semUsuario.setUsuario(new Usuario());
+        EstoqueCusto loteVazio = custo(item.getId(), usuario.getId());
+        loteVazio.setLote(new Lote());
+
+        ImportacaoCustosDTO resultado = importacaoCustoService.importar(List.of(
+                custo(item.getId(), usuario.getId()), semItem, semUsuario, loteVazio,
+                custo(item.getId(), usuario.getId())));
+
+        assertEquals(3, resultado.getLinhasImportadas());
+        assertEquals(2, resultado.getLinhasComErro());
+        assertEquals(2, resultado.getErros().get(0).getLinha());
+        assertEquals("Item de estoque é obrigatório", resultado.getErros().get(0).getMensagem());
+        assertEquals(3, resultado.getErros().get(1).getLinha());
+        assertEquals("Usuário responsável é obrigatório", resultado.getErros().get(1).getMensagem());
+        assertEquals(3, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM estoque_custo", Integer.class));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM estoque_custo WHERE lote_id IS NOT NULL", Integer.class));
+    }
+
+    private static EstoqueCusto custo(Long itemId, Long usuarioId) {
+        EstoqueItem referenciaItem = new EstoqueItem();
+        referenciaItem.setId(itemId);
+        Usuario referenciaUsuario = new Usuario();
+        referenciaUsuario.setId(usuarioId);
+
+        EstoqueCusto custo = new EstoqueCusto();
+        custo.setEstoqueItem(referenciaItem);
+        custo.setUsuario(referenciaUsuario);
+        custo.setTipoCusto(TipoCusto.COMPRA);
+        custo.setQuantidade(BigDecimal.ONE);
+        custo.setCustoUnitario(BigDecimal.TEN);
+        custo.setValor(BigDecimal.TEN);
+        custo.setDataCusto(LocalDateTime.of(2025, 1, 10, 0, 0));
+        return custo;
+    }
+}
@@ -0,0 +1,170 @@
+package com.estoque.service;
+
+import com.estoque.dto.AjusteQuantidadeLoteDTO;
+import com.estoque.model.EstoqueItem;
+import com.estoque.model.EstoqueItem.TipoItem;
+import com.estoque.model.Grupo;
+import com.estoque.model.Lote;
+import com.estoque.model.Unidade;
+import com.estoque.repository.EstoqueItemRepository;
+import com.estoque.repository.GrupoRepository;
+import com.estoque.repository.LoteRepository;
+import com.estoque.repository.UnidadeRepository;
+import com.estoque.suporte.ExecucaoConcorrente;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Baixas e ajustes concorrentes nos mesmos lotes: a quantidade disponível nunca sai dos limites,
+ * nenhuma alteração se perde e cada update aplicado incrementa a versão uma única vez.
+ * Cada chamada roda na própria transação (sem a transação do teste).
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("teste")
+@Import({LoteService.class, VencimentoLoteService.class, DisponibilidadeLoteService.class, NumeracaoLoteService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class LoteServiceTest {
+
+    private static final int THREADS = 8;
+
+    @Autowired
+    private LoteService loteService;
+
+    @Autowired
+    private LoteRepository loteRepository;
+
+    @Autowired
+    private EstoqueItemRepository estoqueItemRepository;
+
+    @Autowired
+    private GrupoRepository grupoRepository;
+
+    @Autowired
+    private UnidadeRepository unidadeRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private EstoqueItem item;
+
+    @BeforeEach
+    void preparar() {
+        jdbcTemplate.update("DELETE FROM lote");
+        jdbcTemplate.update("DELETE FROM estoque_item");
+        jdbcTemplate.update("DELETE FROM grupo");
+        jdbcTemplate.update("DELETE FROM unidade");
+
+        Grupo grupo = new Grupo();
+        grupo.setNome("Grupo");
+        Unidade unidade = new Unidade();
+        unidade.setSigla("UN");
+        unidade.setDescricao("Unidade");
+
+        item = new EstoqueItem();
+        item.setCodigo("ITEM");
+        item.setDescricao("Item");
+        item.setTipoItem(TipoItem.PRODUTO);
+        item.setGrupo(grupoRepository.save(grupo));
+        item.setUnidade(unidadeRepository.save(unidade));
+        item = estoqueItemRepository.save(item);
+    }
+
+    @Test
+    void baixasConcorrentesNaoReduzemAlemDoDisponivel() throws Exception {
+        Long loteId = criarLote("L1", "10", "10");
+
+        AtomicInteger aceitas = new AtomicInteger();
+        AtomicInteger recusadas = new AtomicInteger();
+        ExecucaoConcorrente.executar(THREADS, 40, i -> {
+            try {
+                loteService.reduzirQuantidade(loteId, BigDecimal.ONE);
+                aceitas.incrementAndGet();
+            } catch (IllegalArgumentException e) {
+                recusadas.incrementAndGet();
+            }
+        });
+
+        assertEquals(10, aceitas.get());
+        assertEquals(30, recusadas.get());
+        assertLote(loteId, "0", 10);
+    }
+
+    @Test
+    void baixasEAjustesConcorrentesAplicamTodasAsAlteracoes() throws Exception {
+        Long loteA = criarLote("A", "100", "50");
+        Long loteB = criarLote("B", "100", "50");
+
+        // Metade baixa 1 de A; a outra metade passa 1 de B para A no mesmo batch (lotes em ordens opostas)
+        ExecucaoConcorrente.executar(THREADS, 60, i -> {
+            if (i % 2 == 0) {
+                loteService.reduzirQuantidade(loteA, BigDecimal.ONE);
+            } else {
+                loteService.ajustarQuantidades(List.of(
+                        new AjusteQuantidadeLoteDTO(loteB, BigDecimal.ONE.negate()),
+                        new AjusteQuantidadeLoteDTO(loteA, BigDecimal.ONE)));
+            }
+        });
+
+        assertLote(loteA, "50", 60);
+        assertLote(loteB, "20", 30);
+        assertEquals(0, loteService.calcularEstoqueDisponivel(item.getId()).compareTo(new BigDecimal("70")));
+    }
+
+    @Test
+    void ajustesConcorrentesSaoTudoOuNada() throws Exception {
+        Long origem = criarLote("ORIGEM", "10", "5");
+        Long destino = criarLote("DESTINO", "10", "0");
+
+        AtomicInteger aceitos = new AtomicInteger();
+        AtomicInteger recusados = new AtomicInteger();
+        ExecucaoConcorrente.executar(THREADS, 20, i -> {
+            try {
+                loteService.ajustarQuantidades(List.of(
+                        new AjusteQuantidadeLoteDTO(destino, BigDecimal.ONE),
+                        new AjusteQuantidadeLoteDTO(origem, BigDecimal.ONE.negate())));
+                aceitos.incrementAndGet();
+            } catch (IllegalArgumentException e) {
+                recusados.incrementAndGet();
+            }
+        });
+
+        // Ajustes recusados não deixam o destino aumentado sem a baixa da origem
+        assertEquals(5, aceitos.get());
+        assertEquals(15, recusados.get());
+        assertLote(origem, "0", 5);
+        assertLote(destino, "5", 5);
+    }
+
+    private Long criarLote(String numero, String total, String disponivel) {
+        Lote lote = new Lote();
+        lote.setEstoqueItem(item);
+        lote.setNumeroLote(numero);
+        lote.setDataEntrada(LocalDate.now());
+        lote.setQuantidadeTotal(new BigDecimal(total));
+        lote.setQuantidadeDisponivel(new BigDecimal(disponivel));
+        return loteRepository.save(lote).getId();
+    }
+
+    private void assertLote(Long loteId, String disponivel, long versao) {
+        Lote lote = loteRepository.findById(loteId).orElseThrow();
+        assertEquals(0, lote.getQuantidadeDisponivel().compareTo(new BigDecimal(disponivel)),
+                "quantidade disponível do lote " + lote.getNumeroLote() + ": " + lote.getQuantidadeDisponivel());
+        assertEquals(versao, lote.getVersao(), "versão do lote " + lote.getNumeroLote());
+    }
+}
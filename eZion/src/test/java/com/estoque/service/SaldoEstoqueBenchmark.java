@@ -0,0 +1,138 @@
+package com.estoque.service;
+
+import com.EzionApplication;
+import com.estoque.model.EstoqueItem;
+import com.estoque.model.Local;
+import com.estoque.model.Movimentacao;
+import com.estoque.model.Movimentacao.TipoMovimentacao;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Carga concorrente sobre um único item/local do saldo de estoque: várias threads registram baixas de 1 unidade
+ * (e, a cada {@code benchmark.reposicao-a-cada} chamadas, uma entrada de 5) pelo mesmo caminho das movimentações,
+ * cada uma na própria transação. O saldo oscila em torno de zero, onde uma venda além do saldo apareceria.
+ * Ao final mostra a vazão (operações por segundo), baixas aceitas e recusadas e a venda além do saldo:
+ * saldo final negativo ou diferente de inicial + entradas - baixas aceitas.
+ * <p>
+ * Usa o item e o local de ID -1 (sem chave estrangeira em saldo_estoque) e apaga a linha ao terminar.
+ * Execução (H2 do perfil de testes ou um PostgreSQL; argumentos no formato --propriedade=valor):
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) com.estoque.service.SaldoEstoqueBenchmark \
+ *      --spring.profiles.active=teste --benchmark.threads=16 --benchmark.segundos=10
+ * </pre>
+ * Com {@code --estoque.saldo.politica-negativo=PERMITIR} mede o comportamento sem a baixa condicional.
+ */
+public class SaldoEstoqueBenchmark {
+
+    private static final long ITEM_ID = -1L;
+    private static final long LOCAL_ID = -1L;
+    private static final int QUANTIDADE_REPOSICAO = 5;
+
+    public static void main(String[] args) throws Exception {
+        try (ConfigurableApplicationContext contexto = new SpringApplicationBuilder(EzionApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(args)) {
+            Environment ambiente = contexto.getEnvironment();
+            int threads = ambiente.getProperty("benchmark.threads", Integer.class, 16);
+            int segundos = ambiente.getProperty("benchmark.segundos", Integer.class, 10);
+            int saldoInicial = ambiente.getProperty("benchmark.saldo-inicial", Integer.class, 1000);
+            int reposicaoACada = ambiente.getProperty("benchmark.reposicao-a-cada", Integer.class, 10);
+
+            SaldoEstoqueService saldoEstoqueService = contexto.getBean(SaldoEstoqueService.class);
+            JdbcTemplate jdbcTemplate = contexto.getBean(JdbcTemplate.class);
+            jdbcTemplate.update("DELETE FROM saldo_estoque WHERE estoque_item_id = ?", ITEM_ID);
+            try {
+                saldoEstoqueService.registrarMovimentacao(movimentacao(TipoMovimentacao.ENTRADA, saldoInicial));
+                executar(saldoEstoqueService, jdbcTemplate, threads, segundos, saldoInicial, reposicaoACada);
+            } finally {
+                jdbcTemplate.update("DELETE FROM saldo_estoque WHERE estoque_item_id = ?", ITEM_ID);
+            }
+        }
+    }
+
+    private static void executar(SaldoEstoqueService saldoEstoqueService, JdbcTemplate jdbcTemplate, int threads,
+                                 int segundos, int saldoInicial, int reposicaoACada) throws Exception {
+        LongAdder aceitas = new LongAdder();
+        LongAdder recusadas = new LongAdder();
+        LongAdder reposicoes = new LongAdder();
+        CountDownLatch largada = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long inicio;
+        long fim;
+        try {
+            long[] prazo = new long[1];
+            List<Future<?>> futuros = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futuros.add(pool.submit(() -> {
+                    largada.await();
+                    for (long i = 1; System.nanoTime() < prazo[0]; i++) {
+                        if (i % reposicaoACada == 0) {
+                            saldoEstoqueService.registrarMovimentacao(movimentacao(TipoMovimentacao.ENTRADA, QUANTIDADE_REPOSICAO));
+                            reposicoes.increment();
+                            continue;
+                        }
+                        try {
+                            saldoEstoqueService.registrarMovimentacao(movimentacao(TipoMovimentacao.SAIDA, 1));
+                            aceitas.increment();
+                        } catch (IllegalArgumentException e) {
+                            recusadas.increment();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            inicio = System.nanoTime();
+            prazo[0] = inicio + segundos * 1_000_000_000L;
+            largada.countDown();
+            for (Future<?> futuro : futuros) {
+                futuro.get();
+            }
+            fim = System.nanoTime();
+        } finally {
+            pool.shutdownNow();
+        }
+
+        BigDecimal saldoFinal = jdbcTemplate.queryForObject(
+                "SELECT quantidade FROM saldo_estoque WHERE estoque_item_id = ? AND local_id = ?",
+                BigDecimal.class, ITEM_ID, LOCAL_ID);
+        long operacoes = aceitas.sum() + recusadas.sum() + reposicoes.sum();
+        double decorrido = (fim - inicio) / 1e9;
+        BigDecimal esperado = BigDecimal.valueOf(saldoInicial + QUANTIDADE_REPOSICAO * reposicoes.sum() - aceitas.sum());
+        long alemDoSaldo = saldoFinal.signum() < 0 ? saldoFinal.negate().longValue() : 0;
+
+        System.out.printf("threads=%d duração=%.1f s operações=%d vazão=%.0f ops/s%n",
+                threads, decorrido, operacoes, operacoes / decorrido);
+        System.out.printf("baixas aceitas=%d recusadas=%d entradas=%d unidades; saldo inicial=%d final=%s esperado=%s%n",
+                aceitas.sum(), recusadas.sum(), QUANTIDADE_REPOSICAO * reposicoes.sum(), saldoInicial, saldoFinal.toPlainString(), esperado);
+        System.out.printf("venda além do saldo=%d unidades, atualizações perdidas=%s%n",
+                alemDoSaldo, saldoFinal.compareTo(esperado) == 0 ? "0" : esperado.subtract(saldoFinal).toPlainString());
+    }
+
+    private static Movimentacao movimentacao(TipoMovimentacao tipo, int quantidade) {
+        EstoqueItem item = new EstoqueItem();
+        item.setId(ITEM_ID);
+        Local local = new Local();
+        local.setId(LOCAL_ID);
+
+        Movimentacao movimentacao = new Movimentacao();
+        movimentacao.setEstoqueItem(item);
+        movimentacao.setLocal(local);
+        movimentacao.setTipoMovimentacao(tipo);
+        movimentacao.setQuantidade(BigDecimal.valueOf(quantidade));
+        return movimentacao;
+    }
+}
@@ -0,0 +1,91 @@
+package com.estoque.service;
+
+import com.estoque.model.EstoqueItem;
+import com.estoque.model.Local;
+import com.estoque.model.Movimentacao;
+import com.estoque.model.Movimentacao.TipoMovimentacao;
+import com.estoque.suporte.ExecucaoConcorrente;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Baixas e primeiras entradas concorrentes no mesmo item/local: o saldo nunca fica negativo
+ * e nenhuma quantidade se perde. Cada chamada roda na própria transação (sem a transação do teste).
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("teste")
+@Import({SaldoEstoqueService.class, ParticionamentoEstoqueService.class, FechamentoEstoqueService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class SaldoEstoqueServiceTest {
+
+    private static final long ITEM_ID = 1L;
+    private static final long LOCAL_ID = 1L;
+    private static final int THREADS = 8;
+
+    @Autowired
+    private SaldoEstoqueService saldoEstoqueService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void limpar() {
+        jdbcTemplate.update("DELETE FROM saldo_estoque");
+    }
+
+    @Test
+    void baixasConcorrentesNaoVendemAlemDoSaldo() throws Exception {
+        saldoEstoqueService.registrarMovimentacao(movimentacao(TipoMovimentacao.ENTRADA, "10"));
+
+        AtomicInteger aceitas = new AtomicInteger();
+        AtomicInteger recusadas = new AtomicInteger();
+        ExecucaoConcorrente.executar(THREADS, 40, i -> {
+            try {
+                saldoEstoqueService.registrarMovimentacao(movimentacao(TipoMovimentacao.SAIDA, "1"));
+                aceitas.incrementAndGet();
+            } catch (IllegalArgumentException e) {
+                recusadas.incrementAndGet();
+            }
+        });
+
+        assertEquals(10, aceitas.get());
+        assertEquals(30, recusadas.get());
+        assertEquals(0, saldoEstoqueService.obterSaldoItem(ITEM_ID).compareTo(BigDecimal.ZERO));
+    }
+
+    @Test
+    void primeirasEntradasConcorrentesSomamNaMesmaLinha() throws Exception {
+        ExecucaoConcorrente.executar(THREADS, 20, i -> saldoEstoqueService.registrarMovimentacao(movimentacao(TipoMovimentacao.ENTRADA, "1")));
+
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM saldo_estoque", Integer.class));
+        assertEquals(0, saldoEstoqueService.obterSaldoItem(ITEM_ID).compareTo(new BigDecimal("20")));
+    }
+
+    private static Movimentacao movimentacao(TipoMovimentacao tipo, String quantidade) {
+        EstoqueItem item = new EstoqueItem();
+        item.setId(ITEM_ID);
+        Local local = new Local();
+        local.setId(LOCAL_ID);
+
+        Movimentacao movimentacao = new Movimentacao();
+        movimentacao.setEstoqueItem(item);
+        movimentacao.setLocal(local);
+        movimentacao.setTipoMovimentacao(tipo);
+        movimentacao.setQuantidade(new BigDecimal(quantidade));
+        return movimentacao;
+    }
+}
@@ -0,0 +1,52 @@
+package com.estoque.suporte;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Dispara chamadas concorrentes nos testes: todas esperam a largada e começam juntas em um pool fixo.
+ * Uma exceção não tratada por uma chamada é relançada (embrulhada em ExecutionException) e falha o teste.
+ */
+public final class ExecucaoConcorrente {
+
+    private ExecucaoConcorrente() {
+    }
+
+    /**
+     * Executa a chamada o número de vezes informado, com até {@code threads} execuções simultâneas,
+     * e espera todas terminarem
+     */
+    public static void executar(int threads, int chamadas, Chamada chamada) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch largada = new CountDownLatch(1);
+        try {
+            List<Future<?>> futuros = new ArrayList<>();
+            for (int i = 0; i < chamadas; i++) {
+                int indice = i;
+                futuros.add(pool.submit(() -> {
+                    largada.await();
+                    chamada.executar(indice);
+                    return null;
+                }));
+            }
+            largada.countDown();
+            for (Future<?> futuro : futuros) {
+                futuro.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Uma chamada, com seu índice (0 a chamadas - 1)
+     */
+    @FunctionalInterface
+    public interface Chamada {
+        void executar(int indice);
+    }
+}
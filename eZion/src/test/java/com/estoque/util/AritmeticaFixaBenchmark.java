@@ -0,0 +1,114 @@
+package com.estoque.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara o ponto fixo de {@link AritmeticaFixa} com o cálculo original em BigDecimal
+ * nos dois laços do motor de custos: soma dos impostos de uma linha de custo e
+ * custo médio móvel (acumula quantidade/valor e divide a cada entrada).
+ * Cada resultado intermediário vai para o {@link Blackhole}, para que o JIT não elimine o cálculo.
+ * <p>
+ * Execução (tempo e alocação por operação):
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) com.estoque.util.AritmeticaFixaBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AritmeticaFixaBenchmark {
+
+    private static final int LINHAS = 1_000;
+
+    // valor, icms, ipi, pis, cofins, icmsSt, iss, irpj, csll, frete
+    private BigDecimal[][] custos;
+    private BigDecimal[] quantidades;
+
+    @Setup
+    public void preparar() {
+        Random random = new Random(42L);
+        custos = new BigDecimal[LINHAS][10];
+        quantidades = new BigDecimal[LINHAS];
+        for (int i = 0; i < LINHAS; i++) {
+            for (int j = 0; j < 10; j++) {
+                // Parte dos impostos vem nula, como nas linhas reais
+                custos[i][j] = j > 0 && random.nextInt(4) == 0 ? null : BigDecimal.valueOf(random.nextInt(10_000_000), 2);
+            }
+            quantidades[i] = BigDecimal.valueOf(1 + random.nextInt(1_000_000), 3);
+        }
+    }
+
+    @Benchmark
+    public void somarFixa(Blackhole bh) {
+        for (BigDecimal[] linha : custos) {
+            bh.consume(AritmeticaFixa.somar(linha));
+        }
+    }
+
+    @Benchmark
+    public void somarBigDecimal(Blackhole bh) {
+        for (BigDecimal[] linha : custos) {
+            BigDecimal total = BigDecimal.ZERO;
+            for (BigDecimal valor : linha) {
+                if (valor != null) {
+                    total = total.add(valor);
+                }
+            }
+            bh.consume(total);
+        }
+    }
+
+    @Benchmark
+    public void custoMedioFixo(Blackhole bh) {
+        long quantidade = 0;
+        long valor = 0;
+        for (int i = 0; i < LINHAS; i++) {
+            quantidade += AritmeticaFixa.paraFixo(quantidades[i]);
+            valor += AritmeticaFixa.paraFixo(custos[i][0]);
+            bh.consume(AritmeticaFixa.dividirEscala6Para4(valor, quantidade));
+        }
+    }
+
+    @Benchmark
+    public void custoMedioBigDecimal(Blackhole bh) {
+        BigDecimal quantidade = BigDecimal.ZERO;
+        BigDecimal valor = BigDecimal.ZERO;
+        for (int i = 0; i < LINHAS; i++) {
+            quantidade = quantidade.add(quantidades[i]);
+            valor = valor.add(custos[i][0]);
+            bh.consume(valor.divide(quantidade, 6, RoundingMode.HALF_UP).setScale(4, RoundingMode.HALF_UP));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opcoes = new OptionsBuilder()
+            .include(AritmeticaFixaBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build();
+        new Runner(opcoes).run();
+    }
+}
@@ -0,0 +1,149 @@
+package com.estoque.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Garante que o ponto fixo produz exatamente o mesmo resultado (valor e escala)
+ * que o cálculo original em BigDecimal
+ */
+class AritmeticaFixaTest {
+
+    @Test
+    void dividirEscala6Para4ArredondaComoBigDecimalNosEmpates() {
+        String[][] casos = {
+            // valor, quantidade
+            {"1", "3"},            // 0,333333 -> 0,3333
+            {"2", "3"},            // 0,666667 -> 0,6667
+            {"0.0001", "2"},       // 0,000050 -> 0,0001 (empate na 4ª casa)
+            {"0.0001", "4"},       // 0,000025 -> 0,0000
+            {"0.0003", "8"},       // 0,0000375 -> 0,000038 -> 0,0000
+            {"0.0005", "8"},       // 0,0000625 -> 0,000063 -> 0,0001 (duplo arredondamento)
+            {"1.2345", "0.0002"},  // 6172,5
+            {"10", "7"},
+            {"0.0001", "0.0003"},
+            {"-1", "3"},
+            {"-0.0001", "2"},      // empate negativo se afasta do zero
+            {"-0.0005", "8"},
+            {"1", "-8"},
+            {"-1", "-8"},
+            {"99999999.9999", "0.0001"}
+        };
+        for (String[] caso : casos) {
+            BigDecimal valor = new BigDecimal(caso[0]);
+            BigDecimal quantidade = new BigDecimal(caso[1]);
+            BigDecimal esperado = valor.divide(quantidade, 6, RoundingMode.HALF_UP).setScale(4, RoundingMode.HALF_UP);
+
+            long fixo = AritmeticaFixa.dividirEscala6Para4(AritmeticaFixa.paraFixo(valor), AritmeticaFixa.paraFixo(quantidade));
+
+            assertEquals(esperado, BigDecimal.valueOf(fixo, AritmeticaFixa.ESCALA), caso[0] + " / " + caso[1]);
+            assertEquals(esperado, AritmeticaFixa.dividirEscala6Para4(valor, quantidade), caso[0] + " / " + caso[1]);
+        }
+    }
+
+    @Test
+    void dividirEscala6Para4SinalizaEstouro() {
+        // valor * 10^6 não cabe no long
+        long valor = Long.MAX_VALUE / 1_000_000L + 1;
+        assertEquals(Long.MIN_VALUE, AritmeticaFixa.dividirEscala6Para4(valor, 10_000L));
+        assertEquals(Long.MIN_VALUE, AritmeticaFixa.dividirEscala6Para4(-valor, 10_000L));
+
+        // No limite ainda calcula em ponto fixo, com o mesmo resultado do BigDecimal
+        long limite = Long.MAX_VALUE / 1_000_000L;
+        BigDecimal esperado = BigDecimal.valueOf(limite, 4)
+            .divide(BigDecimal.valueOf(30_000L, 4), 6, RoundingMode.HALF_UP).setScale(4, RoundingMode.HALF_UP);
+        assertEquals(esperado, BigDecimal.valueOf(AritmeticaFixa.dividirEscala6Para4(limite, 30_000L), 4));
+    }
+
+    @Test
+    void dividirMeioParaCimaSeAfastaDoZeroNosEmpates() {
+        assertEquals(3, AritmeticaFixa.dividirMeioParaCima(5, 2));
+        assertEquals(-3, AritmeticaFixa.dividirMeioParaCima(-5, 2));
+        assertEquals(-3, AritmeticaFixa.dividirMeioParaCima(5, -2));
+        assertEquals(3, AritmeticaFixa.dividirMeioParaCima(-5, -2));
+        assertEquals(2, AritmeticaFixa.dividirMeioParaCima(7, 4));
+        assertEquals(1, AritmeticaFixa.dividirMeioParaCima(5, 4));
+    }
+
+    @Test
+    void somarPreservaEscalaDaMaiorParcela() {
+        assertSomaIgual(null, null);
+        assertSomaIgual(new BigDecimal("1"), new BigDecimal("2"));
+        assertSomaIgual(new BigDecimal("1.5"), null, new BigDecimal("2.25"));
+        assertSomaIgual(new BigDecimal("0.0001"), new BigDecimal("-0.0001"));
+        assertSomaIgual(new BigDecimal("1.00"), new BigDecimal("2.0000"), new BigDecimal("3"));
+        assertSomaIgual(new BigDecimal("-10.1234"), new BigDecimal("0.1"));
+
+        assertEquals(2, AritmeticaFixa.somar(new BigDecimal("1.00"), new BigDecimal("2")).scale());
+        assertEquals(0, AritmeticaFixa.somar((BigDecimal) null).scale());
+    }
+
+    @Test
+    void somarRecorreAoBigDecimalQuandoNaoCabe() {
+        // Escala maior que 4
+        BigDecimal escala6 = new BigDecimal("1.123456");
+        assertFalse(AritmeticaFixa.representavel(escala6));
+        assertSomaIgual(new BigDecimal("1.1"), escala6);
+
+        // Escala negativa
+        assertSomaIgual(new BigDecimal("1E+3"), new BigDecimal("1.5"));
+
+        // Mais de 14 dígitos inteiros
+        BigDecimal grande = new BigDecimal("123456789012345.1");
+        assertFalse(AritmeticaFixa.representavel(grande));
+        assertSomaIgual(grande, new BigDecimal("1"));
+
+        // Cada parcela cabe, mas a soma estoura o long
+        BigDecimal maximo = new BigDecimal("99999999999999.9999");
+        assertTrue(AritmeticaFixa.representavel(maximo));
+        BigDecimal[] parcelas = new BigDecimal[1000];
+        Arrays.fill(parcelas, maximo);
+        assertSomaIgual(parcelas);
+        Arrays.fill(parcelas, maximo.negate());
+        assertSomaIgual(parcelas);
+    }
+
+    @Test
+    void resultadosAleatoriosIguaisAoBigDecimal() {
+        Random random = new Random(20240501L);
+        for (int i = 0; i < 100_000; i++) {
+            BigDecimal valor = aleatorio(random);
+            BigDecimal quantidade = aleatorio(random);
+            assertSomaIgual(valor, quantidade, aleatorio(random));
+
+            if (quantidade.signum() != 0) {
+                BigDecimal esperado = valor.divide(quantidade, 6, RoundingMode.HALF_UP).setScale(4, RoundingMode.HALF_UP);
+                long fixo = AritmeticaFixa.dividirEscala6Para4(AritmeticaFixa.paraFixo(valor), AritmeticaFixa.paraFixo(quantidade));
+                if (fixo != Long.MIN_VALUE) {
+                    assertEquals(esperado, BigDecimal.valueOf(fixo, AritmeticaFixa.ESCALA), valor + " / " + quantidade);
+                }
+            }
+        }
+    }
+
+    private static BigDecimal aleatorio(Random random) {
+        int escala = random.nextInt(AritmeticaFixa.ESCALA + 1);
+        long maximo = random.nextBoolean() ? 1_000L : 1_000_000_000L;
+        return BigDecimal.valueOf(random.nextLong(-maximo, maximo), escala);
+    }
+
+    private static void assertSomaIgual(BigDecimal... valores) {
+        BigDecimal esperado = BigDecimal.ZERO;
+        for (BigDecimal valor : valores) {
+            if (valor != null) {
+                esperado = esperado.add(valor);
+            }
+        }
+        BigDecimal resultado = AritmeticaFixa.somar(valores);
+        assertEquals(esperado, resultado);
+        assertEquals(esperado.scale(), resultado.scale());
+    }
+}